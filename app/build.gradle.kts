@@ -38,6 +38,10 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    androidResources {
+        // Los modelos ONNX se proyectan en memoria desde el APK: deben quedar sin comprimir
+        noCompress += "onnx"
+    }
 }
 
 dependencies {
@@ -50,4 +54,26 @@ dependencies {
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 
-}
\ No newline at end of file
+}
+
+// ModelStore no descarga nada: los modelos tienen que ir en el APK. Sin ellos no se empaqueta
+// (las pruebas JVM no fusionan assets y siguen corriendo).
+val verifyModels by tasks.registering {
+    val modelsDir = layout.projectDirectory.dir("src/main/assets/models")
+    val required = listOf(
+        // opencv/opencv, etiqueta 4.10.0: data/haarcascades
+        "haarcascade_frontalface_default.xml",
+        // opencv/opencv_zoo: models/face_detection_yunet y models/face_recognition_sface
+        "face_detection_yunet_2023mar.onnx",
+        "face_recognition_sface_2021dec.onnx",
+    )
+    doLast {
+        val missing = required.filter { !modelsDir.file(it).asFile.isFile }
+        if (missing.isNotEmpty()) {
+            throw GradleException("Faltan modelos en src/main/assets/models: " + missing.joinToString())
+        }
+    }
+}
+tasks.matching { it.name.startsWith("merge") && it.name.endsWith("Assets") }.configureEach {
+    dependsOn(verifyModels)
+}
@@ -0,0 +1,96 @@
+package com.example.parcial;
+
+import android.os.Debug;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.FrameOverlay;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reproduce una secuencia de cuadros con monedas y cuenta las asignaciones Java del hilo
+ * durante el régimen estable de {@link CoinPipeline} con el motor Hough por defecto, el único
+ * que promete no asignar por cuadro.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CoinPipelineAllocationTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int SEQUENCE_LENGTH = 8;
+    private static final int WARMUP_FRAMES = 10;
+    private static final int MEASURED_FRAMES = 60;
+
+    @Before
+    public void loadOpenCv() {
+        assertTrue(OpenCVLoader.initDebug());
+    }
+
+    /** Fondo gris con tres monedas oscuras que se desplazan unos píxeles por cuadro. */
+    private static List<Mat> replayedFrames() {
+        int[] radii = {70, 80, 95};
+        List<Mat> frames = new ArrayList<>();
+        for (int f = 0; f < SEQUENCE_LENGTH; f++) {
+            Mat frame = new Mat(HEIGHT, WIDTH, CvType.CV_8UC1, new Scalar(170));
+            for (int c = 0; c < radii.length; c++) {
+                Point center = new Point(120 + c * 200 + f * 3, 240 + (c - 1) * 20 - f * 2);
+                Imgproc.circle(frame, center, radii[c], new Scalar(60), -1);
+            }
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void steadyState_allocatesNothingPerFrame() throws IOException {
+        List<Mat> frames = replayedFrames();
+        Mat rgba = new Mat(HEIGHT, WIDTH, CvType.CV_8UC4, new Scalar(0));
+        FrameOverlay overlay = new FrameOverlay();
+        // Presupuesto holgado: el gobernador no ajusta (ni escribe en el log) durante la medición
+        CoinCatalogue catalogue = CoinCatalogue.load(
+                InstrumentationRegistry.getInstrumentation().getTargetContext());
+        CoinPipeline.CoinType[] coinTypes = catalogue.get(catalogue.indexOf("COP")).getCoinTypes();
+        CoinPipeline pipeline = new CoinPipeline(coinTypes, 1e9, 40);
+
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            overlay.clear();
+            pipeline.process(frames.get(i % frames.size()), rgba, overlay);
+        }
+
+        int circlesSeen = 0;
+        int shapesDrawn = 0;
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            overlay.clear();
+            pipeline.process(frames.get(i % frames.size()), rgba, overlay);
+            circlesSeen += pipeline.getCircleCount();
+            shapesDrawn += overlay.size();
+        }
+        Debug.stopAllocCounting();
+        int allocations = Debug.getThreadAllocCount();
+
+        pipeline.release();
+        rgba.release();
+        for (Mat frame : frames) frame.release();
+
+        assertTrue("La secuencia debe ejercitar el dibujo de círculos", circlesSeen > 0 && shapesDrawn > 0);
+        assertEquals("Asignaciones en " + MEASURED_FRAMES + " cuadros", 0, allocations);
+    }
+}
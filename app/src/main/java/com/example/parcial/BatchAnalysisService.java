@@ -0,0 +1,92 @@
+package com.example.parcial;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.IBinder;
+import android.util.Log;
+
+import org.opencv.android.OpenCVLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Punto de entrada sin pantalla para {@link BatchAnalyzer}. Cada pedido se encola y corre en
+ * un hilo propio; el resultado queda en
+ * Android/data/com.example.parcial/files/batch/&lt;entrada&gt;.&lt;tipo&gt;.bin. Desde adb
+ * (con la app en primer plano a partir de Android 8):
+ *
+ * <pre>
+ * adb shell am startservice -n com.example.parcial/.BatchAnalysisService \
+ *     --es input /sdcard/Android/data/com.example.parcial/files/bench/coins --es kind coins
+ * </pre>
+ */
+public class BatchAnalysisService extends Service {
+
+    public static final String EXTRA_INPUT = "input";
+    /** "coins" o "faces". */
+    public static final String EXTRA_KIND = "kind";
+    /** Código de divisa del catálogo; COP si falta. */
+    public static final String EXTRA_CURRENCY = "currency";
+    /** Hilos del pool; 0 o ausente usa uno por núcleo. */
+    public static final String EXTRA_THREADS = "threads";
+
+    private static final String TAG = "BatchAnalysisService";
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, TAG));
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent == null || intent.getStringExtra(EXTRA_INPUT) == null) {
+            Log.e(TAG, "Falta el extra '" + EXTRA_INPUT + "'");
+            stopSelf(startId);
+            return START_NOT_STICKY;
+        }
+        String input = intent.getStringExtra(EXTRA_INPUT);
+        String kind = intent.getStringExtra(EXTRA_KIND);
+        String currency = intent.getStringExtra(EXTRA_CURRENCY);
+        int threads = intent.getIntExtra(EXTRA_THREADS, 0);
+        executor.execute(() -> {
+            try {
+                analyze(new File(input), kind, currency, threads);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Falló el análisis de " + input, e);
+            } finally {
+                stopSelf(startId);
+            }
+        });
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        executor.shutdownNow();
+    }
+
+    private void analyze(File input, String kindName, String currencyCode, int threads) throws IOException {
+        if (!OpenCVLoader.initDebug()) throw new IOException("OpenCV no disponible");
+        BatchAnalyzer.Kind kind = "faces".equals(kindName) ? BatchAnalyzer.Kind.FACES : BatchAnalyzer.Kind.COINS;
+        CoinPipeline.CoinType[] coinTypes = null;
+        if (kind == BatchAnalyzer.Kind.COINS) {
+            CoinCatalogue catalogue = CoinCatalogue.load(this);
+            coinTypes = catalogue.get(catalogue.indexOf(currencyCode != null ? currencyCode : "COP")).getCoinTypes();
+        }
+
+        File outputDir = getExternalFilesDir("batch");
+        if (outputDir == null || (!outputDir.isDirectory() && !outputDir.mkdirs())) {
+            throw new IOException("Sin carpeta de salida");
+        }
+        File output = new File(outputDir, input.getName() + "." + kind.name().toLowerCase(Locale.ROOT) + ".bin");
+        BatchAnalyzer.Summary summary = new BatchAnalyzer(this, kind, coinTypes, threads).run(input, output);
+        Log.i(TAG, output + ": " + summary);
+    }
+}
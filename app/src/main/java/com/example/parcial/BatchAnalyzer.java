@@ -0,0 +1,486 @@
+package com.example.parcial;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.objdetect.CascadeClassifier;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Análisis fuera de línea de fotos (imread, o imreadmulti para TIFF de varias páginas) y
+ * videos (VideoCapture) con los mismos pipelines de la cámara, sin CameraBridgeViewBase.
+ *
+ * <p>El trabajo se parte en tareas: una por foto y, en los videos, tramos consecutivos de al
+ * menos {@link #SEGMENT_MIN_FRAMES} cuadros que cada hilo abre y recorre por su cuenta. Cada
+ * hilo del pool tiene su propio pipeline y detector y toma la siguiente tarea libre; OpenCV
+ * se limita a un hilo interno mientras tanto para no competir con el pool. Los resultados se
+ * escriben en el orden de las tareas, así el archivo no depende del reparto.
+ *
+ * <p>El archivo de salida es little-endian: cabecera ({@link #MAGIC}, tipo, nombres de las
+ * fuentes y de las clases) y luego un registro por cuadro: fuente, cuadro, cantidad y
+ * {@link #ITEM_BYTES} bytes por objeto (monedas: x, y, radio como float y denominación como
+ * int, -1 si no se reconoció; rostros: x, y, ancho y alto como int).
+ */
+public final class BatchAnalyzer {
+
+    public enum Kind {
+        COINS,
+        FACES
+    }
+
+    /** Resultado de una corrida, para medir el rendimiento. */
+    public static final class Summary {
+        public final int threads;
+        public final int sources;
+        public final long frames;
+        public final long elapsedMs;
+
+        Summary(int threads, int sources, long frames, long elapsedMs) {
+            this.threads = threads;
+            this.sources = sources;
+            this.frames = frames;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public double getFramesPerSecond() {
+            return elapsedMs == 0 ? 0.0 : 1000.0 * frames / elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d fuentes, %d cuadros en %d ms con %d hilos (%.1f cuadros/s)",
+                    sources, frames, elapsedMs, threads, getFramesPerSecond());
+        }
+    }
+
+    static final int MAGIC = 0x31544142; // "BAT1" en little-endian
+    static final int ITEM_BYTES = 16;
+    static final int SEGMENT_MIN_FRAMES = 150;
+
+    private static final String TAG = "BatchAnalyzer";
+    private static final int FRAME_HEADER_BYTES = 3 * Integer.BYTES;
+    /** Sin presupuesto: fuera de línea el gobernador nunca resigna calidad. */
+    private static final double NO_BUDGET_MS = 1e9;
+    /** La calibración queda apagada; el lado del marcador no se usa. */
+    private static final double MARKER_SIDE_MM = 40;
+    private static final int FACE_DETECT_INTERVAL = 5;
+    private static final float FACE_MIN_CONFIDENCE = 0.5f;
+    private static final String[] IMAGE_EXTENSIONS = {".png", ".jpg", ".jpeg", ".bmp", ".webp", ".tif", ".tiff"};
+    private static final String[] VIDEO_EXTENSIONS = {".mp4", ".3gp", ".mkv", ".webm", ".avi", ".mov"};
+
+    private final Context context;
+    private final Kind kind;
+    private final CoinPipeline.CoinType[] coinTypes;
+    private final int threads;
+
+    /**
+     * @param coinTypes denominaciones para {@link Kind#COINS}; se ignoran con rostros
+     * @param threads   hilos del pool; 0 usa uno por núcleo
+     */
+    public BatchAnalyzer(Context context, Kind kind, CoinPipeline.CoinType[] coinTypes, int threads) {
+        this.context = context.getApplicationContext();
+        this.kind = kind;
+        this.coinTypes = coinTypes;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /** Fotos y videos de {@code input} (una carpeta o un solo archivo), en orden de nombre. */
+    public static File[] listSources(File input) {
+        if (input.isFile()) return new File[]{input};
+        File[] files = input.listFiles((dir, name) -> isImage(name) || isVideo(name));
+        if (files == null) return new File[0];
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Analiza todo {@code input} y deja los resultados en {@code output}. Bloquea hasta
+     * terminar; no llamar desde el hilo principal. Requiere OpenCV cargado.
+     */
+    public Summary run(File input, File output) throws IOException {
+        File[] sources = listSources(input);
+        if (sources.length == 0) throw new IOException("Sin fotos ni videos en " + input);
+
+        List<Task> tasks = plan(sources);
+        List<Analyzer> analyzers = new ArrayList<>();
+        int previousThreads = Core.getNumThreads();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> new Thread(r, TAG));
+        long start = SystemClock.elapsedRealtime();
+        long frames = 0;
+        try {
+            for (int i = 0; i < threads; i++) {
+                analyzers.add(createAnalyzer());
+            }
+            if (threads > 1) Core.setNumThreads(1);
+            AtomicInteger next = new AtomicInteger();
+            for (Analyzer analyzer : analyzers) {
+                pool.execute(() -> work(analyzer, sources, tasks, next));
+            }
+            frames = write(sources, tasks, output);
+        } finally {
+            pool.shutdownNow();
+            awaitPool(pool);
+            Core.setNumThreads(previousThreads);
+            for (Analyzer analyzer : analyzers) {
+                analyzer.release();
+            }
+        }
+        Summary summary = new Summary(threads, sources.length, frames, SystemClock.elapsedRealtime() - start);
+        Log.i(TAG, output.getName() + ": " + summary);
+        return summary;
+    }
+
+    private List<Task> plan(File[] sources) {
+        List<Task> tasks = new ArrayList<>();
+        for (int s = 0; s < sources.length; s++) {
+            if (!isVideo(sources[s].getName())) {
+                tasks.add(new Task(s, 0, -1));
+                continue;
+            }
+            VideoCapture capture = new VideoCapture(sources[s].getAbsolutePath());
+            int frameCount = capture.isOpened() ? (int) capture.get(Videoio.CAP_PROP_FRAME_COUNT) : 0;
+            capture.release();
+            // Sin cantidad conocida el video entero es una tarea; el último tramo llega hasta el final
+            int segment = Math.max(SEGMENT_MIN_FRAMES, (frameCount + threads - 1) / threads);
+            int first = 0;
+            do {
+                int end = frameCount - first > segment ? first + segment : -1;
+                tasks.add(new Task(s, first, end));
+                first += segment;
+            } while (first < frameCount && tasks.get(tasks.size() - 1).endFrame != -1);
+        }
+        return tasks;
+    }
+
+    private Analyzer createAnalyzer() throws IOException {
+        if (kind == Kind.COINS) return new CoinAnalyzer(coinTypes);
+
+        // Un detector por hilo: YuNet si está, si no una cascada propia
+        ModelStore models = ModelStore.get(context);
+        models.awaitLoaded();
+        FaceDetector detector = models.hasYuNet() ? models.takeYuNet() : null;
+        if (detector == null) {
+            CascadeClassifier cascade = models.newFaceCascade();
+            if (cascade == null) throw new IOException("Sin modelo de rostros: " + models.getError());
+            detector = new ScaledCascadeDetector(cascade);
+        }
+        return new FaceAnalyzer(detector);
+    }
+
+    private static void work(Analyzer analyzer, File[] sources, List<Task> tasks, AtomicInteger next) {
+        int index;
+        while ((index = next.getAndIncrement()) < tasks.size()) {
+            Task task = tasks.get(index);
+            try {
+                if (Thread.currentThread().isInterrupted()) throw new IllegalStateException("Cancelado");
+                File source = sources[task.source];
+                if (isVideo(source.getName())) {
+                    analyzeVideo(analyzer, source, task);
+                } else {
+                    analyzeImage(analyzer, source, task);
+                }
+            } catch (RuntimeException e) {
+                task.error = e;
+            } finally {
+                task.done.countDown();
+            }
+        }
+    }
+
+    private static void analyzeImage(Analyzer analyzer, File file, Task task) {
+        List<Mat> pages = new ArrayList<>();
+        String path = file.getAbsolutePath();
+        if (!Imgcodecs.imreadmulti(path, pages, Imgcodecs.IMREAD_COLOR)) {
+            Mat single = Imgcodecs.imread(path, Imgcodecs.IMREAD_COLOR);
+            if (single.empty()) {
+                single.release();
+                throw new IllegalStateException("No se pudo leer " + file.getName());
+            }
+            pages.add(single);
+        }
+        try {
+            for (int page = 0; page < pages.size(); page++) {
+                analyzer.restart();
+                analyzer.analyze(pages.get(page), true, task.records.beginFrame(task.source, page));
+            }
+        } finally {
+            RecordedFrames.release(pages);
+        }
+    }
+
+    private static void analyzeVideo(Analyzer analyzer, File file, Task task) {
+        VideoCapture capture = new VideoCapture(file.getAbsolutePath());
+        Mat frame = new Mat();
+        try {
+            if (!capture.isOpened()) throw new IllegalStateException("No se pudo abrir " + file.getName());
+            seek(capture, file, task.firstFrame);
+            analyzer.restart();
+            for (int f = task.firstFrame; task.endFrame < 0 || f < task.endFrame; f++) {
+                if (!capture.read(frame) || frame.empty()) break;
+                analyzer.analyze(frame, false, task.records.beginFrame(task.source, f));
+            }
+        } finally {
+            frame.release();
+            capture.release();
+        }
+    }
+
+    /** Lleva el video al cuadro {@code frame}; si el backend no sabe buscar, lo recorre. */
+    private static void seek(VideoCapture capture, File file, int frame) {
+        if (frame == 0) return;
+        if (capture.set(Videoio.CAP_PROP_POS_FRAMES, frame)
+                && (int) capture.get(Videoio.CAP_PROP_POS_FRAMES) == frame) {
+            return;
+        }
+        capture.open(file.getAbsolutePath());
+        for (int f = 0; f < frame; f++) {
+            if (!capture.grab()) return;
+        }
+    }
+
+    /** Vuelca cada tarea apenas termina, en orden. Devuelve los cuadros escritos. */
+    private long write(File[] sources, List<Task> tasks, File output) throws IOException {
+        long frames = 0;
+        File tmp = new File(output.getPath() + ".tmp");
+        try (FileOutputStream os = new FileOutputStream(tmp); FileChannel channel = os.getChannel()) {
+            ByteBuffer header = header(sources);
+            while (header.hasRemaining()) channel.write(header);
+            for (Task task : tasks) {
+                try {
+                    task.done.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrumpido", e);
+                }
+                if (task.error != null) {
+                    throw new IOException(sources[task.source].getName() + ": " + task.error.getMessage(), task.error);
+                }
+                ByteBuffer records = task.records.finish();
+                while (records.hasRemaining()) channel.write(records);
+                frames += task.records.frameCount;
+                task.records = null;
+            }
+            os.getFD().sync();
+        }
+        if (!tmp.renameTo(output)) throw new IOException("No se pudo reemplazar " + output);
+        return frames;
+    }
+
+    private ByteBuffer header(File[] sources) {
+        List<byte[]> names = new ArrayList<>();
+        for (File source : sources) names.add(source.getName().getBytes(StandardCharsets.UTF_8));
+        int classCount = 0;
+        if (kind == Kind.COINS) {
+            classCount = coinTypes.length;
+            for (CoinPipeline.CoinType type : coinTypes) names.add(type.name.getBytes(StandardCharsets.UTF_8));
+        }
+        int bytes = 4 * Integer.BYTES;
+        for (byte[] name : names) bytes += Integer.BYTES + name.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(kind.ordinal()).putInt(sources.length).putInt(classCount);
+        for (byte[] name : names) buffer.putInt(name.length).put(name);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void awaitPool(ExecutorService pool) {
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                Log.w(TAG, "Esperando a los hilos de análisis");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean isImage(String name) {
+        return hasExtension(name, IMAGE_EXTENSIONS);
+    }
+
+    private static boolean isVideo(String name) {
+        return hasExtension(name, VIDEO_EXTENSIONS);
+    }
+
+    private static boolean hasExtension(String name, String[] extensions) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String extension : extensions) {
+            if (lower.endsWith(extension)) return true;
+        }
+        return false;
+    }
+
+    /** Una foto o un tramo de video; lo escribe un solo hilo y lo lee el escritor al terminar. */
+    private static final class Task {
+        final int source;
+        final int firstFrame;
+        /** Cuadro final exclusivo; -1 hasta el final del archivo. */
+        final int endFrame;
+        final CountDownLatch done = new CountDownLatch(1);
+        Records records = new Records();
+        RuntimeException error;
+
+        Task(int source, int firstFrame, int endFrame) {
+            this.source = source;
+            this.firstFrame = firstFrame;
+            this.endFrame = endFrame;
+        }
+    }
+
+    /** Registros de cuadro en un ByteBuffer que crece al doble cuando se llena. */
+    static final class Records {
+        private ByteBuffer buffer = ByteBuffer.allocate(4 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        private int countPosition = -1;
+        private int itemCount;
+        int frameCount;
+
+        Records beginFrame(int source, int frame) {
+            ensure(FRAME_HEADER_BYTES);
+            buffer.putInt(source).putInt(frame);
+            countPosition = buffer.position();
+            buffer.putInt(0);
+            itemCount = 0;
+            frameCount++;
+            return this;
+        }
+
+        void putCircle(float x, float y, float radius, int coin) {
+            ensure(ITEM_BYTES);
+            buffer.putFloat(x).putFloat(y).putFloat(radius).putInt(coin);
+            buffer.putInt(countPosition, ++itemCount);
+        }
+
+        void putBox(Rect box) {
+            ensure(ITEM_BYTES);
+            buffer.putInt(box.x).putInt(box.y).putInt(box.width).putInt(box.height);
+            buffer.putInt(countPosition, ++itemCount);
+        }
+
+        ByteBuffer finish() {
+            buffer.flip();
+            return buffer;
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() >= bytes) return;
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + bytes))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    /** Pipeline propio de un hilo del pool. */
+    private interface Analyzer {
+        /** El siguiente cuadro no continúa al anterior. */
+        void restart();
+
+        /** Analiza un cuadro BGR y agrega sus objetos a {@code out}. */
+        void analyze(Mat bgr, boolean still, Records out);
+
+        void release();
+    }
+
+    private static final class CoinAnalyzer implements Analyzer {
+        private final CoinPipeline pipeline;
+        private final Mat gray = new Mat();
+        private final Mat rgba = new Mat();
+
+        CoinAnalyzer(CoinPipeline.CoinType[] coinTypes) {
+            pipeline = new CoinPipeline(coinTypes, NO_BUDGET_MS, MARKER_SIDE_MM);
+        }
+
+        @Override
+        public void restart() {
+            pipeline.restart();
+        }
+
+        @Override
+        public void analyze(Mat bgr, boolean still, Records out) {
+            Imgproc.cvtColor(bgr, gray, Imgproc.COLOR_BGR2GRAY);
+            // El clasificador de color lee el cuadro en RGBA, como el de la cámara
+            Imgproc.cvtColor(bgr, rgba, Imgproc.COLOR_BGR2RGBA);
+            pipeline.process(gray, rgba, null);
+            CoinTracker tracks = pipeline.tracks();
+            for (int t = 0; t < tracks.size(); t++) {
+                out.putCircle(tracks.x(t), tracks.y(t), tracks.radius(t), tracks.denomination(t));
+            }
+        }
+
+        @Override
+        public void release() {
+            pipeline.release();
+            gray.release();
+            rgba.release();
+        }
+    }
+
+    /** Fotos: detector en cada una. Videos: detectar y seguir, como en la cámara. */
+    private static final class FaceAnalyzer implements Analyzer {
+        private final FaceDetector detector;
+        private final Mat gray = new Mat();
+        private FaceTracker tracker;
+
+        FaceAnalyzer(FaceDetector detector) {
+            this.detector = detector;
+        }
+
+        @Override
+        public void restart() {
+            if (tracker != null) tracker.release();
+            tracker = null;
+        }
+
+        @Override
+        public void analyze(Mat bgr, boolean still, Records out) {
+            Imgproc.cvtColor(bgr, gray, Imgproc.COLOR_BGR2GRAY);
+            Rect[] boxes;
+            if (still) {
+                boxes = detector.detect(gray);
+            } else if (tracker == null || tracker.shouldDetect()) {
+                if (tracker == null) {
+                    tracker = new FaceTracker(FACE_DETECT_INTERVAL,
+                            FaceTracker.RedetectPolicy.EVERY_N_OR_LOW_CONFIDENCE, FACE_MIN_CONFIDENCE);
+                }
+                boxes = detector.detect(gray);
+                tracker.reset(gray, boxes);
+            } else {
+                tracker.track(gray);
+                boxes = tracker.getBoxes();
+            }
+            for (Rect box : boxes) out.putBox(box);
+        }
+
+        @Override
+        public void release() {
+            if (tracker != null) tracker.release();
+            detector.release();
+            gray.release();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.parcial;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.Mat;
+import org.opencv.objdetect.CascadeClassifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Corre los benchmarks sobre cuadros grabados en
+ * Android/data/com.example.parcial/files/bench/&lt;tipo&gt;/ (png o jpg).
+ */
+public class BenchmarkActivity extends AppCompatActivity {
+
+    private static final String TAG = "BenchmarkActivity";
+    private static final int MAX_FRAMES = 300;
+
+    private TextView tvOutput;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_benchmark);
+
+        tvOutput = findViewById(R.id.tvBenchOutput);
+        Button btnTracking = findViewById(R.id.btnBenchTracking);
+        Button btnCascadeScale = findViewById(R.id.btnBenchCascadeScale);
+        Button btnFaceEngines = findViewById(R.id.btnBenchFaceEngines);
+        Button btnCircles = findViewById(R.id.btnBenchCircles);
+        Button btnBatch = findViewById(R.id.btnBenchBatch);
+
+        btnTracking.setOnClickListener(v -> runBenchmark(this::runTrackingBenchmark));
+        btnCascadeScale.setOnClickListener(v -> runBenchmark(this::runCascadeScaleBenchmark));
+        btnFaceEngines.setOnClickListener(v -> runBenchmark(this::runFaceEngineBenchmark));
+        btnCircles.setOnClickListener(v -> runBenchmark(this::runCircleEngineBenchmark));
+        btnBatch.setOnClickListener(v -> runBenchmark(this::runBatchScalingBenchmark));
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        executor.shutdownNow();
+    }
+
+    private interface Benchmark {
+        String run();
+    }
+
+    private void runBenchmark(Benchmark benchmark) {
+        if (!OpenCVLoader.initDebug()) {
+            tvOutput.setText("OpenCV NO pudo cargarse");
+            return;
+        }
+        tvOutput.setText("Ejecutando...");
+        executor.execute(() -> {
+            String report;
+            try {
+                report = benchmark.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Benchmark falló", e);
+                report = "Error: " + e.getMessage();
+            }
+            Log.i(TAG, report);
+            final String text = report;
+            runOnUiThread(() -> tvOutput.setText(text));
+        });
+    }
+
+    private File benchDir(String kind) {
+        return new File(getExternalFilesDir(null), "bench/" + kind);
+    }
+
+    /** Cascada compartida de {@link ModelStore}; no se libera aquí. */
+    private CascadeClassifier loadFaceClassifier() {
+        ModelStore models = ModelStore.get(this);
+        models.awaitLoaded();
+        return models.faceCascade();
+    }
+
+    private String runTrackingBenchmark() {
+        CascadeClassifier classifier = loadFaceClassifier();
+        if (classifier == null) {
+            return "Cascada no disponible en assets/models";
+        }
+        List<Mat> frames = RecordedFrames.loadGray(benchDir("faces"), MAX_FRAMES);
+        try {
+            StringBuilder report = new StringBuilder();
+            for (int interval : new int[]{1, 3, 5, 10}) {
+                report.append(FaceTrackingBenchmark.run(frames, classifier, interval,
+                        FaceTracker.RedetectPolicy.EVERY_N_OR_LOW_CONFIDENCE)).append("\n\n");
+            }
+            report.append(FaceTrackingBenchmark.run(frames, classifier, 30,
+                    FaceTracker.RedetectPolicy.ON_LOW_CONFIDENCE));
+            return report.toString();
+        } finally {
+            RecordedFrames.release(frames);
+        }
+    }
+
+    private String runCascadeScaleBenchmark() {
+        CascadeClassifier classifier = loadFaceClassifier();
+        if (classifier == null) {
+            return "Cascada no disponible en assets/models";
+        }
+        List<Mat> frames = RecordedFrames.loadGray(benchDir("faces"), MAX_FRAMES);
+        try {
+            return CascadeScaleBenchmark.run(frames, classifier);
+        } finally {
+            RecordedFrames.release(frames);
+        }
+    }
+
+    private String runFaceEngineBenchmark() {
+        CascadeClassifier classifier = loadFaceClassifier();
+        if (classifier == null) {
+            return "Cascada no disponible en assets/models";
+        }
+        List<FaceDetector> detectors = new ArrayList<>();
+        detectors.add(new ScaledCascadeDetector(classifier));
+        YuNetFaceDetector yunet = ModelStore.get(this).takeYuNet();
+        if (yunet != null) {
+            detectors.add(yunet);
+        }
+
+        List<Mat> frames = RecordedFrames.loadGray(benchDir("faces"), MAX_FRAMES);
+        try {
+            StringBuilder report = new StringBuilder();
+            for (int workingHeight : new int[]{480, 320, 240}) {
+                report.append(FaceDetectorBenchmark.run(frames, detectors, workingHeight)).append('\n');
+            }
+            return report.toString();
+        } finally {
+            for (FaceDetector detector : detectors) {
+                detector.release();
+            }
+            RecordedFrames.release(frames);
+        }
+    }
+
+    private String runCircleEngineBenchmark() {
+        // Los cuadros grabados son de monedas colombianas
+        CoinPipeline.CoinType[] coinTypes;
+        try {
+            CoinCatalogue catalogue = CoinCatalogue.load(this);
+            coinTypes = catalogue.get(catalogue.indexOf("COP")).getCoinTypes();
+        } catch (IOException e) {
+            return "Sin catálogo de monedas: " + e.getMessage();
+        }
+        List<CircleDetector> detectors = new ArrayList<>();
+        detectors.add(new HoughCircleDetector());
+        detectors.add(new PyramidHoughCircleDetector());
+        detectors.add(new KnownRadiusCircleDetector(coinTypes, CoinPipeline.TOLERANCE_PERCENTAGE));
+        detectors.add(new ContourCircleDetector());
+
+        List<Mat> frames = RecordedFrames.loadGray(benchDir("coins"), MAX_FRAMES);
+        try {
+            StringBuilder report = new StringBuilder();
+            for (double scale : new double[]{1.0, 0.75, 0.5}) {
+                report.append(CircleDetectorBenchmark.run(frames, detectors, coinTypes, scale)).append('\n');
+            }
+            return report.toString();
+        } finally {
+            for (CircleDetector detector : detectors) {
+                detector.release();
+            }
+            RecordedFrames.release(frames);
+        }
+    }
+
+    /**
+     * Corre el análisis por lotes de bench/batch (fotos o videos) con 1, 2, 4... hilos hasta
+     * uno por núcleo y compara el rendimiento con el de un hilo.
+     */
+    private String runBatchScalingBenchmark() {
+        CoinPipeline.CoinType[] coinTypes;
+        try {
+            CoinCatalogue catalogue = CoinCatalogue.load(this);
+            coinTypes = catalogue.get(catalogue.indexOf("COP")).getCoinTypes();
+        } catch (IOException e) {
+            return "Sin catálogo de monedas: " + e.getMessage();
+        }
+        File input = benchDir("batch");
+        File output = new File(getCacheDir(), "batch-bench.bin");
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        StringBuilder report = new StringBuilder();
+        double baseline = 0;
+        try {
+            for (int threads = 1; ; threads = Math.min(cores, threads * 2)) {
+                BatchAnalyzer.Summary summary =
+                        new BatchAnalyzer(this, BatchAnalyzer.Kind.COINS, coinTypes, threads).run(input, output);
+                if (threads == 1) baseline = summary.getFramesPerSecond();
+                report.append(String.format(Locale.US, "%s%n  aceleración x%.2f%n", summary,
+                        baseline == 0 ? 0.0 : summary.getFramesPerSecond() / baseline));
+                if (threads == cores) break;
+            }
+        } catch (IOException e) {
+            report.append("Error: ").append(e.getMessage());
+        } finally {
+            output.delete();
+        }
+        return report.toString();
+    }
+}
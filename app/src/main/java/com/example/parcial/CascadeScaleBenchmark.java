@@ -0,0 +1,69 @@
+package com.example.parcial;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.TickMeter;
+import org.opencv.objdetect.CascadeClassifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Velocidad y recall de la cascada a distintas escalas de trabajo. El recall se mide
+ * contra las detecciones a resolución completa (IoU &gt;= 0.5).
+ */
+public final class CascadeScaleBenchmark {
+
+    private static final double[] SCALES = {1.0, 0.5, 0.25};
+    private static final double MATCH_IOU = 0.5;
+
+    private CascadeScaleBenchmark() {
+    }
+
+    public static String run(List<Mat> grayFrames, CascadeClassifier classifier) {
+        if (grayFrames.isEmpty()) return "Sin cuadros grabados";
+
+        ScaledCascadeDetector detector = new ScaledCascadeDetector(classifier);
+        List<Rect[]> reference = new ArrayList<>();
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "Cascada por escala sobre %d cuadros%n", grayFrames.size()));
+
+        for (double scale : SCALES) {
+            TickMeter meter = new TickMeter();
+            int found = 0;
+            int referenceTotal = 0;
+            int recalled = 0;
+
+            for (int i = 0; i < grayFrames.size(); i++) {
+                meter.start();
+                Rect[] faces = detector.detect(grayFrames.get(i), scale);
+                meter.stop();
+                found += faces.length;
+
+                if (scale == 1.0) {
+                    reference.add(faces);
+                    continue;
+                }
+                for (Rect ref : reference.get(i)) {
+                    referenceTotal++;
+                    for (Rect face : faces) {
+                        if (FaceTracker.iou(ref, face) >= MATCH_IOU) {
+                            recalled++;
+                            break;
+                        }
+                    }
+                }
+            }
+
+            double recall = scale == 1.0 ? 1.0
+                    : referenceTotal == 0 ? 0 : (double) recalled / referenceTotal;
+            report.append(String.format(Locale.US,
+                    "  %.2fx: %.2f ms/cuadro, %d rostros, recall %.3f%n",
+                    scale, meter.getTimeMilli() / grayFrames.size(), found, recall));
+        }
+
+        detector.release();
+        return report.toString();
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.parcial;
+
+import org.opencv.core.Mat;
+
+/**
+ * Motor de búsqueda de círculos para la etapa de monedas. Cada instancia se usa desde un
+ * solo hilo.
+ */
+public interface CircleDetector {
+
+    String getName();
+
+    /**
+     * Busca círculos en {@code blurred}, que es el gris del sensor ya suavizado y reducido a
+     * {@code scale}. Los radios límite vienen en píxeles del sensor; los círculos se escriben
+     * en {@code out} en píxeles de {@code blurred}. Devuelve cuántos encontró.
+     */
+    int detect(Mat blurred, double scale, double minRadius, double maxRadius, CircleSet out);
+
+    /** Escala del plano de las monedas; sólo la usan los motores que conocen los radios en mm. */
+    default void setPixelsPerMm(double pixelsPerMm) {
+    }
+
+    void release();
+}
@@ -0,0 +1,176 @@
+package com.example.parcial;
+
+import android.os.Build;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Latencia, recall y precisión de cada motor de círculos sobre cuadros grabados de monedas.
+ * La referencia es HoughCircles a escala completa y rango de radios completo, quedándose sólo
+ * con los círculos que la clasificación acepta como moneda. La precisión cuenta, de los
+ * círculos que el motor clasifica como moneda, cuántos coinciden con la referencia. Para los
+ * que coinciden se informa el error medio de radio y cuántos reciben la misma denominación.
+ */
+public final class CircleDetectorBenchmark {
+
+    private static final int WARMUP_FRAMES = 3;
+    /** Un círculo encontrado coincide con la referencia si su centro cae a menos de esta fracción del radio. */
+    private static final double CENTER_TOLERANCE = 0.25;
+
+    private CircleDetectorBenchmark() {
+    }
+
+    public static String run(List<Mat> grayFrames, List<CircleDetector> detectors,
+                             CoinPipeline.CoinType[] coinTypes, double scale) {
+        if (grayFrames.isEmpty()) return "Sin cuadros grabados";
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "%s %s, API %d, %d núcleos, %d cuadros, escala %.2f%n",
+                Build.MANUFACTURER, Build.MODEL, Build.VERSION.SDK_INT,
+                Runtime.getRuntime().availableProcessors(), grayFrames.size(), scale));
+
+        Mat blurred = new Mat();
+        Mat small = new Mat();
+        Size kernel = new Size();
+        CircleSet found = new CircleSet();
+        RadiusTable radiusTable = new RadiusTable(coinTypes, CoinPipeline.TOLERANCE_PERCENTAGE);
+        CircleSet[] reference = referenceCircles(grayFrames, radiusTable, blurred, kernel);
+        int referenceTotal = 0;
+        for (CircleSet circles : reference) referenceTotal += circles.size();
+
+        double tickToMs = 1000.0 / Core.getTickFrequency();
+        double[] latencies = new double[grayFrames.size()];
+        try {
+            for (CircleDetector detector : detectors) {
+                for (int i = 0; i < Math.min(WARMUP_FRAMES, grayFrames.size()); i++) {
+                    prepare(grayFrames.get(i), scale, small, blurred, kernel);
+                    detect(detector, blurred, scale, found);
+                }
+
+                int matched = 0;
+                int sameCoin = 0;
+                double radiusError = 0;
+                int coins = 0;
+                int correctCoins = 0;
+                for (int i = 0; i < grayFrames.size(); i++) {
+                    prepare(grayFrames.get(i), scale, small, blurred, kernel);
+                    long start = Core.getTickCount();
+                    detect(detector, blurred, scale, found);
+                    latencies[i] = (Core.getTickCount() - start) * tickToMs;
+                    CircleSet frameReference = reference[i];
+                    for (int r = 0; r < frameReference.size(); r++) {
+                        int f = findMatch(frameReference, r, found, scale);
+                        if (f < 0) continue;
+                        matched++;
+                        double radius = found.radius(f) / scale;
+                        radiusError += Math.abs(radius - frameReference.radius(r));
+                        if (coinOf(radiusTable, radius) == coinOf(radiusTable, frameReference.radius(r))) {
+                            sameCoin++;
+                        }
+                    }
+                    for (int c = 0; c < found.size(); c++) {
+                        if (coinOf(radiusTable, found.radius(c) / scale) < 0) continue;
+                        coins++;
+                        if (matchesAny(reference[i], found.x(c) / scale, found.y(c) / scale,
+                                found.radius(c) / scale)) {
+                            correctCoins++;
+                        }
+                    }
+                }
+
+                Arrays.sort(latencies);
+                double mean = 0;
+                for (double l : latencies) mean += l;
+                mean /= latencies.length;
+
+                report.append(String.format(Locale.US,
+                        "  %-16s media %.2f ms, p95 %.2f ms, recall %d/%d (%.0f%%), precisión %d/%d (%.0f%%)%n"
+                                + "                   error de radio %.2f px, misma denominación %d/%d%n",
+                        detector.getName(), mean,
+                        latencies[Math.min(latencies.length - 1, (int) (latencies.length * 0.95))],
+                        matched, referenceTotal, percent(matched, referenceTotal),
+                        correctCoins, coins, percent(correctCoins, coins),
+                        matched == 0 ? 0.0 : radiusError / matched, sameCoin, matched));
+            }
+        } finally {
+            blurred.release();
+            small.release();
+        }
+        return report.toString();
+    }
+
+    private static void prepare(Mat gray, double scale, Mat small, Mat blurred, Size kernel) {
+        Mat input = gray;
+        if (scale < 1.0) {
+            Imgproc.resize(gray, small, new Size(), scale, scale, Imgproc.INTER_AREA);
+            input = small;
+        }
+        CoinPipeline.blur(input, blurred, scale, kernel);
+    }
+
+    private static void detect(CircleDetector detector, Mat blurred, double scale, CircleSet out) {
+        detector.detect(blurred, scale, CoinPipeline.MIN_RADIUS, CoinPipeline.MAX_RADIUS, out);
+    }
+
+    private static CircleSet[] referenceCircles(List<Mat> grayFrames, RadiusTable radiusTable,
+                                                Mat blurred, Size kernel) {
+        CircleDetector hough = new HoughCircleDetector();
+        CircleSet all = new CircleSet();
+        CircleSet[] reference = new CircleSet[grayFrames.size()];
+        try {
+            for (int i = 0; i < grayFrames.size(); i++) {
+                CoinPipeline.blur(grayFrames.get(i), blurred, 1.0, kernel);
+                detect(hough, blurred, 1.0, all);
+                reference[i] = new CircleSet();
+                for (int c = 0; c < all.size(); c++) {
+                    if (coinOf(radiusTable, all.radius(c)) >= 0) {
+                        reference[i].add(all.x(c), all.y(c), all.radius(c));
+                    }
+                }
+            }
+        } finally {
+            hough.release();
+        }
+        return reference;
+    }
+
+    /** Primer círculo encontrado que coincide con el de referencia {@code r}, o -1. */
+    private static int findMatch(CircleSet reference, int r, CircleSet found, double scale) {
+        for (int f = 0; f < found.size(); f++) {
+            if (matches(reference, r, found.x(f) / scale, found.y(f) / scale, found.radius(f) / scale)) {
+                return f;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matchesAny(CircleSet reference, double x, double y, double radius) {
+        for (int r = 0; r < reference.size(); r++) {
+            if (matches(reference, r, x, y, radius)) return true;
+        }
+        return false;
+    }
+
+    /** Centro a menos de {@link #CENTER_TOLERANCE} radios y radio dentro de la tolerancia de clasificación. */
+    private static boolean matches(CircleSet reference, int r, double x, double y, double radius) {
+        double referenceRadius = reference.radius(r);
+        return Math.hypot(x - reference.x(r), y - reference.y(r)) <= CENTER_TOLERANCE * referenceRadius
+                && Math.abs(radius - referenceRadius) <= referenceRadius * CoinPipeline.TOLERANCE_PERCENTAGE;
+    }
+
+    /** Los cuadros grabados se tomaron a la altura por defecto, sin marcador. */
+    private static int coinOf(RadiusTable radiusTable, double radiusPx) {
+        return radiusTable.match(radiusPx / CoinPipeline.DEFAULT_PIXELS_PER_MM, null, null);
+    }
+
+    private static double percent(int part, int total) {
+        return total == 0 ? 0.0 : 100.0 * part / total;
+    }
+}
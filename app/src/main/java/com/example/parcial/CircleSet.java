@@ -0,0 +1,51 @@
+package com.example.parcial;
+
+/**
+ * Círculos (x, y, radio) empaquetados en un float[] que sólo crece, con el mismo formato que
+ * la salida de HoughCircles para poder copiarla en bloque.
+ */
+public final class CircleSet {
+
+    /** Valores por círculo: x, y, radio. */
+    public static final int VALUES = 3;
+
+    float[] data = new float[VALUES * 16];
+    int count;
+
+    public int size() {
+        return count;
+    }
+
+    public float x(int i) {
+        return data[i * VALUES];
+    }
+
+    public float y(int i) {
+        return data[i * VALUES + 1];
+    }
+
+    public float radius(int i) {
+        return data[i * VALUES + 2];
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    void add(float x, float y, float radius) {
+        ensureCapacity(count + 1);
+        int base = count * VALUES;
+        data[base] = x;
+        data[base + 1] = y;
+        data[base + 2] = radius;
+        count++;
+    }
+
+    /** Asegura espacio para {@code circles} círculos conservando los actuales. */
+    void ensureCapacity(int circles) {
+        if (data.length >= circles * VALUES) return;
+        float[] grown = new float[Math.max(circles, count * 2) * VALUES];
+        System.arraycopy(data, 0, grown, 0, count * VALUES);
+        data = grown;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.parcial;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.parcial.CoinColorClassifier.Finish;
+import com.example.parcial.CoinColorClassifier.Tone;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Monedas por divisa y serie, leídas de {@code assets/catalogue/coins.json}. Si existe
+ * {@code coins.json} en la carpeta externa de la app se usa ese en su lugar, así se agregan
+ * divisas o series sin recompilar. Los diámetros van en milímetros; el acabado de cada serie
+ * ("mono" o "bimetal") y el tono de su anillo ("silver", "gold" o "copper") son opcionales.
+ */
+public final class CoinCatalogue {
+
+    private static final String TAG = "CoinCatalogue";
+    static final String ASSET = "catalogue/coins.json";
+    static final String OVERRIDE_FILE = "coins.json";
+
+    public static final class Currency {
+        public final String code;
+        /** Decimales con que se muestra el total. */
+        public final int decimals;
+        private final CoinPipeline.CoinType[] coinTypes;
+
+        Currency(String code, int decimals, CoinPipeline.CoinType[] coinTypes) {
+            this.code = code;
+            this.decimals = decimals;
+            this.coinTypes = coinTypes;
+        }
+
+        public CoinPipeline.CoinType[] getCoinTypes() {
+            return coinTypes.clone();
+        }
+
+        public CoinPipeline.CoinType getCoinType(int index) {
+            return coinTypes[index];
+        }
+
+        public int getCoinTypeCount() {
+            return coinTypes.length;
+        }
+    }
+
+    private final List<Currency> currencies;
+
+    private CoinCatalogue(List<Currency> currencies) {
+        this.currencies = currencies;
+    }
+
+    /** Catálogo de la carpeta externa si existe; si no, el empaquetado. */
+    public static CoinCatalogue load(Context context) throws IOException {
+        File override = new File(context.getExternalFilesDir(null), OVERRIDE_FILE);
+        try {
+            if (override.isFile()) {
+                try (InputStream in = new FileInputStream(override)) {
+                    Log.i(TAG, "Catálogo desde " + override);
+                    return parse(readText(in));
+                }
+            }
+            try (InputStream in = context.getAssets().open(ASSET)) {
+                return parse(readText(in));
+            }
+        } catch (JSONException e) {
+            throw new IOException("Catálogo de monedas inválido: " + e.getMessage(), e);
+        }
+    }
+
+    static CoinCatalogue parse(String json) throws JSONException {
+        JSONArray currencyArray = new JSONObject(json).getJSONArray("currencies");
+        List<Currency> currencies = new ArrayList<>();
+        for (int c = 0; c < currencyArray.length(); c++) {
+            JSONObject currency = currencyArray.getJSONObject(c);
+            JSONArray coinArray = currency.getJSONArray("coins");
+            CoinPipeline.CoinType[] coinTypes = new CoinPipeline.CoinType[coinArray.length()];
+            for (int i = 0; i < coinTypes.length; i++) {
+                coinTypes[i] = parseCoin(coinArray.getJSONObject(i));
+            }
+            if (coinTypes.length == 0) {
+                throw new JSONException("La divisa " + currency.getString("code") + " no tiene monedas");
+            }
+            currencies.add(new Currency(currency.getString("code"), currency.optInt("decimals", 0), coinTypes));
+        }
+        if (currencies.isEmpty()) throw new JSONException("Sin divisas");
+        return new CoinCatalogue(currencies);
+    }
+
+    private static CoinPipeline.CoinType parseCoin(JSONObject coin) throws JSONException {
+        JSONArray seriesArray = coin.getJSONArray("series");
+        double[] diameters = new double[seriesArray.length()];
+        Finish[] finishes = new Finish[seriesArray.length()];
+        Tone[] tones = new Tone[seriesArray.length()];
+        for (int s = 0; s < diameters.length; s++) {
+            JSONObject series = seriesArray.getJSONObject(s);
+            diameters[s] = series.getDouble("diameterMm");
+            String finish = series.optString("finish", "");
+            if (finish.equals("mono")) finishes[s] = Finish.MONO;
+            else if (finish.equals("bimetal")) finishes[s] = Finish.BIMETAL;
+            else if (!finish.isEmpty()) throw new JSONException("Acabado desconocido: " + finish);
+            String tone = series.optString("tone", "");
+            if (tone.equals("silver")) tones[s] = Tone.SILVER;
+            else if (tone.equals("gold")) tones[s] = Tone.GOLD;
+            else if (tone.equals("copper")) tones[s] = Tone.COPPER;
+            else if (!tone.isEmpty()) throw new JSONException("Tono desconocido: " + tone);
+        }
+        if (diameters.length == 0) throw new JSONException(coin.getString("name") + " no tiene series");
+        return new CoinPipeline.CoinType(coin.getString("name"), coin.getDouble("value"), diameters, finishes, tones);
+    }
+
+    public int size() {
+        return currencies.size();
+    }
+
+    public Currency get(int index) {
+        return currencies.get(index);
+    }
+
+    /** Índice de la divisa con ese código, o 0 si no está. */
+    public int indexOf(String code) {
+        for (int i = 0; i < currencies.size(); i++) {
+            if (currencies.get(i).code.equals(code)) return i;
+        }
+        return 0;
+    }
+
+    /** Mayor cantidad de denominaciones de una divisa, para dimensionar el estado. */
+    public int maxCoinTypeCount() {
+        int max = 0;
+        for (Currency currency : currencies) max = Math.max(max, currency.coinTypes.length);
+        return max;
+    }
+
+    private static String readText(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
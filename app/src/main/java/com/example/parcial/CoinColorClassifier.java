@@ -0,0 +1,185 @@
+package com.example.parcial;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+
+/**
+ * Mide el color de una moneda cuando el radio no alcanza (varias denominaciones caen dentro
+ * de la misma tolerancia). Sólo lee el cuadrado que encierra la moneda: warpAffine lo lleva a
+ * un parche fijo de {@link #PATCH}x{@link #PATCH} y se pasa a HSV. De ahí salen dos rasgos:
+ * el acabado, comparando los histogramas de tono del centro y del anillo exterior, y el tono
+ * del metal del anillo, por su saturación y tono medios (separa, p. ej., la 100 COP anterior,
+ * dorada, de la 200 COP nueva, plateada, aunque ambas sean de un solo metal).
+ * Mats y arreglos se reutilizan; se usa desde un solo hilo.
+ */
+public class CoinColorClassifier {
+
+    /** Acabado de una serie de moneda. */
+    public enum Finish {
+        MONO,
+        BIMETAL
+    }
+
+    /** Color del metal del anillo exterior (en las de un solo metal, de toda la moneda). */
+    public enum Tone {
+        SILVER,
+        GOLD,
+        COPPER
+    }
+
+    static final int PATCH = 48;
+    // Regiones como fracción del radio; se deja margen con el borde y con la unión de metales
+    private static final double INNER_MAX = 0.5;
+    private static final double OUTER_MIN = 0.72;
+    private static final double OUTER_MAX = 0.92;
+    private static final int HUE_BINS = 9;
+    /** Por debajo de esta saturación el píxel cuenta como gris (plateado). */
+    private static final int MIN_SATURATION = 60;
+    private static final int MIN_VALUE = 40;
+    /** Intersección de histogramas por debajo de la cual centro y anillo son metales distintos. */
+    private static final float BIMETAL_MAX_SIMILARITY = 0.45f;
+    // Umbrales de tono (H de OpenCV, 0-180). Iniciales: ajustarlos con capturas reales
+    /** Saturación media del anillo por debajo de la cual el metal es plateado. */
+    private static final int SILVER_MAX_SATURATION = 50;
+    /** Tono medio por debajo del cual el metal es cobrizo; hasta GOLD_MAX_HUE, dorado. */
+    private static final int COPPER_MAX_HUE = 13;
+    private static final int GOLD_MAX_HUE = 40;
+    /** Los rojos dan la vuelta al círculo de tono: desde aquí cuentan como tono negativo. */
+    private static final int HUE_WRAP = 150;
+
+    private static final byte OUTSIDE = 0;
+    private static final byte INNER = 1;
+    private static final byte OUTER = 2;
+
+    private final Mat transform = new Mat(2, 3, CvType.CV_64FC1);
+    private final double[] transformData = new double[6];
+    private final Size patchSize = new Size(PATCH, PATCH);
+    private final Mat patch = new Mat();
+    private final Mat rgb = new Mat();
+    private final Mat hsv = new Mat();
+    private final byte[] hsvData = new byte[PATCH * PATCH * 3];
+    private final byte[] regions = new byte[PATCH * PATCH];
+    // Un casillero por tono saturado y uno final para los grises
+    private final float[] innerHistogram = new float[HUE_BINS + 1];
+    private final float[] outerHistogram = new float[HUE_BINS + 1];
+    private Finish finish;
+    private Tone tone;
+
+    public CoinColorClassifier() {
+        double center = (PATCH - 1) / 2.0;
+        double radius = PATCH / 2.0;
+        for (int y = 0; y < PATCH; y++) {
+            for (int x = 0; x < PATCH; x++) {
+                double d = Math.hypot(x - center, y - center) / radius;
+                byte region = OUTSIDE;
+                if (d < INNER_MAX) region = INNER;
+                else if (d > OUTER_MIN && d < OUTER_MAX) region = OUTER;
+                regions[y * PATCH + x] = region;
+            }
+        }
+    }
+
+    /**
+     * Mide la moneda de centro ({@code cx}, {@code cy}) y radio {@code r} en el cuadro RGBA
+     * {@code rgba}; el resultado queda en {@link #finish()} y {@link #tone()}. Devuelve false
+     * (y ambos en null) si la moneda no cabe entera en el cuadro.
+     */
+    public boolean measure(Mat rgba, double cx, double cy, double r) {
+        finish = null;
+        tone = null;
+        if (cx - r < 0 || cy - r < 0 || cx + r >= rgba.cols() || cy + r >= rgba.rows()) return false;
+
+        // Transformación inversa: píxel del parche -> píxel del cuadro
+        double step = 2 * r / PATCH;
+        transformData[0] = step;
+        transformData[1] = 0;
+        transformData[2] = cx - r + step / 2 - 0.5;
+        transformData[3] = 0;
+        transformData[4] = step;
+        transformData[5] = cy - r + step / 2 - 0.5;
+        transform.put(0, 0, transformData);
+        Imgproc.warpAffine(rgba, patch, transform, patchSize, Imgproc.INTER_LINEAR | Imgproc.WARP_INVERSE_MAP);
+        Imgproc.cvtColor(patch, rgb, Imgproc.COLOR_RGBA2RGB);
+        Imgproc.cvtColor(rgb, hsv, Imgproc.COLOR_RGB2HSV);
+        hsv.get(0, 0, hsvData);
+
+        measurePatch(hsvData);
+        return true;
+    }
+
+    /** Acabado de la última moneda medida, o null. */
+    public Finish finish() {
+        return finish;
+    }
+
+    /** Tono del anillo de la última moneda medida, o null si no parece metal. */
+    public Tone tone() {
+        return tone;
+    }
+
+    public void release() {
+        transform.release();
+        patch.release();
+        rgb.release();
+        hsv.release();
+    }
+
+    /**
+     * Llena {@link #finish} con la intersección de los histogramas normalizados del centro y
+     * del anillo (1 = iguales) y {@link #tone} con la saturación y el tono medios del anillo.
+     * {@code pixels} es el parche HSV.
+     */
+    private void measurePatch(byte[] pixels) {
+        Arrays.fill(innerHistogram, 0f);
+        Arrays.fill(outerHistogram, 0f);
+        int innerCount = 0;
+        int outerCount = 0;
+        int litCount = 0;
+        int saturationSum = 0;
+        int saturatedCount = 0;
+        int hueSum = 0;
+        for (int i = 0; i < regions.length; i++) {
+            byte region = regions[i];
+            if (region == OUTSIDE) continue;
+            int hue = pixels[3 * i] & 0xFF;
+            int saturation = pixels[3 * i + 1] & 0xFF;
+            int value = pixels[3 * i + 2] & 0xFF;
+            boolean saturated = saturation >= MIN_SATURATION && value >= MIN_VALUE;
+            int bin = saturated ? Math.min(HUE_BINS - 1, hue * HUE_BINS / 180) : HUE_BINS;
+            if (region == INNER) {
+                innerHistogram[bin]++;
+                innerCount++;
+            } else {
+                outerHistogram[bin]++;
+                outerCount++;
+                if (value >= MIN_VALUE) {
+                    litCount++;
+                    saturationSum += saturation;
+                }
+                if (saturated) {
+                    saturatedCount++;
+                    hueSum += hue >= HUE_WRAP ? hue - 180 : hue;
+                }
+            }
+        }
+
+        float intersection = 0f;
+        for (int b = 0; b <= HUE_BINS; b++) {
+            intersection += Math.min(innerHistogram[b] / innerCount, outerHistogram[b] / outerCount);
+        }
+        finish = intersection < BIMETAL_MAX_SIMILARITY ? Finish.BIMETAL : Finish.MONO;
+
+        if (litCount == 0) return;
+        if (saturationSum < SILVER_MAX_SATURATION * litCount || saturatedCount == 0) {
+            tone = Tone.SILVER;
+            return;
+        }
+        float meanHue = (float) hueSum / saturatedCount;
+        if (meanHue < COPPER_MAX_HUE) tone = Tone.COPPER;
+        else if (meanHue <= GOLD_MAX_HUE) tone = Tone.GOLD;
+    }
+}
@@ -8,40 +8,56 @@ import android.os.Bundle;
 import android.util.Log;
 import android.view.SurfaceView;
 import android.view.WindowManager;
+import android.widget.Button;
 import android.widget.TextView;
 
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import org.opencv.android.CameraBridgeViewBase;
+import org.opencv.android.CameraOverlayView;
+import org.opencv.android.FrameOverlay;
+import org.opencv.android.FrameQueue;
 import org.opencv.android.OpenCVLoader;
-import org.opencv.core.Core;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.Point;
-import org.opencv.core.Scalar;
-import org.opencv.core.Size;
-import org.opencv.imgproc.Imgproc;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 import java.util.Locale;
 
 public class CoinDetectionActivity extends AppCompatActivity implements CameraBridgeViewBase.CvCameraViewListener2 {
 
     private static final String TAG = "CoinDetectionActivity";
-    private static final double TOLERANCE_PERCENTAGE = 0.10;
-    private static final Scalar LABEL_COLOR = new Scalar(255, 0, 0, 255);
-    private static final Scalar CIRCLE_COLOR = new Scalar(0, 255, 0, 255);
-    private static final Scalar UNKNOWN_CIRCLE_COLOR = new Scalar(0, 0, 255, 255);
+    // Corregir orientación para que el eje X y Y coincidan con el movimiento real de la cámara;
+    // la rota la vista al dibujar, el cuadro queda como lo entrega el sensor
+    private static final int DISPLAY_ROTATION = 90;
+    private static final double FRAME_BUDGET_MS = 33;
+    // Lado del marcador ArUco 4x4_50 impreso para calibrar
+    private static final double MARKER_SIDE_MM = 40;
+    // Estado publicado: divisa y una casilla entera por denominación; total y escala como double
+    private static final int STATUS_CURRENCY = 0;
+    private static final int STATUS_FIRST_COUNT = 1;
+    private static final int STATUS_TOTAL = 0;
+    private static final int STATUS_PX_PER_MM = 1;
+    private static final String[] CIRCLE_ENGINES = {"Hough", "Hough piramidal", "Radios conocidos", "Contornos"};
 
     private CameraBridgeViewBase cameraView;
-    private Mat gray, circles, rotated;
+    private volatile CoinPipeline pipeline;
     private TextView tvInfo;
+    private Button btnCircleEngine;
+    // Igual que la divisa: la UI elige el motor y el hilo de la cámara lo crea y lo cambia
+    private volatile int circleEngineIndex = 0;
+    private int activeEngineIndex = 0;
+    private Button btnCalibrate;
+    private volatile boolean calibrationEnabled = false;
+    private Button btnCurrency;
+    // La UI elige la divisa; el hilo de la cámara rehace el pipeline cuando cambia
+    private volatile int pendingCurrencyIndex = 0;
+    private volatile int currencyIndex = 0;
 
     private final int CAMERA_PERMISSION = 100;
     private boolean hasCameraPermission = false;
-    private List<CoinType> coinTypes;
+    private CoinCatalogue catalogue;
+    private StatusChannel status;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -50,6 +66,12 @@ public class CoinDetectionActivity extends AppCompatActivity implements CameraBr
         setContentView(R.layout.activity_coin_detection);
 
         tvInfo = findViewById(R.id.tvInfo);
+        btnCircleEngine = findViewById(R.id.btnCircleEngine);
+        btnCircleEngine.setOnClickListener(v -> cycleCircleEngine());
+        btnCalibrate = findViewById(R.id.btnCalibrate);
+        btnCalibrate.setOnClickListener(v -> toggleCalibration());
+        btnCurrency = findViewById(R.id.btnCurrency);
+        btnCurrency.setOnClickListener(v -> cycleCurrency());
 
         // --- Permiso de cámara ---
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA)
@@ -66,13 +88,62 @@ public class CoinDetectionActivity extends AppCompatActivity implements CameraBr
         cameraView = findViewById(R.id.cameraView);
         cameraView.setVisibility(SurfaceView.VISIBLE);
         cameraView.setCvCameraViewListener(this);
+        cameraView.setPreviewOrientation(DISPLAY_ROTATION, false);
+        cameraView.setOverlayView((CameraOverlayView) findViewById(R.id.overlayView));
+        // Captura, búsqueda y dibujo en hilos propios: la cámara no espera a una búsqueda
+        // lenta y, si la búsqueda se atrasa, se salta al cuadro más reciente
+        cameraView.enableFramePipeline(1, FrameQueue.DropPolicy.DROP_OLDEST);
+
+        try {
+            catalogue = CoinCatalogue.load(this);
+        } catch (IOException e) {
+            Log.e(TAG, "No se pudo leer el catálogo de monedas", e);
+            tvInfo.setText("Sin catálogo de monedas: " + e.getMessage());
+            btnCurrency.setEnabled(false);
+            return;
+        }
+        btnCurrency.setText("Divisa: " + catalogue.get(0).code);
+        status = new StatusChannel(STATUS_FIRST_COUNT + catalogue.maxCoinTypeCount(), 2, this::buildSummary);
+    }
 
-        coinTypes = initializeCoinTypes();
+    private void cycleCurrency() {
+        int next = (pendingCurrencyIndex + 1) % catalogue.size();
+        pendingCurrencyIndex = next;
+        btnCurrency.setText("Divisa: " + catalogue.get(next).code);
+    }
+
+    private void cycleCircleEngine() {
+        circleEngineIndex = (circleEngineIndex + 1) % CIRCLE_ENGINES.length;
+        btnCircleEngine.setText("Círculos: " + CIRCLE_ENGINES[circleEngineIndex]);
+    }
+
+    private void toggleCalibration() {
+        calibrationEnabled = !calibrationEnabled;
+        btnCalibrate.setText(calibrationEnabled ? "Marcador: sí" : "Marcador: no");
+        CoinPipeline current = pipeline;
+        if (current != null) {
+            current.setCalibrationEnabled(calibrationEnabled);
+        }
+    }
+
+    private CircleDetector createCircleDetector(int engineIndex, CoinPipeline.CoinType[] coinTypes) {
+        switch (engineIndex) {
+            case 1:
+                return new PyramidHoughCircleDetector();
+            case 2:
+                return new KnownRadiusCircleDetector(coinTypes, CoinPipeline.TOLERANCE_PERCENTAGE);
+            case 3:
+                return new ContourCircleDetector();
+            default:
+                return new HoughCircleDetector();
+        }
     }
 
     @Override
     protected void onResume() {
         super.onResume();
+        if (catalogue == null) return;
+        status.attach(tvInfo);
 
         // Cargar OpenCV directamente
         if (hasCameraPermission && OpenCVLoader.initDebug()) {
@@ -107,6 +178,7 @@ public class CoinDetectionActivity extends AppCompatActivity implements CameraBr
     @Override
     protected void onPause() {
         super.onPause();
+        if (status != null) status.detach();
         if (cameraView != null) cameraView.disableView();
     }
 
@@ -120,164 +192,80 @@ public class CoinDetectionActivity extends AppCompatActivity implements CameraBr
 
     @Override
     public void onCameraViewStarted(int width, int height) {
-        gray = new Mat();
-        circles = new Mat();
-        rotated = new Mat();
+        pipeline = createPipeline(pendingCurrencyIndex);
+    }
+
+    /** Pipeline para la divisa {@code index} con el motor y la calibración elegidos. */
+    private CoinPipeline createPipeline(int index) {
+        CoinPipeline.CoinType[] coinTypes = catalogue.get(index).getCoinTypes();
+        CoinPipeline created = new CoinPipeline(coinTypes, FRAME_BUDGET_MS, MARKER_SIDE_MM);
+        int engine = circleEngineIndex;
+        if (engine != 0) {
+            created.setCircleDetector(createCircleDetector(engine, coinTypes));
+        }
+        activeEngineIndex = engine;
+        created.setCalibrationEnabled(calibrationEnabled);
+        currencyIndex = index;
+        return created;
     }
 
     @Override
     public void onCameraViewStopped() {
-        gray.release();
-        circles.release();
-        rotated.release();
+        pipeline.release();
     }
 
     @Override
     public Mat onCameraFrame(CameraBridgeViewBase.CvCameraViewFrame inputFrame) {
-        Mat rgba = inputFrame.rgba();
-
-        // Corregir orientación para que el eje X y Y coincidan con el movimiento real de la cámara
-        Core.rotate(rgba, rotated, Core.ROTATE_90_CLOCKWISE);
-
-        if (gray.empty() || gray.rows() != rotated.rows() || gray.cols() != rotated.cols()) {
-            gray.release();
-            gray = new Mat(rotated.size(), CvType.CV_8UC1);
+        // La búsqueda de círculos no depende de la orientación: se busca sobre el plano Y del sensor,
+        // las monedas se anotan en el overlay y la vista rota cuadro y anotaciones al dibujar
+        int requested = pendingCurrencyIndex;
+        if (requested != currencyIndex) {
+            // Otra divisa cambia radios y denominaciones: el pipeline se rehace entero
+            pipeline.release();
+            pipeline = createPipeline(requested);
         }
-
-        Imgproc.cvtColor(rotated, gray, Imgproc.COLOR_RGBA2GRAY);
-
-        Imgproc.GaussianBlur(gray, gray, new Size(9, 9), 2, 2);
-
-        // Detectar círculos (monedas)
-        Imgproc.HoughCircles(
-                gray,
-                circles,
-                Imgproc.CV_HOUGH_GRADIENT,
-                1.5,
-                80,
-                100,
-                40,
-                30,   // minRadius
-                200   // maxRadius
-        );
-
-        double totalAmount = 0.0;
-        resetCoinCounts();
-
-        // Dibujar círculos detectados y etiquetar denominaciones
-        if (circles.cols() > 0) {
-            for (int i = 0; i < circles.cols(); i++) {
-                double[] data = circles.get(0, i);
-                if (data == null) continue;
-
-                Point center = new Point(data[0], data[1]);
-                double radius = data[2];
-
-                CoinType matched = findMatchingCoin(radius);
-                if (matched != null) {
-                    Imgproc.circle(rotated, center, (int) radius, CIRCLE_COLOR, 4);
-                    Imgproc.putText(
-                            rotated,
-                            matched.name,
-                            new Point(center.x - 30, center.y - 10),
-                            Imgproc.FONT_HERSHEY_SIMPLEX,
-                            0.7,
-                            LABEL_COLOR,
-                            2
-                    );
-
-                    matched.count++;
-                    totalAmount += matched.value;
-                } else {
-                    Imgproc.circle(rotated, center, (int) radius, UNKNOWN_CIRCLE_COLOR, 4);
-                    Imgproc.putText(
-                            rotated,
-                            "?",
-                            new Point(center.x - 10, center.y - 10),
-                            Imgproc.FONT_HERSHEY_SIMPLEX,
-                            0.7,
-                            UNKNOWN_CIRCLE_COLOR,
-                            2
-                    );
-                }
-            }
-        }
-
-        final double finalTotalAmount = totalAmount;
-        runOnUiThread(() -> tvInfo.setText(buildSummary(finalTotalAmount)));
-
-        return rotated;
-    }
-
-    private List<CoinType> initializeCoinTypes() {
-        List<CoinType> list = new ArrayList<>();
-        list.add(new CoinType("50 COP", 50.0, 82.6, 64.4));
-        list.add(new CoinType("100 COP", 100.0, 86.2, 75.2));
-        list.add(new CoinType("200 COP", 200.0, 91.6, 85.0));
-        list.add(new CoinType("500 COP", 500.0, 89.0, 87.4));
-        list.add(new CoinType("1000 COP", 1000.0, 100.8, 100.8));
-        return list;
-    }
-
-    private void resetCoinCounts() {
-        for (CoinType coin : coinTypes) {
-            coin.count = 0;
+        int engine = circleEngineIndex;
+        if (engine != activeEngineIndex) {
+            pipeline.setCircleDetector(createCircleDetector(engine, catalogue.get(currencyIndex).getCoinTypes()));
+            activeEngineIndex = engine;
         }
-    }
-
-    private CoinType findMatchingCoin(double detectedRadius) {
-        CoinType bestMatch = null;
-        double bestDifference = Double.MAX_VALUE;
 
-        for (CoinType coin : coinTypes) {
-            double[] candidateRadii = {coin.radiusOld, coin.radiusNew};
-            for (double candidateRadius : candidateRadii) {
-                double difference = Math.abs(detectedRadius - candidateRadius);
-                double margin = candidateRadius * TOLERANCE_PERCENTAGE;
+        FrameOverlay overlay = cameraView.beginOverlay();
+        pipeline.process(inputFrame.gray(), inputFrame.rgba(), overlay);
+        cameraView.publishOverlay();
 
-                if (difference <= margin && difference < bestDifference) {
-                    bestDifference = difference;
-                    bestMatch = coin;
-                }
-            }
+        int coinCount = catalogue.get(requested).getCoinTypeCount();
+        status.setInt(STATUS_CURRENCY, requested);
+        for (int i = 0; i < coinCount; i++) {
+            status.setInt(STATUS_FIRST_COUNT + i, pipeline.getCount(i));
         }
+        status.setDouble(STATUS_TOTAL, pipeline.getTotalAmount());
+        status.setDouble(STATUS_PX_PER_MM, pipeline.getPixelsPerMm());
 
-        return bestMatch;
+        return inputFrame.rgba();
     }
 
-    private String buildSummary(double totalAmount) {
-        StringBuilder builder = new StringBuilder();
-
-        for (CoinType coin : coinTypes) {
-            if (coin.count > 0) {
+    /** Corre en el hilo principal con los conteos ya copiados del canal de estado. */
+    private void buildSummary(StatusChannel values, StringBuilder builder) {
+        CoinCatalogue.Currency currency = catalogue.get(values.getInt(STATUS_CURRENCY));
+        for (int i = 0; i < currency.getCoinTypeCount(); i++) {
+            int count = values.getInt(STATUS_FIRST_COUNT + i);
+            if (count > 0) {
                 if (builder.length() > 0) {
                     builder.append("  ");
                 }
-                builder.append(String.format(Locale.getDefault(), "%s = %dx", coin.name, coin.count));
+                builder.append(currency.getCoinType(i).name).append(" = ").append(count).append('x');
             }
         }
 
         if (builder.length() > 0) {
             builder.append("  ");
         }
-        builder.append(String.format(Locale.getDefault(), "Total: %.0f COP", totalAmount));
-
-        return builder.toString();
-    }
-
-    private static class CoinType {
-        String name;
-        double value;
-        double radiusOld;
-        double radiusNew;
-        int count;
-
-        CoinType(String name, double value, double radiusOld, double radiusNew) {
-            this.name = name;
-            this.value = value;
-            this.radiusOld = radiusOld;
-            this.radiusNew = radiusNew;
-            this.count = 0;
+        builder.append(String.format(Locale.getDefault(), "Total: %." + currency.decimals + "f %s",
+                values.getDouble(STATUS_TOTAL), currency.code));
+        double pixelsPerMm = values.getDouble(STATUS_PX_PER_MM);
+        if (pixelsPerMm > 0) {
+            builder.append(String.format(Locale.getDefault(), "  (%.2f px/mm)", pixelsPerMm));
         }
     }
 }
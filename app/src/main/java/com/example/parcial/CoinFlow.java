@@ -0,0 +1,182 @@
+package com.example.parcial;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.video.SparsePyrLKOpticalFlow;
+
+import java.util.Arrays;
+
+/**
+ * Mueve las pistas de {@link CoinTracker} entre detecciones con flujo óptico Lucas-Kanade
+ * sobre esquinas sembradas dentro de cada moneda. Cada pista se desplaza con la mediana de
+ * sus puntos; la mediana de todos los puntos es el movimiento global (la cámara sobre la
+ * mesa), que se acumula desde la última siembra. Los puntos viven en la imagen de trabajo;
+ * las pistas, en píxeles del sensor. No crea objetos Java por cuadro.
+ */
+public class CoinFlow {
+
+    private static final int MAX_CORNERS = 240;
+    private static final double CORNER_QUALITY = 0.01;
+    private static final double CORNER_MIN_DISTANCE = 5;
+    /** Sólo se siembra en el interior de la moneda, lejos del fondo. */
+    private static final double SEED_RADIUS_FRACTION = 0.8;
+    private static final Scalar MASK_ON = new Scalar(255);
+    private static final Scalar MASK_OFF = new Scalar(0);
+
+    private final SparsePyrLKOpticalFlow flow = SparsePyrLKOpticalFlow.create(new Size(15, 15), 2);
+    private final Mat prevGray = new Mat();
+    private final Mat mask = new Mat();
+    private final MatOfPoint corners = new MatOfPoint();
+    private final MatOfPoint2f prevPts = new MatOfPoint2f();
+    private final MatOfPoint2f nextPts = new MatOfPoint2f();
+    private final MatOfByte status = new MatOfByte();
+    private final Point center = new Point();
+
+    private final int[] cornerBuf = new int[MAX_CORNERS * 2];
+    private final float[] prevBuf = new float[MAX_CORNERS * 2];
+    private final float[] nextBuf = new float[MAX_CORNERS * 2];
+    private final byte[] statusBuf = new byte[MAX_CORNERS];
+    private final int[] owner = new int[MAX_CORNERS];
+    private final float[] scratchX = new float[MAX_CORNERS];
+    private final float[] scratchY = new float[MAX_CORNERS];
+
+    private int pointCount;
+    private int seededCount;
+    private double seedScale = 1.0;
+    private double motionX;
+    private double motionY;
+
+    /** Siembra puntos dentro de las pistas actuales sobre {@code input}, reducido a {@code scale}. */
+    public void seed(Mat input, CoinTracker tracker, double scale) {
+        input.copyTo(prevGray);
+        seedScale = scale;
+        motionX = 0;
+        motionY = 0;
+        pointCount = 0;
+        seededCount = 0;
+        if (tracker.size() == 0) return;
+
+        mask.create(input.rows(), input.cols(), CvType.CV_8UC1);
+        mask.setTo(MASK_OFF);
+        for (int t = 0; t < tracker.size(); t++) {
+            center.x = tracker.x(t) * scale;
+            center.y = tracker.y(t) * scale;
+            int r = (int) (tracker.radius(t) * scale * SEED_RADIUS_FRACTION);
+            if (r > 0) Imgproc.circle(mask, center, r, MASK_ON, -1);
+        }
+        Imgproc.goodFeaturesToTrack(input, corners, MAX_CORNERS, CORNER_QUALITY, CORNER_MIN_DISTANCE, mask);
+
+        int found = (int) corners.total();
+        if (found == 0) return;
+        corners.get(0, 0, cornerBuf);
+        for (int i = 0; i < found; i++) {
+            int px = cornerBuf[2 * i];
+            int py = cornerBuf[2 * i + 1];
+            int track = ownerOf(tracker, px / scale, py / scale);
+            if (track < 0) continue;
+            prevBuf[2 * pointCount] = px;
+            prevBuf[2 * pointCount + 1] = py;
+            owner[pointCount] = track;
+            pointCount++;
+        }
+        seededCount = pointCount;
+    }
+
+    /**
+     * Lleva las pistas al cuadro {@code input}. Las que no tienen puntos vivos avanzan con su
+     * velocidad. Devuelve falso si el flujo no es confiable (cambió la escala o se perdió más
+     * de la mitad de los puntos sembrados): conviene una detección completa.
+     */
+    public boolean track(Mat input, CoinTracker tracker, double scale) {
+        if (scale != seedScale || prevGray.cols() != input.cols() || prevGray.rows() != input.rows()) {
+            return false;
+        }
+        if (pointCount == 0) {
+            for (int t = 0; t < tracker.size(); t++) tracker.coast(t);
+            return seededCount == 0;
+        }
+
+        prevPts.alloc(pointCount);
+        prevPts.put(0, 0, prevBuf);
+        flow.calc(prevGray, input, prevPts, nextPts, status);
+        nextPts.get(0, 0, nextBuf);
+        status.get(0, 0, statusBuf);
+        input.copyTo(prevGray);
+
+        float inverseScale = (float) (1.0 / scale);
+        int good = 0;
+        for (int i = 0; i < pointCount; i++) {
+            if (statusBuf[i] == 0) continue;
+            scratchX[good] = nextBuf[2 * i] - prevBuf[2 * i];
+            scratchY[good] = nextBuf[2 * i + 1] - prevBuf[2 * i + 1];
+            good++;
+        }
+        if (good > 0) {
+            motionX += median(scratchX, good) * inverseScale;
+            motionY += median(scratchY, good) * inverseScale;
+        }
+
+        for (int t = 0; t < tracker.size(); t++) {
+            int n = 0;
+            for (int i = 0; i < pointCount; i++) {
+                if (owner[i] != t || statusBuf[i] == 0) continue;
+                scratchX[n] = nextBuf[2 * i] - prevBuf[2 * i];
+                scratchY[n] = nextBuf[2 * i + 1] - prevBuf[2 * i + 1];
+                n++;
+            }
+            if (n > 0) {
+                tracker.move(t, median(scratchX, n) * inverseScale, median(scratchY, n) * inverseScale);
+            } else {
+                tracker.coast(t);
+            }
+        }
+
+        // Sólo los puntos vivos pasan al siguiente cuadro
+        int write = 0;
+        for (int i = 0; i < pointCount; i++) {
+            if (statusBuf[i] == 0) continue;
+            prevBuf[2 * write] = nextBuf[2 * i];
+            prevBuf[2 * write + 1] = nextBuf[2 * i + 1];
+            owner[write] = owner[i];
+            write++;
+        }
+        pointCount = write;
+        return pointCount * 2 >= seededCount;
+    }
+
+    /** Movimiento global acumulado desde la última siembra, en píxeles del sensor. */
+    public double getGlobalMotion() {
+        return Math.hypot(motionX, motionY);
+    }
+
+    public void release() {
+        prevGray.release();
+        mask.release();
+        corners.release();
+        prevPts.release();
+        nextPts.release();
+        status.release();
+    }
+
+    private static int ownerOf(CoinTracker tracker, double sx, double sy) {
+        for (int t = 0; t < tracker.size(); t++) {
+            double dx = sx - tracker.x(t);
+            double dy = sy - tracker.y(t);
+            double r = tracker.radius(t);
+            if (dx * dx + dy * dy <= r * r) return t;
+        }
+        return -1;
+    }
+
+    private static float median(float[] values, int n) {
+        Arrays.sort(values, 0, n);
+        return (n % 2 == 1) ? values[n / 2] : 0.5f * (values[n / 2 - 1] + values[n / 2]);
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.parcial;
+
+import org.opencv.android.FrameOverlay;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import com.example.parcial.CoinColorClassifier.Finish;
+import com.example.parcial.CoinColorClassifier.Tone;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Etapa de monedas: suavizado y búsqueda de círculos sobre el gris del sensor, clasificación
+ * por radio y anotaciones en un {@link FrameOverlay}, en coordenadas del sensor. La búsqueda completa corre cada
+ * {@link #DETECT_INTERVAL} cuadros, o antes si la cámara se movió o el flujo se perdió; entre
+ * medias las monedas siguen su pista con {@link CoinFlow} y el total sale de la denominación
+ * votada de cada pista ({@link CoinTracker}), así no parpadea.
+ *
+ * <p>Con el motor Hough por defecto, en régimen estable no crea objetos Java por cuadro: los
+ * círculos quedan en un {@link CircleSet} reutilizado, los tamaños son campos fijos, los
+ * conteos quedan en arreglos primitivos y las anotaciones reusan los arreglos del overlay. Los
+ * otros motores sí asignan algo por cuadro: contornos (un MatOfPoint por contorno y un Moments
+ * por candidato, desde la API Java de OpenCV), Hough piramidal (un submat por candidato) y
+ * radios conocidos (el latch de la votación). {@link #process} se usa desde un solo hilo;
+ * {@link #setCircleDetector} puede llamarse desde cualquiera.
+ */
+public class CoinPipeline {
+
+    /** Diferencia relativa de radio aceptada al clasificar una moneda. */
+    static final double TOLERANCE_PERCENTAGE = 0.10;
+    // Colores ARGB del overlay
+    private static final int LABEL_COLOR = 0xFFFF0000;
+    private static final int CIRCLE_COLOR = 0xFF00FF00;
+    private static final int UNKNOWN_CIRCLE_COLOR = 0xFF0000FF;
+
+    // Rango de radios sin calibrar (altura de cámara desconocida); el gobernador lo abarata
+    // si no cabe en el presupuesto
+    static final int MIN_RADIUS = 30;
+    static final int MAX_RADIUS = 200;
+    /**
+     * Escala aproximada de la altura de cámara con la que se midieron los radios originales en
+     * píxeles. Los diámetros del catálogo no guardan una proporción exacta con aquella tabla: a
+     * esta escala difieren hasta ~2 px, así que los bordes de tolerancia sin calibrar se corren
+     * un poco, aunque cada radio original sigue cayendo en su moneda.
+     */
+    static final double DEFAULT_PIXELS_PER_MM = 7.55;
+
+    /** Cuadros entre búsquedas completas mientras el flujo sea confiable. */
+    static final int DETECT_INTERVAL = 5;
+    /** Movimiento global (píxeles del sensor) que obliga a buscar antes de tiempo. */
+    static final double MOTION_REDETECT_PX = 20;
+
+    public static final class CoinType {
+        public final String name;
+        public final double value;
+        /** Radio de cada serie (diseños que circulan a la vez), en milímetros. */
+        final double[] radiiMm;
+        /** Acabado de cada serie; null si el catálogo no lo indica. */
+        final Finish[] finishes;
+        /** Tono del anillo de cada serie; null si el catálogo no lo indica. */
+        final Tone[] tones;
+
+        CoinType(String name, double value, double[] diametersMm, Finish[] finishes, Tone[] tones) {
+            this.name = name;
+            this.value = value;
+            this.radiiMm = new double[diametersMm.length];
+            for (int i = 0; i < diametersMm.length; i++) {
+                radiiMm[i] = diametersMm[i] / 2;
+            }
+            this.finishes = finishes.clone();
+            this.tones = tones.clone();
+        }
+
+        int seriesCount() {
+            return radiiMm.length;
+        }
+    }
+
+    private final CoinType[] coinTypes;
+    private final RadiusTable radiusTable;
+    private final int[] counts;
+    private double totalAmount;
+    private int framesSinceDetection = DETECT_INTERVAL;
+
+    private final Mat gray = new Mat();
+    private final Mat small = new Mat();
+    private final CircleSet circles = new CircleSet();
+    private final CircleSet sensorCircles = new CircleSet();
+    private int[] coinOfCircle = new int[16];
+    private final CoinTracker tracker;
+    private final CoinFlow flow = new CoinFlow();
+    private final CoinColorClassifier colorClassifier = new CoinColorClassifier();
+
+    private final MarkerCalibration calibration;
+    private volatile boolean calibrationEnabled;
+    private double pixelsPerMm = DEFAULT_PIXELS_PER_MM;
+    private boolean calibrated;
+    private final double minCoinRadiusMm;
+    private final double maxCoinRadiusMm;
+    private CircleDetector circleDetector = new HoughCircleDetector();
+    private final AtomicReference<CircleDetector> pendingDetector = new AtomicReference<>();
+
+    private final Size blurSize = new Size();
+    private final Size noSize = new Size();
+
+    private final DetectionGovernor governor;
+    private final DetectionGovernor.Knob maxRadiusKnob;
+    private final DetectionGovernor.Knob minRadiusKnob;
+    private final DetectionGovernor.Knob scaleKnob;
+
+    public CoinPipeline(CoinType[] coinTypes, double frameBudgetMs, double markerSideMm) {
+        this.coinTypes = coinTypes;
+        this.radiusTable = new RadiusTable(coinTypes, TOLERANCE_PERCENTAGE);
+        this.counts = new int[coinTypes.length];
+        this.tracker = new CoinTracker(coinTypes.length);
+        this.calibration = new MarkerCalibration(markerSideMm);
+        minCoinRadiusMm = radiusTable.minSearchRadiusMm();
+        maxCoinRadiusMm = radiusTable.maxSearchRadiusMm();
+
+        // Primero se acota el rango de radios (a la altura por defecto las monedas caben en
+        // ~58-111 px), luego la resolución
+        governor = new DetectionGovernor("Monedas", frameBudgetMs);
+        maxRadiusKnob = governor.addKnob("maxRadius", MAX_RADIUS, 120, 20);
+        minRadiusKnob = governor.addKnob("minRadius", MIN_RADIUS, 55, 5);
+        scaleKnob = governor.addKnob("escala", 1.0, 0.5, 0.125);
+    }
+
+    /**
+     * Cambia el motor de círculos a partir del siguiente cuadro; el anterior se libera en el
+     * hilo de {@link #process}. Un motor pendiente que nunca llegó a usarse se libera aquí.
+     */
+    public void setCircleDetector(CircleDetector detector) {
+        CircleDetector replaced = pendingDetector.getAndSet(detector);
+        if (replaced != null) replaced.release();
+    }
+
+    /**
+     * Con la calibración activa se busca de vez en cuando un marcador ArUco en la mesa para
+     * medir píxeles por milímetro; al desactivarla se vuelve al rango amplio sin calibrar.
+     */
+    public void setCalibrationEnabled(boolean enabled) {
+        calibrationEnabled = enabled;
+    }
+
+    /** Píxeles del sensor por milímetro en uso, o 0 si no hay calibración. */
+    public double getPixelsPerMm() {
+        return calibrated ? pixelsPerMm : 0;
+    }
+
+    /**
+     * Busca monedas en {@code sensorGray} y las anota en {@code overlay} (null si nadie las
+     * muestra). {@code sensorRgba} es el mismo cuadro en color; sólo se lee para distinguir
+     * acabados y tonos.
+     */
+    public void process(Mat sensorGray, Mat sensorRgba, FrameOverlay overlay) {
+        CircleDetector requested = pendingDetector.getAndSet(null);
+        if (requested != null) {
+            circleDetector.release();
+            circleDetector = requested;
+            circleDetector.setPixelsPerMm(pixelsPerMm);
+            framesSinceDetection = DETECT_INTERVAL;
+        }
+
+        updateCalibration(sensorGray);
+
+        double scale = scaleKnob.value();
+        Mat input = sensorGray;
+        if (scale < 1.0) {
+            Imgproc.resize(sensorGray, small, noSize, scale, scale, Imgproc.INTER_AREA);
+            input = small;
+        }
+
+        // Primero el flujo (barato); la búsqueda completa sólo si toca o si el flujo no alcanza.
+        // El gobernador mide sólo los cuadros de búsqueda: promediados con los de flujo, una
+        // búsqueda lenta quedaría diluida y nunca superaría el presupuesto
+        framesSinceDetection++;
+        boolean tracked = flow.track(input, tracker, scale);
+        if (!tracked || framesSinceDetection >= DETECT_INTERVAL
+                || flow.getGlobalMotion() > MOTION_REDETECT_PX) {
+            governor.begin();
+            detect(input, scale, sensorRgba);
+            tracker.update(sensorCircles, coinOfCircle);
+            flow.seed(input, tracker, scale);
+            governor.end();
+            framesSinceDetection = 0;
+        }
+
+        totalAmount = 0.0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+
+        for (int t = 0; t < tracker.size(); t++) {
+            int matched = tracker.denomination(t);
+            if (matched >= 0) {
+                counts[matched]++;
+                totalAmount += coinTypes[matched].value;
+            }
+            if (overlay == null) continue;
+
+            float x = tracker.x(t);
+            float y = tracker.y(t);
+            float radius = tracker.radius(t);
+            if (matched >= 0) {
+                overlay.addCircle(x, y, radius, CIRCLE_COLOR);
+                overlay.addLabel(coinTypes[matched].name, x, y, LABEL_COLOR);
+            } else {
+                overlay.addCircle(x, y, radius, UNKNOWN_CIRCLE_COLOR);
+                overlay.addLabel("?", x, y, UNKNOWN_CIRCLE_COLOR);
+            }
+        }
+    }
+
+    public int getCoinTypeCount() {
+        return coinTypes.length;
+    }
+
+    public CoinType getCoinType(int index) {
+        return coinTypes[index];
+    }
+
+    /** Monedas de {@code getCoinType(index)} en el último cuadro. */
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    public double getTotalAmount() {
+        return totalAmount;
+    }
+
+    /** Monedas seguidas en el último cuadro, clasificadas o no. */
+    public int getCircleCount() {
+        return tracker.size();
+    }
+
+    /**
+     * Olvida las monedas seguidas: el siguiente cuadro no tiene relación con el anterior
+     * (fotos sueltas o un salto dentro de un video) y pasa por la búsqueda completa.
+     */
+    public void restart() {
+        tracker.clear();
+        framesSinceDetection = DETECT_INTERVAL;
+    }
+
+    /** Pistas del último cuadro, en píxeles del sensor. */
+    CoinTracker tracks() {
+        return tracker;
+    }
+
+    public void release() {
+        gray.release();
+        small.release();
+        flow.release();
+        calibration.release();
+        colorClassifier.release();
+        circleDetector.release();
+        CircleDetector pending = pendingDetector.getAndSet(null);
+        if (pending != null) pending.release();
+    }
+
+    /**
+     * Con escala medida, el rango de radios se reduce a la banda de las monedas y los
+     * parámetros de radio del gobernador dejan de aplicar.
+     */
+    private void updateCalibration(Mat sensorGray) {
+        boolean enabled = calibrationEnabled;
+        if (enabled && calibration.update(sensorGray)) {
+            pixelsPerMm = calibration.getPixelsPerMm();
+            calibrated = true;
+        } else if (!enabled && calibrated) {
+            pixelsPerMm = DEFAULT_PIXELS_PER_MM;
+            calibrated = false;
+            calibration.reset();
+        } else {
+            return;
+        }
+        maxRadiusKnob.setEnabled(!calibrated);
+        minRadiusKnob.setEnabled(!calibrated);
+        circleDetector.setPixelsPerMm(pixelsPerMm);
+        framesSinceDetection = DETECT_INTERVAL;
+    }
+
+    /**
+     * Búsqueda completa: deja los círculos en píxeles del sensor con su clasificación. El
+     * color se mira sólo cuando el radio deja dudas entre monedas de distinto acabado o tono,
+     * sobre {@code sensorRgba}.
+     */
+    private void detect(Mat input, double scale, Mat sensorRgba) {
+        double minRadius = calibrated ? minCoinRadiusMm * pixelsPerMm : minRadiusKnob.value();
+        double maxRadius = calibrated ? maxCoinRadiusMm * pixelsPerMm : maxRadiusKnob.value();
+
+        // El desenfoque escribe en un Mat propio: el gris del cuadro es memoria de la cámara
+        blur(input, gray, scale, blurSize);
+        int found = circleDetector.detect(gray, scale, minRadius, maxRadius, circles);
+
+        if (coinOfCircle.length < found) coinOfCircle = new int[found * 2];
+        float inverseScale = (float) (1.0 / scale);
+        sensorCircles.clear();
+        for (int i = 0; i < found; i++) {
+            float radius = circles.radius(i) * inverseScale;
+            sensorCircles.add(circles.x(i) * inverseScale, circles.y(i) * inverseScale, radius);
+            double radiusMm = radius / pixelsPerMm;
+            Finish finish = null;
+            Tone tone = null;
+            if (radiusTable.colourMatters(radiusMm) && colorClassifier.measure(sensorRgba,
+                    circles.x(i) * inverseScale, circles.y(i) * inverseScale, radius)) {
+                finish = colorClassifier.finish();
+                tone = colorClassifier.tone();
+            }
+            coinOfCircle[i] = radiusTable.match(radiusMm, finish, tone);
+        }
+    }
+
+    /**
+     * Suavizado previo a la búsqueda de círculos. Kernel y sigma siguen a la escala para
+     * suavizar lo mismo en píxeles del sensor; {@code kernelSize} es un Size reutilizable.
+     */
+    static void blur(Mat input, Mat output, double scale, Size kernelSize) {
+        int kernel = Math.max(3, (int) Math.round(9 * scale) | 1);
+        kernelSize.width = kernel;
+        kernelSize.height = kernel;
+        Imgproc.GaussianBlur(input, output, kernelSize, 2 * scale, 2 * scale);
+    }
+}
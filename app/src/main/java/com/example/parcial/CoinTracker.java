@@ -0,0 +1,233 @@
+package com.example.parcial;
+
+import java.util.Arrays;
+
+/**
+ * Monedas seguidas entre cuadros, en píxeles del sensor. Cada detección se asocia a la pista
+ * más cercana a su posición predicha; la denominación de una pista es la más votada entre
+ * sus últimas {@link #VOTE_WINDOW} clasificaciones, así un cuadro mal medido no cambia el
+ * total. Todo vive en arreglos primitivos que sólo crecen. Se usa desde un solo hilo.
+ */
+public class CoinTracker {
+
+    /** Clasificaciones recordadas por pista. */
+    static final int VOTE_WINDOW = 7;
+    /** Detecciones seguidas sin aparecer antes de descartar la pista. */
+    static final int MAX_MISSED = 2;
+    /** Distancia máxima entre centros para asociar, como fracción del radio. */
+    static final double GATE = 0.5;
+    /** Peso del desplazamiento nuevo en la velocidad estimada. */
+    static final float VELOCITY_SMOOTHING = 0.5f;
+
+    private static final int UNKNOWN = -1;
+
+    private final int coinTypeCount;
+    private int count;
+    private int nextId = 1;
+
+    private int[] ids = new int[0];
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    private float[] radius = new float[0];
+    private float[] vx = new float[0];
+    private float[] vy = new float[0];
+    private int[] missed = new int[0];
+    // Ventana circular de votos: VOTE_WINDOW casillas por pista
+    private int[] votes = new int[0];
+    private int[] voteCount = new int[0];
+    private int[] voteNext = new int[0];
+
+    // Auxiliares de la asociación y del conteo de votos
+    private boolean[] trackMatched = new boolean[0];
+    private boolean[] detectionUsed = new boolean[0];
+    private final int[] tally;
+
+    public CoinTracker(int coinTypeCount) {
+        this.coinTypeCount = coinTypeCount;
+        this.tally = new int[coinTypeCount + 1];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int id(int track) {
+        return ids[track];
+    }
+
+    public float x(int track) {
+        return x[track];
+    }
+
+    public float y(int track) {
+        return y[track];
+    }
+
+    public float radius(int track) {
+        return radius[track];
+    }
+
+    /** Verdadero si la última detección no confirmó la pista. */
+    public boolean isMissing(int track) {
+        return missed[track] > 0;
+    }
+
+    /**
+     * Denominación más votada en la ventana, o -1 si gana "sin clasificar". Un empate se
+     * resuelve a favor de una denominación conocida.
+     */
+    public int denomination(int track) {
+        Arrays.fill(tally, 0);
+        int base = track * VOTE_WINDOW;
+        for (int v = 0; v < voteCount[track]; v++) {
+            tally[votes[base + v] + 1]++;
+        }
+        int best = UNKNOWN;
+        int bestVotes = 0;
+        for (int coin = 0; coin < coinTypeCount; coin++) {
+            if (tally[coin + 1] > bestVotes) {
+                bestVotes = tally[coin + 1];
+                best = coin;
+            }
+        }
+        return tally[0] > bestVotes ? UNKNOWN : best;
+    }
+
+    /** Desplazamiento medido (flujo óptico) de una pista desde el cuadro anterior. */
+    public void move(int track, float dx, float dy) {
+        x[track] += dx;
+        y[track] += dy;
+        vx[track] += VELOCITY_SMOOTHING * (dx - vx[track]);
+        vy[track] += VELOCITY_SMOOTHING * (dy - vy[track]);
+    }
+
+    /** Sin medición para esta pista: avanza con su velocidad estimada. */
+    public void coast(int track) {
+        x[track] += vx[track];
+        y[track] += vy[track];
+    }
+
+    /**
+     * Asocia una detección completa. {@code coinOfDetection[i]} es la clasificación del
+     * círculo {@code i} de {@code detections} (-1 si ninguna). Las pistas no confirmadas
+     * suman un fallo y se descartan después de {@link #MAX_MISSED}; las detecciones sin pista
+     * abren una nueva.
+     */
+    public void update(CircleSet detections, int[] coinOfDetection) {
+        int detectionCount = detections.size();
+        ensureScratch(detectionCount);
+        Arrays.fill(trackMatched, 0, count, false);
+        Arrays.fill(detectionUsed, 0, detectionCount, false);
+
+        // Pares más cercanos primero, hasta agotar los que caen dentro de la compuerta
+        while (true) {
+            int bestTrack = -1;
+            int bestDetection = -1;
+            float bestDistance = Float.MAX_VALUE;
+            for (int t = 0; t < count; t++) {
+                if (trackMatched[t]) continue;
+                for (int d = 0; d < detectionCount; d++) {
+                    if (detectionUsed[d]) continue;
+                    float dx = detections.x(d) - x[t];
+                    float dy = detections.y(d) - y[t];
+                    float distance = dx * dx + dy * dy;
+                    float gate = (float) (GATE * Math.max(radius[t], detections.radius(d)));
+                    if (distance <= gate * gate && distance < bestDistance) {
+                        bestDistance = distance;
+                        bestTrack = t;
+                        bestDetection = d;
+                    }
+                }
+            }
+            if (bestTrack < 0) break;
+
+            trackMatched[bestTrack] = true;
+            detectionUsed[bestDetection] = true;
+            x[bestTrack] = detections.x(bestDetection);
+            y[bestTrack] = detections.y(bestDetection);
+            radius[bestTrack] = detections.radius(bestDetection);
+            missed[bestTrack] = 0;
+            vote(bestTrack, coinOfDetection[bestDetection]);
+        }
+
+        int previousCount = count;
+        for (int t = 0; t < previousCount; t++) {
+            if (!trackMatched[t]) missed[t]++;
+        }
+        removeLost();
+
+        for (int d = 0; d < detectionCount; d++) {
+            if (!detectionUsed[d]) {
+                open(detections.x(d), detections.y(d), detections.radius(d), coinOfDetection[d]);
+            }
+        }
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    private void vote(int track, int coin) {
+        votes[track * VOTE_WINDOW + voteNext[track]] = coin;
+        voteNext[track] = (voteNext[track] + 1) % VOTE_WINDOW;
+        voteCount[track] = Math.min(VOTE_WINDOW, voteCount[track] + 1);
+    }
+
+    private void open(float cx, float cy, float r, int coin) {
+        ensureTrackCapacity(count + 1);
+        int t = count++;
+        ids[t] = nextId++;
+        x[t] = cx;
+        y[t] = cy;
+        radius[t] = r;
+        vx[t] = 0;
+        vy[t] = 0;
+        missed[t] = 0;
+        voteCount[t] = 0;
+        voteNext[t] = 0;
+        vote(t, coin);
+    }
+
+    /** Compacta conservando el orden de las pistas vivas. */
+    private void removeLost() {
+        int write = 0;
+        for (int t = 0; t < count; t++) {
+            if (missed[t] > MAX_MISSED) continue;
+            if (write != t) {
+                ids[write] = ids[t];
+                x[write] = x[t];
+                y[write] = y[t];
+                radius[write] = radius[t];
+                vx[write] = vx[t];
+                vy[write] = vy[t];
+                missed[write] = missed[t];
+                voteCount[write] = voteCount[t];
+                voteNext[write] = voteNext[t];
+                System.arraycopy(votes, t * VOTE_WINDOW, votes, write * VOTE_WINDOW, VOTE_WINDOW);
+            }
+            write++;
+        }
+        count = write;
+    }
+
+    private void ensureScratch(int detectionCount) {
+        if (trackMatched.length < count) trackMatched = new boolean[ids.length];
+        if (detectionUsed.length < detectionCount) detectionUsed = new boolean[detectionCount * 2];
+    }
+
+    private void ensureTrackCapacity(int tracks) {
+        if (ids.length >= tracks) return;
+        int capacity = Math.max(16, tracks * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        missed = Arrays.copyOf(missed, capacity);
+        voteCount = Arrays.copyOf(voteCount, capacity);
+        voteNext = Arrays.copyOf(voteNext, capacity);
+        votes = Arrays.copyOf(votes, capacity * VOTE_WINDOW);
+        trackMatched = new boolean[capacity];
+    }
+}
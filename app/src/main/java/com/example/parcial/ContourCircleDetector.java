@@ -0,0 +1,99 @@
+package com.example.parcial;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.imgproc.Moments;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Candidatos a moneda por contornos: bordes de Canny cerrados con una dilatación, contornos
+ * externos y filtro de forma. Sin acumulador de Hough; rinde en escenas bien iluminadas y
+ * con buen contraste, donde el borde de cada moneda sale cerrado.
+ *
+ * <p>Un contorno pasa si su circularidad (4πA/P²) y su relleno del círculo mínimo que lo
+ * encierra superan los umbrales. El centro es el centroide de sus momentos y el radio el del
+ * círculo mínimo.
+ *
+ * <p>No es libre de asignaciones: findContours crea un MatOfPoint por contorno en cada
+ * llamada y moments un objeto por candidato.
+ */
+public class ContourCircleDetector implements CircleDetector {
+
+    private static final double CANNY_LOW = 50;
+    private static final double CANNY_HIGH = 150;
+    /** 1 para un círculo perfecto; el borde dentado de Canny baja el valor. */
+    private static final double MIN_CIRCULARITY = 0.75;
+    /** Área del contorno sobre el área del círculo mínimo que lo encierra. */
+    private static final double MIN_FILL = 0.75;
+
+    private final Mat edges = new Mat();
+    private final Mat closeKernel = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(3, 3));
+    private final Mat hierarchy = new Mat();
+    private final List<MatOfPoint> contours = new ArrayList<>();
+    private final MatOfPoint2f contour2f = new MatOfPoint2f();
+    private final Point enclosingCenter = new Point();
+    private final float[] enclosingRadius = new float[1];
+
+    @Override
+    public String getName() {
+        return "Contornos";
+    }
+
+    @Override
+    public int detect(Mat blurred, double scale, double minRadius, double maxRadius, CircleSet out) {
+        out.clear();
+        Imgproc.Canny(blurred, edges, CANNY_LOW, CANNY_HIGH);
+        // Cierra huecos de uno o dos píxeles en el borde para que el contorno salga cerrado
+        Imgproc.dilate(edges, edges, closeKernel);
+
+        releaseContours();
+        Imgproc.findContours(edges, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+
+        double minR = minRadius * scale;
+        double maxR = maxRadius * scale;
+        double minArea = Math.PI * minR * minR * MIN_FILL;
+        for (int i = 0; i < contours.size(); i++) {
+            MatOfPoint contour = contours.get(i);
+            // Descarte barato antes de medir la forma
+            double area = Imgproc.contourArea(contour);
+            if (area < minArea) continue;
+
+            contour.convertTo(contour2f, CvType.CV_32F);
+            Imgproc.minEnclosingCircle(contour2f, enclosingCenter, enclosingRadius);
+            double radius = enclosingRadius[0];
+            if (radius < minR || radius > maxR) continue;
+            if (area < MIN_FILL * Math.PI * radius * radius) continue;
+
+            double perimeter = Imgproc.arcLength(contour2f, true);
+            if (4 * Math.PI * area < MIN_CIRCULARITY * perimeter * perimeter) continue;
+
+            Moments moments = Imgproc.moments(contour);
+            if (moments.m00 == 0) continue;
+            out.add((float) (moments.m10 / moments.m00), (float) (moments.m01 / moments.m00), (float) radius);
+        }
+        return out.size();
+    }
+
+    @Override
+    public void release() {
+        releaseContours();
+        edges.release();
+        closeKernel.release();
+        hierarchy.release();
+        contour2f.release();
+    }
+
+    private void releaseContours() {
+        for (int i = 0; i < contours.size(); i++) {
+            contours.get(i).release();
+        }
+        contours.clear();
+    }
+}
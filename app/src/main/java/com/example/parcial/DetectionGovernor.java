@@ -0,0 +1,128 @@
+package com.example.parcial;
+
+import android.util.Log;
+
+import org.opencv.core.TickMeter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Ajusta parámetros de una etapa de detección para sostener un presupuesto de tiempo por
+ * cuadro. Mide la etapa con TickMeter y, cada {@link #WINDOW} mediciones, compara el promedio
+ * con el presupuesto: si se pasa, abarata el primer parámetro (en orden de registro) que aún
+ * puede ceder; si sobra holgura, devuelve calidad al último que cedió. Cada cambio queda en el
+ * log con la medición que lo motivó. Se usa desde un solo hilo.
+ */
+public class DetectionGovernor {
+
+    private static final String TAG = "DetectionGovernor";
+
+    /** Mediciones por decisión: suficientes para no reaccionar a un cuadro aislado. */
+    static final int WINDOW = 15;
+    /** Por debajo de esta fracción del presupuesto se recupera calidad (histéresis). */
+    static final double RELAX_FRACTION = 0.6;
+
+    /** Parámetro acotado entre su valor de calidad y su valor más barato. */
+    public static final class Knob {
+        final String name;
+        final double quality;
+        final double cheapest;
+        final double step;
+        double value;
+        boolean enabled = true;
+
+        Knob(String name, double quality, double cheapest, double step) {
+            this.name = name;
+            this.quality = quality;
+            this.cheapest = cheapest;
+            this.step = Math.abs(step);
+            this.value = quality;
+        }
+
+        public double value() {
+            return value;
+        }
+
+        /** Un parámetro deshabilitado no cede ni recupera; el gobernador pasa al siguiente. */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        boolean isCheapest() {
+            return value == cheapest;
+        }
+
+        boolean isQuality() {
+            return value == quality;
+        }
+
+        void moveTowards(double target) {
+            value = target > value ? Math.min(target, value + step) : Math.max(target, value - step);
+        }
+    }
+
+    private final String stage;
+    private final double budgetMs;
+    private final List<Knob> knobs = new ArrayList<>();
+    private final TickMeter meter = new TickMeter();
+    private double lastAverageMs;
+
+    public DetectionGovernor(String stage, double budgetMs) {
+        this.stage = stage;
+        this.budgetMs = budgetMs;
+    }
+
+    /** Registra un parámetro; los primeros en registrarse son los primeros en ceder. */
+    public Knob addKnob(String name, double quality, double cheapest, double step) {
+        Knob knob = new Knob(name, quality, cheapest, step);
+        knobs.add(knob);
+        return knob;
+    }
+
+    public void begin() {
+        meter.start();
+    }
+
+    /** Cierra la medición; devuelve verdadero si algún parámetro cambió. */
+    public boolean end() {
+        meter.stop();
+        if (meter.getCounter() < WINDOW) return false;
+        lastAverageMs = meter.getAvgTimeMilli();
+        meter.reset();
+
+        if (lastAverageMs > budgetMs) {
+            for (Knob knob : knobs) {
+                if (knob.enabled && !knob.isCheapest()) {
+                    return adjust(knob, knob.cheapest, ">", budgetMs);
+                }
+            }
+        } else if (lastAverageMs < budgetMs * RELAX_FRACTION) {
+            for (int i = knobs.size() - 1; i >= 0; i--) {
+                Knob knob = knobs.get(i);
+                if (knob.enabled && !knob.isQuality()) {
+                    return adjust(knob, knob.quality, "<", budgetMs * RELAX_FRACTION);
+                }
+            }
+        }
+        return false;
+    }
+
+    public double getBudgetMs() {
+        return budgetMs;
+    }
+
+    /** Promedio de la última ventana completa, en milisegundos. */
+    public double getLastAverageMs() {
+        return lastAverageMs;
+    }
+
+    private boolean adjust(Knob knob, double target, String comparison, double thresholdMs) {
+        double previous = knob.value;
+        knob.moveTowards(target);
+        Log.i(TAG, String.format(Locale.US, "%s: %.1f ms %s %.1f ms, %s %.3f -> %.3f",
+                stage, lastAverageMs, comparison, thresholdMs, knob.name, previous, knob.value));
+        return true;
+    }
+}
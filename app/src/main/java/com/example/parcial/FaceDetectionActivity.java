@@ -3,47 +3,75 @@ package com.example.parcial;
 import android.Manifest;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.SurfaceView;
 import android.view.WindowManager;
+import android.widget.Button;
+import android.widget.EditText;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import org.opencv.android.CameraBridgeViewBase;
+import org.opencv.android.CameraOverlayView;
+import org.opencv.android.FrameOverlay;
+import org.opencv.android.JavaCamera2View;
 import org.opencv.android.OpenCVLoader;
-import org.opencv.core.Core;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfRect;
 import org.opencv.core.Rect;
-import org.opencv.core.Scalar;
-import org.opencv.imgproc.Imgproc;
-import org.opencv.objdetect.CascadeClassifier;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.FileOutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.Locale;
 
 public class FaceDetectionActivity extends AppCompatActivity implements CameraBridgeViewBase.CvCameraViewListener2 {
 
     private static final String TAG = "FaceDetectionActivity";
-    private static final Scalar FACE_COLOR = new Scalar(0, 255, 0, 255);
+    /** Color ARGB de los rostros en el overlay. */
+    private static final int FACE_COLOR = 0xFF00FF00;
 
     private static final int CAMERA_PERMISSION = 200;
-
-    private CameraBridgeViewBase cameraView;
+    private static final String GALLERY_FILE = "faces.gallery";
+    private static final String[] ENGINES = {"Haar", "YuNet"};
+    private static final int TRACKING_DETECT_INTERVAL = 5;
+    private static final int DETECTION_WORKING_HEIGHT = 320;
+    // Flujo de análisis: el detector trabaja a 320 px de alto, no necesita más del sensor
+    private static final int ANALYSIS_MAX_WIDTH = 640;
+    private static final int ANALYSIS_MAX_HEIGHT = 480;
+    private static final double DETECTION_BUDGET_MS = 33;
+    // Endereza los rostros del sensor frontal para el detector (rotación horaria seguida de los
+    // dos flips de antes); la vista previa la orienta la cámara
+    private static final FrameOrientation DISPLAY_ORIENTATION = FrameOrientation.of(270, false);
+
+    // Casillas del estado publicado para la UI
+    private static final int STATUS_READY = 0;
+    private static final int STATUS_FACES = 1;
+    private static final int STATUS_GALLERY = 2;
+    private static final int STATUS_STARTUP_MS = 3;
+    private static final int STATUS_PREVIEW_FPS = 0;
+    private static final int STATUS_DETECTION_FPS = 1;
+
+    private JavaCamera2View cameraView;
     private TextView tvFaceInfo;
-    private Mat rgba;
-    private Mat gray;
-    private Mat display;
-    private CascadeClassifier faceClassifier;
+    private Button btnFaceMode;
+    private Button btnFaceEngine;
+    private boolean trackingMode = false;
+    private int engineIndex = 0;
+    private ModelStore models;
+    private volatile FaceIdentifier faceIdentifier;
+    private boolean identifierAttempted = false;
+    private volatile FaceDetectionWorker detectionWorker;
+    private final RateMeter previewRate = new RateMeter();
+    private final StatusChannel status = new StatusChannel(4, 2, this::formatStatus);
     private boolean hasCameraPermission = false;
+    // Primer cuadro de la cámara hasta el primer resultado del detector
+    private long firstFrameAt;
+    private long startupLatencyMs;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -52,10 +80,20 @@ public class FaceDetectionActivity extends AppCompatActivity implements CameraBr
         setContentView(R.layout.activity_face_detection);
 
         tvFaceInfo = findViewById(R.id.tvFaceInfo);
+        btnFaceMode = findViewById(R.id.btnFaceMode);
+        btnFaceMode.setOnClickListener(v -> toggleTrackingMode());
+        btnFaceEngine = findViewById(R.id.btnFaceEngine);
+        btnFaceEngine.setOnClickListener(v -> cycleEngine());
+        Button btnFaceEnroll = findViewById(R.id.btnFaceEnroll);
+        btnFaceEnroll.setOnClickListener(v -> promptEnrollment());
         cameraView = findViewById(R.id.faceCameraView);
         cameraView.setVisibility(SurfaceView.VISIBLE);
         cameraView.setCameraIndex(CameraBridgeViewBase.CAMERA_ID_FRONT);
         cameraView.setCvCameraViewListener(this);
+        // Dos flujos: la vista previa va de la cámara a la pantalla a resolución completa y el
+        // detector recibe uno chico; la cámara orienta la vista previa y el overlay la sigue
+        cameraView.setAnalysisStreamSize(ANALYSIS_MAX_WIDTH, ANALYSIS_MAX_HEIGHT);
+        cameraView.setOverlayView((CameraOverlayView) findViewById(R.id.faceOverlayView));
 
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA)
                 != PackageManager.PERMISSION_GRANTED) {
@@ -66,60 +104,100 @@ public class FaceDetectionActivity extends AppCompatActivity implements CameraBr
             hasCameraPermission = true;
         }
 
-        tvFaceInfo.setText("Cargando clasificador de rostro...");
-        loadCascadeAsync();
+        tvFaceInfo.setText("Cargando modelos...");
+        models = ModelStore.get(this);
+        models.preload();
     }
 
-    private void loadCascadeAsync() {
-        new Thread(() -> {
-            try {
-                File cascadeDir = getDir("cascade", MODE_PRIVATE);
-                File cascadeFile = new File(cascadeDir, "haarcascade_frontalface_default.xml");
-
-                if (!cascadeFile.exists()) {
-                    downloadCascade(cascadeFile);
-                }
-
-                CascadeClassifier classifier = new CascadeClassifier(cascadeFile.getAbsolutePath());
-                if (!classifier.empty()) {
-                    faceClassifier = classifier;
-                    runOnUiThread(() -> tvFaceInfo.setText("Clasificador cargado. Rostros: 0"));
-                } else {
-                    Log.e(TAG, "El clasificador está vacío tras la carga");
-                }
-            } catch (IOException e) {
-                Log.e(TAG, "No se pudo cargar el clasificador de rostros", e);
-                runOnUiThread(() -> tvFaceInfo.setText("Error al cargar clasificador"));
-            }
-        }).start();
+    private void toggleTrackingMode() {
+        trackingMode = !trackingMode;
+        applyTrackingMode();
+        btnFaceMode.setText(trackingMode
+                ? "Modo: detección + seguimiento (N=" + TRACKING_DETECT_INTERVAL + ")"
+                : "Modo: detección");
     }
 
-    private void downloadCascade(File cascadeFile) throws IOException {
-        String url = "https://raw.githubusercontent.com/opencv/opencv/4.x/data/haarcascades/haarcascade_frontalface_default.xml";
-        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-        connection.setConnectTimeout(5000);
-        connection.setReadTimeout(5000);
-        connection.connect();
+    private void applyTrackingMode() {
+        FaceDetectionWorker worker = detectionWorker;
+        if (worker != null) {
+            worker.setTracking(trackingMode, TRACKING_DETECT_INTERVAL,
+                    FaceTracker.RedetectPolicy.EVERY_N_OR_LOW_CONFIDENCE);
+        }
+    }
 
-        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
-            throw new IOException("Respuesta HTTP " + connection.getResponseCode());
+    private void cycleEngine() {
+        engineIndex = (engineIndex + 1) % ENGINES.length;
+        if (engineIndex == 1 && !models.hasYuNet()) {
+            // Sin modelo DNN no hay a qué cambiar
+            engineIndex = 0;
+        }
+        btnFaceEngine.setText("Motor: " + ENGINES[engineIndex]);
+        FaceDetectionWorker worker = detectionWorker;
+        if (worker != null && models.faceCascade() != null) {
+            worker.setDetector(createDetector());
         }
+    }
 
-        try (InputStream is = connection.getInputStream();
-             FileOutputStream os = new FileOutputStream(cascadeFile)) {
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = is.read(buffer)) != -1) {
-                os.write(buffer, 0, bytesRead);
-            }
-        } finally {
-            connection.disconnect();
+    private void promptEnrollment() {
+        FaceDetectionWorker worker = detectionWorker;
+        if (worker == null || faceIdentifier == null || engineIndex != 1) {
+            Toast.makeText(this, "El registro necesita el motor YuNet y el modelo SFace", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        EditText input = new EditText(this);
+        input.setHint("Nombre");
+        input.setSingleLine(true);
+        new AlertDialog.Builder(this)
+                .setTitle("Registrar rostro")
+                .setMessage("Se guarda el rostro más grande del siguiente cuadro")
+                .setView(input)
+                .setPositiveButton("Registrar", (dialog, which) -> {
+                    String name = input.getText().toString().trim();
+                    if (!name.isEmpty()) worker.requestEnrollment(name);
+                })
+                .setNegativeButton("Cancelar", null)
+                .show();
+    }
+
+    private FaceDetector createDetector() {
+        if (engineIndex == 1) {
+            YuNetFaceDetector yunet = models.takeYuNet();
+            if (yunet != null) return yunet;
+        }
+        return new ScaledCascadeDetector(models.faceCascade());
+    }
+
+    /** La galería es un archivo mapeado pequeño: se abre en cuanto SFace está listo. */
+    private void ensureIdentifier() {
+        if (identifierAttempted || models.faceRecognizer() == null) return;
+        identifierAttempted = true;
+        try {
+            faceIdentifier = new FaceIdentifier(models.faceRecognizer(), new File(getFilesDir(), GALLERY_FILE));
+        } catch (IOException e) {
+            Log.e(TAG, "No se pudo abrir la galería de rostros", e);
+        }
+    }
+
+    private void formatStatus(StatusChannel values, StringBuilder out) {
+        if (values.getInt(STATUS_READY) == 0) {
+            String error = models.getError();
+            out.append(error != null ? error : "Cargando modelos...");
+            return;
+        }
+        out.append(String.format(Locale.getDefault(),
+                "Rostros: %d  Galería: %d  Vista: %.1f fps  Detección: %.1f fps",
+                values.getInt(STATUS_FACES), values.getInt(STATUS_GALLERY),
+                values.getDouble(STATUS_PREVIEW_FPS), values.getDouble(STATUS_DETECTION_FPS)));
+        int startupMs = values.getInt(STATUS_STARTUP_MS);
+        if (startupMs >= 0) {
+            out.append("  Arranque: ").append(startupMs).append(" ms");
         }
     }
 
     @Override
     protected void onResume() {
         super.onResume();
+        status.attach(tvFaceInfo);
         if (hasCameraPermission && OpenCVLoader.initDebug()) {
             cameraView.setCameraPermissionGranted();
             cameraView.enableView();
@@ -129,6 +207,7 @@ public class FaceDetectionActivity extends AppCompatActivity implements CameraBr
     @Override
     protected void onPause() {
         super.onPause();
+        status.detach();
         if (cameraView != null) cameraView.disableView();
     }
 
@@ -136,8 +215,7 @@ public class FaceDetectionActivity extends AppCompatActivity implements CameraBr
     protected void onDestroy() {
         super.onDestroy();
         if (cameraView != null) cameraView.disableView();
-        if (rgba != null) rgba.release();
-        if (gray != null) gray.release();
+        if (faceIdentifier != null) faceIdentifier.release();
     }
 
     @Override
@@ -157,64 +235,74 @@ public class FaceDetectionActivity extends AppCompatActivity implements CameraBr
 
     @Override
     public void onCameraViewStarted(int width, int height) {
-        rgba = new Mat(height, width, CvType.CV_8UC4);
-        gray = new Mat(height, width, CvType.CV_8UC1);
-        display = new Mat();
+        previewRate.reset();
+        firstFrameAt = 0;
+        startupLatencyMs = -1;
+        status.setInt(STATUS_STARTUP_MS, -1);
+        detectionWorker = new FaceDetectionWorker();
+        detectionWorker.setWorkingHeight(DETECTION_WORKING_HEIGHT);
+        detectionWorker.setFrameBudget(DETECTION_BUDGET_MS);
+        detectionWorker.setInputOrientation(DISPLAY_ORIENTATION);
+        detectionWorker.setIdentifier(faceIdentifier);
+        applyTrackingMode();
+        detectionWorker.start();
     }
 
     @Override
     public void onCameraViewStopped() {
-        if (rgba != null) rgba.release();
-        if (gray != null) gray.release();
-        if (display != null) display.release();
+        if (detectionWorker != null) {
+            detectionWorker.stop();
+            detectionWorker.release();
+            detectionWorker = null;
+        }
     }
 
     @Override
     public Mat onCameraFrame(CameraBridgeViewBase.CvCameraViewFrame inputFrame) {
-        rgba = inputFrame.rgba();
-        if (display == null || display.empty() || display.rows() != rgba.cols() || display.cols() != rgba.rows()) {
-            if (display != null) display.release();
-            display = new Mat(rgba.cols(), rgba.rows(), CvType.CV_8UC4);
+        // El análisis usa el plano Y del flujo chico tal cual llega y los rostros se anotan en el
+        // overlay. La vista previa no pasa por aquí: no hace falta convertir a RGBA ni devolver nada
+        Mat gray = inputFrame.gray();
+        previewRate.tick();
+        if (firstFrameAt == 0) firstFrameAt = SystemClock.elapsedRealtime();
+
+        if (models.faceCascade() == null) {
+            status.setInt(STATUS_READY, 0);
+            return null;
         }
 
-        // Orientar para vertical y espejar la cámara frontal
-        Core.rotate(rgba, display, Core.ROTATE_90_CLOCKWISE);
-        // Corregir inversión vertical y mantener efecto espejo horizontal
-        Core.flip(display, display, 0);
-        Core.flip(display, display, 1);
-
-        if (gray == null || gray.rows() != display.rows() || gray.cols() != display.cols()) {
-            if (gray != null) gray.release();
-            gray = new Mat(display.size(), CvType.CV_8UC1);
+        // La detección corre en su propio hilo; aquí sólo se entrega el cuadro más reciente
+        if (!detectionWorker.hasDetector()) {
+            detectionWorker.setDetector(createDetector());
         }
-
-        Imgproc.cvtColor(display, gray, Imgproc.COLOR_RGBA2GRAY);
-        Imgproc.equalizeHist(gray, gray);
-
-        if (faceClassifier == null) {
-            runOnUiThread(() -> tvFaceInfo.setText("Cargando clasificador..."));
-            return display;
+        ensureIdentifier();
+        if (faceIdentifier != null && !detectionWorker.hasIdentifier()) {
+            detectionWorker.setIdentifier(faceIdentifier);
         }
+        detectionWorker.submit(gray);
 
-        MatOfRect faces = new MatOfRect();
-        faceClassifier.detectMultiScale(
-                gray,
-                faces,
-                1.1,
-                3,
-                0,
-                new org.opencv.core.Size(80, 80),
-                new org.opencv.core.Size()
-        );
+        long firstResultAt = detectionWorker.getFirstResultTime();
+        if (startupLatencyMs < 0 && firstResultAt != 0) {
+            startupLatencyMs = firstResultAt - firstFrameAt;
+            Log.i(TAG, "Primer cuadro a primera detección: " + startupLatencyMs + " ms");
+            status.setInt(STATUS_STARTUP_MS, (int) startupLatencyMs);
+        }
 
-        Rect[] faceArray = faces.toArray();
-        for (Rect face : faceArray) {
-            Imgproc.rectangle(display, face.tl(), face.br(), FACE_COLOR, 3);
+        Rect[] faceArray = detectionWorker.getLatestFaces();
+        String[] labels = detectionWorker.getLatestLabels();
+        FrameOverlay overlay = cameraView.beginOverlay();
+        for (int i = 0; i < faceArray.length; i++) {
+            Rect face = faceArray[i];
+            String label = i < labels.length ? labels[i] : null;
+            overlay.addRect(face.x, face.y, face.width, face.height, FACE_COLOR, label);
         }
+        cameraView.publishOverlay();
 
-        final int faceCount = faceArray.length;
-        runOnUiThread(() -> tvFaceInfo.setText("Rostros: " + faceCount));
+        status.setInt(STATUS_READY, 1);
+        status.setInt(STATUS_FACES, faceArray.length);
+        status.setInt(STATUS_GALLERY, detectionWorker.getGallerySize());
+        status.setDouble(STATUS_PREVIEW_FPS, previewRate.getRate());
+        status.setDouble(STATUS_DETECTION_FPS, detectionWorker.getDetectionRate());
 
-        return display;
+        return null;
     }
 }
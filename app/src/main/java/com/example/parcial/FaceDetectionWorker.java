@@ -0,0 +1,414 @@
+package com.example.parcial;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ejecuta el motor de detección de rostros en un hilo dedicado. El hilo de la cámara deja una copia
+ * en gris en un buzón de tamaño uno: si el detector sigue ocupado, el cuadro anterior
+ * se descarta y sólo se procesa el más reciente.
+ */
+public class FaceDetectionWorker {
+
+    private static final String TAG = "FaceDetectionWorker";
+    private static final Rect[] NO_FACES = new Rect[0];
+    private static final String[] NO_LABELS = new String[0];
+    private static final float TRACKER_MIN_CONFIDENCE = 0.5f;
+
+    private final RateMeter detectionRate = new RateMeter();
+
+    private Mat pending = new Mat();
+    private Mat working = new Mat();
+
+    private boolean hasPending = false;
+    private boolean stopThread = false;
+    private long droppedFrames = 0;
+    private Thread thread;
+
+    private final AtomicReference<FaceDetector> pendingDetector = new AtomicReference<>();
+    /** Último motor pedido, adoptado o no; sólo para consultas desde otros hilos. */
+    private volatile FaceDetector selectedDetector;
+    private volatile int workingHeight = 0;
+    private volatile double frameBudgetMs = 0;
+    private DetectionGovernor governor;
+    private DetectionGovernor.Knob heightKnob;
+    private DetectionGovernor.Knob scaleFactorKnob;
+    private volatile FrameOrientation inputOrientation = FrameOrientation.IDENTITY;
+    private FaceDetector detector;
+    private volatile Rect[] latestFaces = NO_FACES;
+
+    // Modo híbrido: detector cada N cuadros y seguimiento por flujo óptico entre medias
+    private final AtomicReference<FaceTracker> pendingTracker = new AtomicReference<>();
+    private volatile boolean trackingEnabled = false;
+    private FaceTracker tracker;
+    private volatile boolean lastFrameDetected = false;
+
+    // Reconocimiento: sólo con YuNet, que entrega los puntos para alinear el rostro
+    private volatile FaceIdentifier pendingIdentifier;
+    private FaceIdentifier identifier;
+    private final FaceIdentities identities = new FaceIdentities();
+    private int[] degradedIds = new int[8];
+    private int degradedCount = 0;
+    private volatile String pendingEnrollment;
+    private volatile int gallerySize = 0;
+    private volatile String[] latestLabels = NO_LABELS;
+    private volatile long firstResultAt = 0;
+
+    /**
+     * Cambia el motor de detección. El hilo de detección toma posesión del motor y
+     * libera el anterior antes del siguiente cuadro; un motor pendiente que nunca llegó a
+     * usarse se libera aquí.
+     */
+    public void setDetector(FaceDetector detector) {
+        selectedDetector = detector;
+        FaceDetector replaced = pendingDetector.getAndSet(detector);
+        if (replaced != null && replaced != detector) replaced.release();
+    }
+
+    public boolean hasDetector() {
+        return selectedDetector != null;
+    }
+
+    public String getDetectorName() {
+        FaceDetector current = selectedDetector;
+        return current == null ? "-" : current.getName();
+    }
+
+    /**
+     * Activa el reconocimiento de personas registradas. Se reconoce cuando aparece un rostro
+     * nuevo o su seguimiento se degrada, no en cada cuadro. A diferencia del motor, el
+     * reconocedor sigue siendo del llamador: su galería sobrevive a este hilo.
+     */
+    public void setIdentifier(FaceIdentifier identifier) {
+        this.pendingIdentifier = identifier;
+    }
+
+    public boolean hasIdentifier() {
+        return pendingIdentifier != null;
+    }
+
+    /** Registra el rostro más grande del siguiente cuadro de detección con ese nombre. */
+    public void requestEnrollment(String name) {
+        this.pendingEnrollment = name;
+    }
+
+    public int getGallerySize() {
+        return gallerySize;
+    }
+
+    /** Alto al que se reduce el cuadro antes de detectar; 0 usa resolución completa. */
+    public void setWorkingHeight(int workingHeight) {
+        this.workingHeight = workingHeight;
+    }
+
+    /**
+     * Presupuesto de la etapa de detección en milisegundos; 0 lo desactiva. Si se excede,
+     * el hilo sube el scaleFactor de la cascada y luego baja el alto de trabajo (hasta la
+     * mitad), y los recupera cuando sobra tiempo.
+     */
+    public void setFrameBudget(double budgetMs) {
+        this.frameBudgetMs = budgetMs;
+    }
+
+    /**
+     * Orientación de los cuadros recibidos respecto a la pantalla. Las cajas publicadas
+     * quedan en coordenadas del cuadro recibido (sensor).
+     */
+    public void setInputOrientation(FrameOrientation orientation) {
+        this.inputOrientation = orientation;
+    }
+
+    /**
+     * Activa el modo detectar-y-seguir. El cambio se aplica en el hilo de detección
+     * antes del siguiente cuadro; un seguidor pendiente que nunca llegó a usarse se libera aquí.
+     */
+    public void setTracking(boolean enabled, int detectInterval, FaceTracker.RedetectPolicy policy) {
+        trackingEnabled = enabled;
+        FaceTracker replaced = pendingTracker.getAndSet(
+                enabled ? new FaceTracker(detectInterval, policy, TRACKER_MIN_CONFIDENCE) : null);
+        if (replaced != null) replaced.release();
+    }
+
+    public boolean isTrackingEnabled() {
+        return trackingEnabled;
+    }
+
+    /** Verdadero si el último cuadro procesado pasó por el detector (y no sólo por el seguidor). */
+    public boolean lastFrameDetected() {
+        return lastFrameDetected;
+    }
+
+    public void start() {
+        synchronized (this) {
+            stopThread = false;
+            hasPending = false;
+        }
+        firstResultAt = 0;
+        detectionRate.reset();
+        thread = new Thread(this::runLoop, "FaceDetectionWorker");
+        thread.start();
+    }
+
+    public void stop() {
+        synchronized (this) {
+            stopThread = true;
+            notify();
+        }
+        try {
+            if (thread != null) thread.join();
+        } catch (InterruptedException e) {
+            Log.e(TAG, "Interrumpido esperando el hilo de detección", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            thread = null;
+        }
+        latestFaces = NO_FACES;
+        latestLabels = NO_LABELS;
+    }
+
+    public void release() {
+        if (tracker != null) tracker.release();
+        tracker = null;
+        FaceTracker unusedTracker = pendingTracker.getAndSet(null);
+        if (unusedTracker != null) unusedTracker.release();
+        FaceDetector unusedDetector = pendingDetector.getAndSet(null);
+        if (unusedDetector != null && unusedDetector != detector) unusedDetector.release();
+        if (detector != null) detector.release();
+        detector = null;
+        identifier = null;
+        pending.release();
+        working.release();
+    }
+
+    /**
+     * Copia el cuadro gris en el buzón. Nunca bloquea al hilo de la cámara
+     * mientras el detector trabaja: el intercambio de buzones ocurre bajo el mismo lock.
+     */
+    public void submit(Mat gray) {
+        synchronized (this) {
+            if (hasPending) droppedFrames++;
+            gray.copyTo(pending);
+            hasPending = true;
+            notify();
+        }
+    }
+
+    public Rect[] getLatestFaces() {
+        return latestFaces;
+    }
+
+    /**
+     * Nombres de las personas reconocidas, en el mismo orden que {@link #getLatestFaces()};
+     * null si el rostro es desconocido. Puede ser más corto que las cajas si se leyó
+     * entre dos publicaciones.
+     */
+    public String[] getLatestLabels() {
+        return latestLabels;
+    }
+
+    /** Momento (SystemClock.elapsedRealtime) del primer resultado desde start(); 0 si aún no hay. */
+    public long getFirstResultTime() {
+        return firstResultAt;
+    }
+
+    public double getDetectionRate() {
+        return detectionRate.getRate();
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Adopta el seguidor pendiente, o suelta el actual si se desactivó el seguimiento. Sólo
+     * el hilo de detección toca {@code tracker}.
+     */
+    private void syncTracker() {
+        FaceTracker requested = pendingTracker.getAndSet(null);
+        if (requested == null && (trackingEnabled || tracker == null)) return;
+        if (tracker != null) tracker.release();
+        tracker = requested;
+        // Los ids del seguidor y los propios no son comparables
+        identities.clear();
+    }
+
+    /**
+     * Rehace el gobernador si cambió el presupuesto, el motor o el alto de trabajo (la perilla
+     * parte de él). El scaleFactor sólo existe en la cascada; el alto de trabajo sólo si se
+     * trabaja reducido.
+     */
+    private void syncGovernor() {
+        double budget = frameBudgetMs;
+        int height = workingHeight;
+        if (budget <= 0) {
+            // Sin presupuesto la cascada vuelve a su scaleFactor de calidad
+            if (scaleFactorKnob != null) {
+                ((ScaledCascadeDetector) detector).setScaleFactor(scaleFactorKnob.quality);
+            }
+            governor = null;
+            heightKnob = null;
+            scaleFactorKnob = null;
+            return;
+        }
+        boolean heightChanged = heightKnob != null ? heightKnob.quality != height : height > 0;
+        if (governor == null || governor.getBudgetMs() != budget || heightChanged) {
+            governor = new DetectionGovernor("Rostros/" + detector.getName(), budget);
+            scaleFactorKnob = detector instanceof ScaledCascadeDetector
+                    ? governor.addKnob("scaleFactor", 1.1, 1.3, 0.05) : null;
+            heightKnob = height > 0
+                    ? governor.addKnob("altoTrabajo", height, height / 2.0, height / 8.0) : null;
+        }
+        if (scaleFactorKnob != null) {
+            ((ScaledCascadeDetector) detector).setScaleFactor(scaleFactorKnob.value());
+        }
+    }
+
+    private void syncIdentifier() {
+        FaceIdentifier requested = pendingIdentifier;
+        if (requested == identifier) return;
+        identifier = requested;
+        identities.clear();
+        gallerySize = identifier != null ? identifier.getGallery().size() : 0;
+    }
+
+    private String[] recognize(Rect[] detected, int[] trackIds) {
+        if (identifier == null || !(detector instanceof YuNetFaceDetector)) return NO_LABELS;
+        YuNetFaceDetector yunet = (YuNetFaceDetector) detector;
+        int[] ids = identities.update(detected, trackIds);
+        Mat image = yunet.lastInput();
+        Mat rows = yunet.lastFaces();
+
+        String enrollName = pendingEnrollment;
+        if (enrollName != null && detected.length > 0) {
+            enroll(enrollName, image, rows, detected, ids);
+            pendingEnrollment = null;
+        }
+
+        String[] labels = new String[detected.length];
+        for (int i = 0; i < detected.length; i++) {
+            if (identities.needsRecognition(ids[i], isDegraded(ids[i]))) {
+                Mat row = rows.row(i);
+                identities.store(ids[i], identifier.nameFor(identifier.identify(image, row)));
+                row.release();
+            }
+            labels[i] = identities.nameOf(ids[i]);
+        }
+        return labels;
+    }
+
+    private void enroll(String name, Mat image, Mat rows, Rect[] detected, int[] ids) {
+        int largest = 0;
+        for (int i = 1; i < detected.length; i++) {
+            if (detected[i].area() > detected[largest].area()) largest = i;
+        }
+        Mat row = rows.row(largest);
+        try {
+            identifier.enroll(name, image, row);
+            identities.store(ids[largest], name);
+            gallerySize = identifier.getGallery().size();
+            Log.i(TAG, "Registrado " + name + " (" + gallerySize + " muestras)");
+        } catch (IOException e) {
+            Log.e(TAG, "No se pudo guardar la galería", e);
+        } finally {
+            row.release();
+        }
+    }
+
+    /** Guarda qué rostros perdieron confianza en el seguimiento antes de reiniciarlo. */
+    private void collectDegraded(List<FaceTracker.TrackedFace> faces) {
+        if (degradedIds.length < faces.size()) degradedIds = new int[faces.size()];
+        degradedCount = 0;
+        for (FaceTracker.TrackedFace face : faces) {
+            if (face.confidence < TRACKER_MIN_CONFIDENCE) degradedIds[degradedCount++] = face.id;
+        }
+    }
+
+    private boolean isDegraded(int trackId) {
+        for (int i = 0; i < degradedCount; i++) {
+            if (degradedIds[i] == trackId) return true;
+        }
+        return false;
+    }
+
+    private String[] labelsFor(List<FaceTracker.TrackedFace> faces) {
+        if (identifier == null) return NO_LABELS;
+        String[] labels = new String[faces.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = identities.nameOf(faces.get(i).id);
+        }
+        return labels;
+    }
+
+    private static int[] idsOf(List<FaceTracker.TrackedFace> faces) {
+        int[] ids = new int[faces.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = faces.get(i).id;
+        }
+        return ids;
+    }
+
+    private void runLoop() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (!hasPending && !stopThread) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    Log.e(TAG, "Hilo de detección interrumpido", e);
+                    return;
+                }
+                if (stopThread) return;
+
+                Mat tmp = working;
+                working = pending;
+                pending = tmp;
+                hasPending = false;
+            }
+
+            FaceDetector requested = pendingDetector.getAndSet(null);
+            if (requested != null && requested != detector) {
+                if (detector != null) detector.release();
+                detector = requested;
+                governor = null;
+                heightKnob = null;
+                scaleFactorKnob = null;
+            }
+            if (detector == null) continue;
+            syncGovernor();
+            detector.setWorkingHeight(heightKnob != null ? (int) heightKnob.value() : workingHeight);
+            detector.setInputOrientation(inputOrientation);
+
+            syncIdentifier();
+            syncTracker();
+            if (tracker != null && !tracker.shouldDetect()) {
+                tracker.track(working);
+                latestLabels = labelsFor(tracker.getFaces());
+                latestFaces = tracker.getBoxes();
+                lastFrameDetected = false;
+            } else {
+                if (governor != null) governor.begin();
+                Rect[] detected = detector.detect(working);
+                if (governor != null) governor.end();
+                int[] trackIds = null;
+                if (tracker != null) {
+                    collectDegraded(tracker.getFaces());
+                    tracker.reset(working, detected);
+                    trackIds = idsOf(tracker.getFaces());
+                }
+                latestLabels = recognize(detected, trackIds);
+                latestFaces = detected;
+                lastFrameDetected = true;
+            }
+            if (firstResultAt == 0) firstResultAt = SystemClock.elapsedRealtime();
+            detectionRate.tick();
+        }
+    }
+}
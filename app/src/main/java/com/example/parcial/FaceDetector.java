@@ -0,0 +1,26 @@
+package com.example.parcial;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+/**
+ * Motor de detección de rostros. Recibe el gris del sensor y devuelve las cajas en esas
+ * mismas coordenadas. Cada instancia se usa desde un solo hilo.
+ */
+public interface FaceDetector {
+
+    String getName();
+
+    /** Alto de trabajo (con el cuadro ya vertical); 0 usa resolución completa. */
+    void setWorkingHeight(int workingHeight);
+
+    /** Orientación del sensor a pantalla, para poner los rostros verticales. */
+    void setInputOrientation(FrameOrientation orientation);
+
+    Rect[] detect(Mat gray);
+
+    /** Igual que {@link #detect(Mat)} pero forzando una escala (1.0 = completa). */
+    Rect[] detect(Mat gray, double scale);
+
+    void release();
+}
@@ -0,0 +1,72 @@
+package com.example.parcial;
+
+import android.os.Build;
+import android.os.Debug;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Latencia por cuadro, memoria y detecciones de cada motor de rostros sobre los mismos
+ * cuadros grabados, para elegir el motor más rápido según el tipo de dispositivo.
+ */
+public final class FaceDetectorBenchmark {
+
+    private static final int WARMUP_FRAMES = 3;
+
+    private FaceDetectorBenchmark() {
+    }
+
+    public static String run(List<Mat> grayFrames, List<FaceDetector> detectors, int workingHeight) {
+        if (grayFrames.isEmpty()) return "Sin cuadros grabados";
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "%s %s, API %d, %d núcleos, %d cuadros, alto de trabajo %d%n",
+                Build.MANUFACTURER, Build.MODEL, Build.VERSION.SDK_INT,
+                Runtime.getRuntime().availableProcessors(), grayFrames.size(), workingHeight));
+
+        double tickToMs = 1000.0 / Core.getTickFrequency();
+        double[] latencies = new double[grayFrames.size()];
+
+        for (FaceDetector detector : detectors) {
+            detector.setWorkingHeight(workingHeight);
+            for (int i = 0; i < Math.min(WARMUP_FRAMES, grayFrames.size()); i++) {
+                detector.detect(grayFrames.get(i));
+            }
+
+            Runtime runtime = Runtime.getRuntime();
+            long nativeBefore = Debug.getNativeHeapAllocatedSize();
+            long javaBefore = runtime.totalMemory() - runtime.freeMemory();
+            long nativePeak = nativeBefore;
+            int detections = 0;
+
+            for (int i = 0; i < grayFrames.size(); i++) {
+                long start = Core.getTickCount();
+                detections += detector.detect(grayFrames.get(i)).length;
+                latencies[i] = (Core.getTickCount() - start) * tickToMs;
+                nativePeak = Math.max(nativePeak, Debug.getNativeHeapAllocatedSize());
+            }
+
+            long javaAfter = runtime.totalMemory() - runtime.freeMemory();
+            Arrays.sort(latencies);
+            double mean = 0;
+            for (double l : latencies) mean += l;
+            mean /= latencies.length;
+
+            report.append(String.format(Locale.US,
+                    "  %-6s media %.2f ms, p50 %.2f ms, p95 %.2f ms, máx %.2f ms%n"
+                            + "         nativo +%d KB (pico), Java %+d KB, %d detecciones%n",
+                    detector.getName(), mean,
+                    latencies[latencies.length / 2],
+                    latencies[Math.min(latencies.length - 1, (int) (latencies.length * 0.95))],
+                    latencies[latencies.length - 1],
+                    (nativePeak - nativeBefore) / 1024, (javaAfter - javaBefore) / 1024,
+                    detections));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.parcial;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Galería de rostros registrados. Los embeddings (normalizados) viven en un único float[]
+ * contiguo, uno tras otro, y la persona de cada uno en un int[] paralelo: la búsqueda es un
+ * recorrido lineal de productos punto sin objetos intermedios. Con más de
+ * {@link #INDEX_MIN_SIZE} entradas se construye un índice IVF y sólo se recorren los
+ * grupos más cercanos a la consulta.
+ *
+ * <p>El archivo guardado tiene el mismo orden que la memoria (little-endian): cabecera,
+ * vectores, personas y nombres. Al cargar, los vectores se copian en bloque desde el archivo
+ * mapeado, sin interpretar nada número por número.
+ *
+ * <p>No es segura entre hilos: la usa sólo el hilo de detección. El índice se construye en un
+ * hilo aparte y se publica al terminar; hasta entonces la búsqueda sigue siendo lineal.
+ */
+public class FaceGallery {
+
+    /** Dimensión de los embeddings de SFace. Múltiplo de 4 para el producto punto desenrollado. */
+    public static final int DIM = 128;
+
+    static final int INDEX_MIN_SIZE = 4096;
+
+    private static final int MAGIC = 0x31474146; // "FAG1" en little-endian
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+    /** Construye los índices fuera del hilo de detección, de a uno para todo el proceso. */
+    private static final ExecutorService INDEXER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "FaceGalleryIndex");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Mejor coincidencia de una búsqueda; se reutiliza entre llamadas. */
+    public static final class Match {
+        public int personId = -1;
+        public float score = -1f;
+
+        void clear() {
+            personId = -1;
+            score = -1f;
+        }
+    }
+
+    private float[] vectors = new float[DIM * 16];
+    private int[] personOf = new int[16];
+    private int size = 0;
+    private final List<String> people = new ArrayList<>();
+    private volatile GalleryIndex index;
+    private Future<?> indexing;
+
+    public int size() {
+        return size;
+    }
+
+    public int personCount() {
+        return people.size();
+    }
+
+    public String nameOf(int personId) {
+        return personId >= 0 && personId < people.size() ? people.get(personId) : null;
+    }
+
+    /** Devuelve el id de la persona con ese nombre, creándola si no existe. */
+    public int addPerson(String name) {
+        int existing = people.indexOf(name);
+        if (existing >= 0) return existing;
+        people.add(name);
+        return people.size() - 1;
+    }
+
+    /** Agrega una muestra de {@code personId}. Se guarda una copia normalizada. */
+    public void add(int personId, float[] embedding) {
+        if (personId < 0 || personId >= people.size()) {
+            throw new IllegalArgumentException("Persona desconocida: " + personId);
+        }
+        ensureCapacity(size + 1);
+        int offset = size * DIM;
+        System.arraycopy(embedding, 0, vectors, offset, DIM);
+        normalize(vectors, offset);
+        personOf[size] = personId;
+        size++;
+        maybeRebuildIndex();
+    }
+
+    /**
+     * Busca la muestra más parecida (coseno) a {@code query}, que debe venir normalizada.
+     * Con índice, recorre los grupos cercanos y además las entradas agregadas después
+     * de construirlo.
+     */
+    public Match search(float[] query, Match out) {
+        out.clear();
+        int from = 0;
+        GalleryIndex current = index;
+        if (current != null) {
+            current.search(vectors, personOf, query, out);
+            from = current.indexedSize();
+        }
+        scan(query, from, size, out);
+        return out;
+    }
+
+    /** Recorrido completo, sin índice. */
+    Match searchExhaustive(float[] query, Match out) {
+        out.clear();
+        scan(query, 0, size, out);
+        return out;
+    }
+
+    boolean isIndexed() {
+        return index != null;
+    }
+
+    /** Espera a que termine la construcción del índice en curso, si la hay. */
+    void awaitIndex() throws InterruptedException, ExecutionException {
+        Future<?> pending = indexing;
+        if (pending != null) pending.get();
+    }
+
+    public void save(File file) throws IOException {
+        byte[][] names = new byte[people.size()][];
+        int namesBytes = 0;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = people.get(i).getBytes(StandardCharsets.UTF_8);
+            namesBytes += Integer.BYTES + names[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + size * DIM * Float.BYTES
+                + size * Integer.BYTES + namesBytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(DIM).putInt(size).putInt(people.size());
+        buffer.asFloatBuffer().put(vectors, 0, size * DIM);
+        buffer.position(buffer.position() + size * DIM * Float.BYTES);
+        buffer.asIntBuffer().put(personOf, 0, size);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        for (byte[] name : names) {
+            buffer.putInt(name.length).put(name);
+        }
+        buffer.flip();
+
+        // Se escribe aparte y se renombra: un corte a mitad no deja una galería rota
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream os = new FileOutputStream(tmp); FileChannel channel = os.getChannel()) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+            os.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("No se pudo reemplazar " + file);
+        }
+    }
+
+    /** Carga una galería guardada con {@link #save}; si el archivo no existe devuelve una vacía. */
+    public static FaceGallery load(File file) throws IOException {
+        FaceGallery gallery = new FaceGallery();
+        if (!file.exists()) return gallery;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.remaining() < HEADER_BYTES || map.getInt() != MAGIC || map.getInt() != DIM) {
+                throw new IOException("Galería con formato desconocido: " + file);
+            }
+            int count = map.getInt();
+            int personCount = map.getInt();
+            if (count < 0 || personCount < 0
+                    || (long) count * (DIM + 1) * Float.BYTES > map.remaining()) {
+                throw new IOException("Galería truncada: " + file);
+            }
+
+            gallery.ensureCapacity(count);
+            map.asFloatBuffer().get(gallery.vectors, 0, count * DIM);
+            map.position(map.position() + count * DIM * Float.BYTES);
+            map.asIntBuffer().get(gallery.personOf, 0, count);
+            map.position(map.position() + count * Integer.BYTES);
+            for (int i = 0; i < personCount; i++) {
+                byte[] name = new byte[map.getInt()];
+                map.get(name);
+                gallery.people.add(new String(name, StandardCharsets.UTF_8));
+            }
+            gallery.size = count;
+        } catch (RuntimeException e) {
+            // BufferUnderflowException y similares: el archivo no tiene lo que dice la cabecera
+            throw new IOException("Galería corrupta: " + file, e);
+        }
+        gallery.maybeRebuildIndex();
+        return gallery;
+    }
+
+    /** Producto punto de dos vectores de {@link #DIM}, con cuatro acumuladores independientes. */
+    static float dot(float[] a, int aOffset, float[] b, int bOffset) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        for (int i = 0; i < DIM; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static void normalize(float[] v, int offset) {
+        float norm = (float) Math.sqrt(dot(v, offset, v, offset));
+        if (norm == 0f) return;
+        float inv = 1f / norm;
+        for (int i = 0; i < DIM; i++) {
+            v[offset + i] *= inv;
+        }
+    }
+
+    private void scan(float[] query, int from, int to, Match out) {
+        for (int i = from; i < to; i++) {
+            float score = dot(vectors, i * DIM, query, 0);
+            if (score > out.score) {
+                out.score = score;
+                out.personId = personOf[i];
+            }
+        }
+    }
+
+    /**
+     * El índice se reconstruye al cruzar el umbral y luego cada vez que la galería crece un
+     * 25 %, en {@link #INDEXER} para no frenar la detección: mientras tanto, y mientras se
+     * construye, las entradas nuevas se recorren en lineal. El constructor lee sólo las
+     * primeras {@code count} entradas, que ya no cambian; si {@link #ensureCapacity} reemplaza
+     * el arreglo, sigue con el anterior, que tiene los mismos datos.
+     */
+    private void maybeRebuildIndex() {
+        if (size < INDEX_MIN_SIZE) {
+            index = null;
+            return;
+        }
+        if (indexing != null && !indexing.isDone()) return;
+        GalleryIndex current = index;
+        if (current == null || size >= current.indexedSize() + current.indexedSize() / 4) {
+            float[] snapshot = vectors;
+            int count = size;
+            indexing = INDEXER.submit(() -> {
+                index = GalleryIndex.build(snapshot, count);
+            });
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= personOf.length) return;
+        int capacity = Math.max(count, personOf.length * 2);
+        float[] grownVectors = new float[capacity * DIM];
+        System.arraycopy(vectors, 0, grownVectors, 0, size * DIM);
+        vectors = grownVectors;
+        int[] grownPersons = new int[capacity];
+        System.arraycopy(personOf, 0, grownPersons, 0, size);
+        personOf = grownPersons;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.parcial;
+
+import org.opencv.core.Mat;
+import org.opencv.objdetect.FaceRecognizerSF;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reconocimiento con FaceRecognizerSF (SFace): alinea el rostro con los cinco puntos de
+ * YuNet, extrae el embedding de 128 valores y lo busca en la {@link FaceGallery}.
+ * Se usa desde el hilo de detección.
+ */
+public class FaceIdentifier {
+
+    public static final String MODEL_FILE = "face_recognition_sface_2021dec.onnx";
+
+    /** Umbral de coseno recomendado para SFace: por debajo, el rostro es desconocido. */
+    public static final float MATCH_THRESHOLD = 0.363f;
+
+    private final FaceRecognizerSF recognizer;
+    private final FaceGallery gallery;
+    private final File galleryFile;
+    private final Mat aligned = new Mat();
+    private final Mat feature = new Mat();
+    private final float[] embedding = new float[FaceGallery.DIM];
+    private final FaceGallery.Match match = new FaceGallery.Match();
+
+    /** {@code recognizer} puede ser compartido; la galería es de esta instancia. */
+    public FaceIdentifier(FaceRecognizerSF recognizer, File galleryFile) throws IOException {
+        this.recognizer = recognizer;
+        this.galleryFile = galleryFile;
+        this.gallery = FaceGallery.load(galleryFile);
+    }
+
+    public FaceGallery getGallery() {
+        return gallery;
+    }
+
+    /**
+     * Busca el rostro {@code faceRow} (una fila de la salida de YuNet) de {@code image}.
+     * El resultado se reutiliza en la siguiente llamada.
+     */
+    public FaceGallery.Match identify(Mat image, Mat faceRow) {
+        embed(image, faceRow);
+        return gallery.search(embedding, match);
+    }
+
+    /** Nombre para un resultado de {@link #identify}, o null si no supera el umbral. */
+    public String nameFor(FaceGallery.Match result) {
+        return result.score >= MATCH_THRESHOLD ? gallery.nameOf(result.personId) : null;
+    }
+
+    /** Agrega una muestra de {@code name} y guarda la galería. */
+    public void enroll(String name, Mat image, Mat faceRow) throws IOException {
+        embed(image, faceRow);
+        gallery.add(gallery.addPerson(name), embedding);
+        gallery.save(galleryFile);
+    }
+
+    public void release() {
+        aligned.release();
+        feature.release();
+    }
+
+    private void embed(Mat image, Mat faceRow) {
+        recognizer.alignCrop(image, faceRow, aligned);
+        recognizer.feature(aligned, feature);
+        feature.get(0, 0, embedding);
+        FaceGallery.normalize(embedding, 0);
+    }
+}
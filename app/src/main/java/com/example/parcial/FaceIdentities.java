@@ -0,0 +1,122 @@
+package com.example.parcial;
+
+import org.opencv.core.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Identidad conocida de cada rostro seguido, por id de seguimiento. Decide cuándo vale la
+ * pena volver a reconocer: rostro nuevo, seguimiento degradado, rostro que creció bastante
+ * (más resolución para el embedding) o desconocido al que le toca un nuevo intento.
+ * Sin seguidor, los ids se asignan aquí por solapamiento con las cajas anteriores.
+ */
+final class FaceIdentities {
+
+    /** Detecciones entre intentos sobre un rostro que quedó como desconocido. */
+    static final int UNKNOWN_RETRY = 5;
+    /** Crecimiento de área a partir del cual se repite el reconocimiento. */
+    static final double GROWTH_RETRY = 1.5;
+
+    private static final double MATCH_IOU = 0.3;
+
+    private static final class Entry {
+        final int trackId;
+        final Rect box = new Rect();
+        String name;
+        int recognizedArea;
+        int detectionsSinceRecognition;
+        boolean recognized;
+
+        Entry(int trackId) {
+            this.trackId = trackId;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Entry> previous = new ArrayList<>();
+    private int nextId = 1;
+
+    /**
+     * Registra las cajas de un cuadro de detección y devuelve sus ids. Si {@code trackIds}
+     * es null se asignan por IoU con las cajas del cuadro de detección anterior. Los ids
+     * que no aparecen se olvidan.
+     */
+    int[] update(Rect[] boxes, int[] trackIds) {
+        previous.clear();
+        previous.addAll(entries);
+        entries.clear();
+
+        int[] ids = trackIds != null ? trackIds : new int[boxes.length];
+        for (int i = 0; i < boxes.length; i++) {
+            Entry entry = trackIds != null ? take(trackIds[i]) : takeOverlapping(boxes[i]);
+            if (entry == null) {
+                entry = new Entry(trackIds != null ? trackIds[i] : nextId++);
+            } else {
+                entry.detectionsSinceRecognition++;
+            }
+            entry.box.x = boxes[i].x;
+            entry.box.y = boxes[i].y;
+            entry.box.width = boxes[i].width;
+            entry.box.height = boxes[i].height;
+            ids[i] = entry.trackId;
+            entries.add(entry);
+        }
+        return ids;
+    }
+
+    /** Verdadero si hay que (re)reconocer {@code trackId}; {@code degraded} viene del seguidor. */
+    boolean needsRecognition(int trackId, boolean degraded) {
+        Entry entry = find(trackId);
+        if (entry == null || !entry.recognized || degraded) return true;
+        if (entry.box.area() >= entry.recognizedArea * GROWTH_RETRY) return true;
+        return entry.name == null && entry.detectionsSinceRecognition >= UNKNOWN_RETRY;
+    }
+
+    void store(int trackId, String name) {
+        Entry entry = find(trackId);
+        if (entry == null) return;
+        entry.name = name;
+        entry.recognized = true;
+        entry.recognizedArea = (int) entry.box.area();
+        entry.detectionsSinceRecognition = 0;
+    }
+
+    /** Nombre reconocido para {@code trackId}, o null si es desconocido o aún no se intentó. */
+    String nameOf(int trackId) {
+        Entry entry = find(trackId);
+        return entry == null ? null : entry.name;
+    }
+
+    void clear() {
+        entries.clear();
+        previous.clear();
+    }
+
+    private Entry find(int trackId) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).trackId == trackId) return entries.get(i);
+        }
+        return null;
+    }
+
+    private Entry take(int trackId) {
+        for (int i = 0; i < previous.size(); i++) {
+            if (previous.get(i).trackId == trackId) return previous.remove(i);
+        }
+        return null;
+    }
+
+    private Entry takeOverlapping(Rect box) {
+        int best = -1;
+        double bestIou = MATCH_IOU;
+        for (int i = 0; i < previous.size(); i++) {
+            double iou = FaceTracker.iou(previous.get(i).box, box);
+            if (iou > bestIou) {
+                bestIou = iou;
+                best = i;
+            }
+        }
+        return best >= 0 ? previous.remove(best) : null;
+    }
+}
@@ -0,0 +1,310 @@
+package com.example.parcial;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.video.SparsePyrLKOpticalFlow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sigue cada rostro entre detecciones con flujo óptico Lucas-Kanade sobre esquinas
+ * dentro de su caja. La caja se desplaza con la mediana del movimiento y se escala
+ * con la mediana del cambio de distancia al centroide.
+ */
+public class FaceTracker {
+
+    public enum RedetectPolicy {
+        /** Cascada cada N cuadros, sin importar la confianza. */
+        EVERY_N_FRAMES,
+        /** Cascada sólo cuando algún rostro pierde confianza. */
+        ON_LOW_CONFIDENCE,
+        /** Cascada cada N cuadros o antes si algún rostro pierde confianza. */
+        EVERY_N_OR_LOW_CONFIDENCE
+    }
+
+    public static class TrackedFace {
+        public final int id;
+        public final Rect box;
+        public float confidence;
+        /** Cuadros seguidos desde la última vez que la cascada confirmó este rostro. */
+        public int framesSinceDetection;
+
+        TrackedFace(int id, Rect box) {
+            this.id = id;
+            this.box = box;
+            this.confidence = 1f;
+        }
+    }
+
+    private static final int MAX_CORNERS_PER_FACE = 30;
+    private static final int MIN_POINTS_PER_FACE = 4;
+    private static final double MATCH_IOU = 0.3;
+
+    private final int detectInterval;
+    private final RedetectPolicy policy;
+    private final float minConfidence;
+
+    private final SparsePyrLKOpticalFlow flow = SparsePyrLKOpticalFlow.create(new Size(15, 15), 2);
+    private final Mat prevGray = new Mat();
+    private final MatOfPoint corners = new MatOfPoint();
+    private final MatOfPoint2f prevPts = new MatOfPoint2f();
+    private final MatOfPoint2f nextPts = new MatOfPoint2f();
+    private final MatOfByte status = new MatOfByte();
+
+    private final List<TrackedFace> faces = new ArrayList<>();
+    private float[] prevBuf = new float[0];
+    private float[] nextBuf = new float[0];
+    private byte[] statusBuf = new byte[0];
+    private int[] faceStart = new int[0];
+    private int[] faceCount = new int[0];
+    private float[] scratch = new float[0];
+    private float[] scratch2 = new float[0];
+
+    private int pointCount = 0;
+    private int framesSinceDetection = Integer.MAX_VALUE;
+    private boolean lowConfidence = false;
+    private int nextId = 1;
+
+    public FaceTracker(int detectInterval, RedetectPolicy policy, float minConfidence) {
+        this.detectInterval = Math.max(1, detectInterval);
+        this.policy = policy;
+        this.minConfidence = minConfidence;
+    }
+
+    public int getDetectInterval() {
+        return detectInterval;
+    }
+
+    public RedetectPolicy getPolicy() {
+        return policy;
+    }
+
+    /** Indica si el siguiente cuadro debe pasar por la cascada completa. */
+    public boolean shouldDetect() {
+        if (prevGray.empty()) return true;
+        boolean intervalDue = framesSinceDetection >= detectInterval;
+        switch (policy) {
+            case EVERY_N_FRAMES:
+                return intervalDue;
+            case ON_LOW_CONFIDENCE:
+                return lowConfidence || (faces.isEmpty() && intervalDue);
+            case EVERY_N_OR_LOW_CONFIDENCE:
+            default:
+                return intervalDue || lowConfidence;
+        }
+    }
+
+    /**
+     * Reinicia el seguimiento con las cajas de la cascada. Las cajas que se solapan con
+     * un rostro ya seguido conservan su id.
+     */
+    public void reset(Mat gray, Rect[] detections) {
+        List<TrackedFace> previous = new ArrayList<>(faces);
+        faces.clear();
+        for (Rect det : detections) {
+            TrackedFace match = null;
+            double bestIou = MATCH_IOU;
+            for (TrackedFace old : previous) {
+                double iou = iou(old.box, det);
+                if (iou > bestIou) {
+                    bestIou = iou;
+                    match = old;
+                }
+            }
+            if (match != null) previous.remove(match);
+            faces.add(new TrackedFace(match != null ? match.id : nextId++, det.clone()));
+        }
+
+        ensureFaceCapacity(faces.size());
+        pointCount = 0;
+        for (int f = 0; f < faces.size(); f++) {
+            faceStart[f] = pointCount;
+            faceCount[f] = seedCorners(gray, faces.get(f).box);
+        }
+
+        gray.copyTo(prevGray);
+        framesSinceDetection = 0;
+        lowConfidence = false;
+    }
+
+    /** Mueve cada caja al cuadro actual. Devuelve falso si no había nada que seguir. */
+    public boolean track(Mat gray) {
+        framesSinceDetection++;
+        if (pointCount == 0 || prevGray.empty()) {
+            gray.copyTo(prevGray);
+            lowConfidence = !faces.isEmpty();
+            return false;
+        }
+
+        prevPts.alloc(pointCount);
+        prevPts.put(0, 0, prevBuf);
+        flow.calc(prevGray, gray, prevPts, nextPts, status);
+        ensurePointCapacity(pointCount);
+        nextPts.get(0, 0, nextBuf);
+        status.get(0, 0, statusBuf);
+
+        lowConfidence = false;
+        int write = 0;
+        for (int f = 0; f < faces.size(); f++) {
+            TrackedFace face = faces.get(f);
+            int start = faceStart[f];
+            int count = faceCount[f];
+            int good = 0;
+
+            for (int i = start; i < start + count; i++) {
+                if (statusBuf[i] != 0) {
+                    scratch[good] = nextBuf[2 * i] - prevBuf[2 * i];
+                    scratch2[good] = nextBuf[2 * i + 1] - prevBuf[2 * i + 1];
+                    good++;
+                }
+            }
+
+            face.confidence = count == 0 ? 0f : (float) good / count;
+            face.framesSinceDetection = framesSinceDetection;
+            if (good < MIN_POINTS_PER_FACE || face.confidence < minConfidence) {
+                lowConfidence = true;
+            }
+
+            if (good > 0) {
+                double dx = median(scratch, good);
+                double dy = median(scratch2, good);
+                double scale = estimateScale(start, count);
+                double cx = face.box.x + face.box.width / 2.0 + dx;
+                double cy = face.box.y + face.box.height / 2.0 + dy;
+                face.box.width = (int) Math.round(face.box.width * scale);
+                face.box.height = (int) Math.round(face.box.height * scale);
+                face.box.x = (int) Math.round(cx - face.box.width / 2.0);
+                face.box.y = (int) Math.round(cy - face.box.height / 2.0);
+            }
+
+            // Compactar: sólo los puntos que siguieron vivos pasan al siguiente cuadro
+            faceStart[f] = write;
+            for (int i = start; i < start + count; i++) {
+                if (statusBuf[i] != 0) {
+                    prevBuf[2 * write] = nextBuf[2 * i];
+                    prevBuf[2 * write + 1] = nextBuf[2 * i + 1];
+                    write++;
+                }
+            }
+            faceCount[f] = write - faceStart[f];
+        }
+        pointCount = write;
+
+        gray.copyTo(prevGray);
+        return true;
+    }
+
+    public List<TrackedFace> getFaces() {
+        return faces;
+    }
+
+    public Rect[] getBoxes() {
+        Rect[] boxes = new Rect[faces.size()];
+        for (int i = 0; i < boxes.length; i++) {
+            boxes[i] = faces.get(i).box.clone();
+        }
+        return boxes;
+    }
+
+    public void release() {
+        prevGray.release();
+        corners.release();
+        prevPts.release();
+        nextPts.release();
+        status.release();
+    }
+
+    static double iou(Rect a, Rect b) {
+        int x1 = Math.max(a.x, b.x);
+        int y1 = Math.max(a.y, b.y);
+        int x2 = Math.min(a.x + a.width, b.x + b.width);
+        int y2 = Math.min(a.y + a.height, b.y + b.height);
+        if (x2 <= x1 || y2 <= y1) return 0;
+        double inter = (double) (x2 - x1) * (y2 - y1);
+        return inter / (a.area() + b.area() - inter);
+    }
+
+    private int seedCorners(Mat gray, Rect box) {
+        // Se usa el centro de la caja para no seguir puntos del fondo
+        Rect inner = new Rect(box.x + box.width / 8, box.y + box.height / 8,
+                box.width * 3 / 4, box.height * 3 / 4);
+        inner = clip(inner, gray.cols(), gray.rows());
+        if (inner.width <= 0 || inner.height <= 0) return 0;
+
+        Mat roi = gray.submat(inner);
+        Imgproc.goodFeaturesToTrack(roi, corners, MAX_CORNERS_PER_FACE, 0.01, 4);
+        roi.release();
+
+        Point[] found = corners.toArray();
+        ensurePointCapacity(pointCount + found.length);
+        for (Point p : found) {
+            prevBuf[2 * pointCount] = (float) (p.x + inner.x);
+            prevBuf[2 * pointCount + 1] = (float) (p.y + inner.y);
+            pointCount++;
+        }
+        return found.length;
+    }
+
+    private double estimateScale(int start, int count) {
+        double pcx = 0, pcy = 0, ncx = 0, ncy = 0;
+        int good = 0;
+        for (int i = start; i < start + count; i++) {
+            if (statusBuf[i] == 0) continue;
+            pcx += prevBuf[2 * i];
+            pcy += prevBuf[2 * i + 1];
+            ncx += nextBuf[2 * i];
+            ncy += nextBuf[2 * i + 1];
+            good++;
+        }
+        if (good < MIN_POINTS_PER_FACE) return 1.0;
+        pcx /= good; pcy /= good; ncx /= good; ncy /= good;
+
+        int n = 0;
+        for (int i = start; i < start + count; i++) {
+            if (statusBuf[i] == 0) continue;
+            double pd = Math.hypot(prevBuf[2 * i] - pcx, prevBuf[2 * i + 1] - pcy);
+            if (pd < 1.0) continue;
+            double nd = Math.hypot(nextBuf[2 * i] - ncx, nextBuf[2 * i + 1] - ncy);
+            scratch[n++] = (float) (nd / pd);
+        }
+        return n == 0 ? 1.0 : median(scratch, n);
+    }
+
+    private static double median(float[] values, int n) {
+        Arrays.sort(values, 0, n);
+        return (n % 2 == 1) ? values[n / 2] : 0.5 * (values[n / 2 - 1] + values[n / 2]);
+    }
+
+    private static Rect clip(Rect r, int width, int height) {
+        int x = Math.max(0, r.x);
+        int y = Math.max(0, r.y);
+        int w = Math.min(width, r.x + r.width) - x;
+        int h = Math.min(height, r.y + r.height) - y;
+        return new Rect(x, y, w, h);
+    }
+
+    private void ensurePointCapacity(int points) {
+        if (prevBuf.length < points * 2) {
+            prevBuf = Arrays.copyOf(prevBuf, points * 2);
+            nextBuf = new float[points * 2];
+            statusBuf = new byte[points];
+            scratch = new float[points];
+            scratch2 = new float[points];
+        }
+    }
+
+    private void ensureFaceCapacity(int count) {
+        if (faceStart.length < count) {
+            faceStart = new int[count];
+            faceCount = new int[count];
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.parcial;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfRect;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.core.TickMeter;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.objdetect.CascadeClassifier;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compara detectar en cada cuadro contra detectar-y-seguir sobre la misma secuencia:
+ * costo por cuadro y deriva de las cajas seguidas respecto a la cascada.
+ */
+public final class FaceTrackingBenchmark {
+
+    private FaceTrackingBenchmark() {
+    }
+
+    public static String run(List<Mat> grayFrames, CascadeClassifier classifier,
+                             int detectInterval, FaceTracker.RedetectPolicy policy) {
+        if (grayFrames.isEmpty()) return "Sin cuadros grabados";
+
+        Size minSize = new Size(80, 80);
+        Size maxSize = new Size();
+        MatOfRect faces = new MatOfRect();
+        Mat equalized = new Mat();
+        FaceTracker tracker = new FaceTracker(detectInterval, policy, 0.5f);
+        TickMeter detectMeter = new TickMeter();
+        TickMeter hybridMeter = new TickMeter();
+
+        int detections = 0;
+        int matched = 0;
+        int missed = 0;
+        double iouSum = 0;
+        double centerErrorSum = 0;
+        double centerErrorMax = 0;
+
+        for (Mat frame : grayFrames) {
+            Imgproc.equalizeHist(frame, equalized);
+
+            detectMeter.start();
+            classifier.detectMultiScale(equalized, faces, 1.1, 3, 0, minSize, maxSize);
+            detectMeter.stop();
+            Rect[] reference = faces.toArray();
+
+            hybridMeter.start();
+            Rect[] hybrid;
+            if (tracker.shouldDetect()) {
+                classifier.detectMultiScale(equalized, faces, 1.1, 3, 0, minSize, maxSize);
+                hybrid = faces.toArray();
+                tracker.reset(equalized, hybrid);
+                detections++;
+            } else {
+                tracker.track(equalized);
+                hybrid = tracker.getBoxes();
+            }
+            hybridMeter.stop();
+
+            for (Rect ref : reference) {
+                Rect best = null;
+                double bestIou = 0;
+                for (Rect box : hybrid) {
+                    double iou = FaceTracker.iou(ref, box);
+                    if (iou > bestIou) {
+                        bestIou = iou;
+                        best = box;
+                    }
+                }
+                if (best == null) {
+                    missed++;
+                    continue;
+                }
+                double err = Math.hypot(
+                        (ref.x + ref.width / 2.0) - (best.x + best.width / 2.0),
+                        (ref.y + ref.height / 2.0) - (best.y + best.height / 2.0));
+                matched++;
+                iouSum += bestIou;
+                centerErrorSum += err;
+                centerErrorMax = Math.max(centerErrorMax, err);
+            }
+        }
+
+        tracker.release();
+        equalized.release();
+        faces.release();
+
+        int n = grayFrames.size();
+        return String.format(Locale.US,
+                "Seguimiento (N=%d, %s) sobre %d cuadros%n"
+                        + "  detectar siempre: %.2f ms/cuadro%n"
+                        + "  detectar+seguir:  %.2f ms/cuadro (%d detecciones)%n"
+                        + "  deriva: IoU medio %.3f, error centro medio %.1f px, máx %.1f px, perdidos %d",
+                detectInterval, policy, n,
+                detectMeter.getTimeMilli() / n,
+                hybridMeter.getTimeMilli() / n, detections,
+                matched == 0 ? 0 : iouSum / matched,
+                matched == 0 ? 0 : centerErrorSum / matched,
+                centerErrorMax, missed);
+    }
+}
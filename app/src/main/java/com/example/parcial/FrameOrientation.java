@@ -0,0 +1,156 @@
+package com.example.parcial;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+/**
+ * Transformación del cuadro del sensor al cuadro que se muestra: una rotación horaria
+ * (0, 90, 180 o 270 grados) seguida opcionalmente de un espejo horizontal.
+ * El análisis trabaja en coordenadas del sensor; sólo el cuadro mostrado se rota,
+ * y los resultados pasan a pantalla con {@link #toDisplay}.
+ */
+public final class FrameOrientation {
+
+    public static final FrameOrientation IDENTITY = new FrameOrientation(0, false);
+
+    private final int rotation;
+    private final boolean mirror;
+
+    private FrameOrientation(int rotation, boolean mirror) {
+        this.rotation = rotation;
+        this.mirror = mirror;
+    }
+
+    /**
+     * @param rotationDegrees rotación horaria del sensor a pantalla (múltiplo de 90)
+     * @param mirror          espejo horizontal aplicado después de rotar
+     */
+    public static FrameOrientation of(int rotationDegrees, boolean mirror) {
+        int normalized = ((rotationDegrees % 360) + 360) % 360;
+        if (normalized % 90 != 0) {
+            throw new IllegalArgumentException("La rotación debe ser múltiplo de 90: " + rotationDegrees);
+        }
+        return new FrameOrientation(normalized, mirror);
+    }
+
+    public boolean isIdentity() {
+        return rotation == 0 && !mirror;
+    }
+
+    public boolean swapsAxes() {
+        return rotation == 90 || rotation == 270;
+    }
+
+    public int displayWidth(int sensorWidth, int sensorHeight) {
+        return swapsAxes() ? sensorHeight : sensorWidth;
+    }
+
+    public int displayHeight(int sensorWidth, int sensorHeight) {
+        return swapsAxes() ? sensorWidth : sensorHeight;
+    }
+
+    /**
+     * Escribe en {@code dst} el cuadro orientado con una sola operación de OpenCV
+     * (rotate, flip o transpose), salvo 270 + espejo que necesita dos.
+     * Con la identidad devuelve {@code src} sin copiar.
+     */
+    public Mat apply(Mat src, Mat dst) {
+        switch (rotation) {
+            case 0:
+                if (!mirror) return src;
+                Core.flip(src, dst, 1);
+                return dst;
+            case 90:
+                if (mirror) {
+                    Core.transpose(src, dst);
+                } else {
+                    Core.rotate(src, dst, Core.ROTATE_90_CLOCKWISE);
+                }
+                return dst;
+            case 180:
+                Core.flip(src, dst, mirror ? 0 : -1);
+                return dst;
+            case 270:
+            default:
+                Core.rotate(src, dst, Core.ROTATE_90_COUNTERCLOCKWISE);
+                if (mirror) Core.flip(dst, dst, 1);
+                return dst;
+        }
+    }
+
+    /** Lleva un punto del sensor (sensorWidth x sensorHeight) a pantalla. */
+    public void toDisplay(Point p, int sensorWidth, int sensorHeight, Point out) {
+        double x;
+        double y;
+        switch (rotation) {
+            case 90:
+                x = sensorHeight - p.y;
+                y = p.x;
+                break;
+            case 180:
+                x = sensorWidth - p.x;
+                y = sensorHeight - p.y;
+                break;
+            case 270:
+                x = p.y;
+                y = sensorWidth - p.x;
+                break;
+            default:
+                x = p.x;
+                y = p.y;
+        }
+        if (mirror) x = displayWidth(sensorWidth, sensorHeight) - x;
+        out.x = x;
+        out.y = y;
+    }
+
+    /** Inversa de {@link #toDisplay}: de pantalla a coordenadas del sensor. */
+    public void toSensor(Point p, int sensorWidth, int sensorHeight, Point out) {
+        double x = mirror ? displayWidth(sensorWidth, sensorHeight) - p.x : p.x;
+        double y = p.y;
+        switch (rotation) {
+            case 90:
+                out.x = y;
+                out.y = sensorHeight - x;
+                break;
+            case 180:
+                out.x = sensorWidth - x;
+                out.y = sensorHeight - y;
+                break;
+            case 270:
+                out.x = sensorWidth - y;
+                out.y = x;
+                break;
+            default:
+                out.x = x;
+                out.y = y;
+        }
+    }
+
+    public Rect toDisplay(Rect r, int sensorWidth, int sensorHeight) {
+        return mapRect(r, sensorWidth, sensorHeight, true);
+    }
+
+    public Rect toSensor(Rect r, int sensorWidth, int sensorHeight) {
+        return mapRect(r, sensorWidth, sensorHeight, false);
+    }
+
+    private Rect mapRect(Rect r, int sensorWidth, int sensorHeight, boolean forward) {
+        Point a = new Point(r.x, r.y);
+        Point b = new Point(r.x + r.width, r.y + r.height);
+        if (forward) {
+            toDisplay(a, sensorWidth, sensorHeight, a);
+            toDisplay(b, sensorWidth, sensorHeight, b);
+        } else {
+            toSensor(a, sensorWidth, sensorHeight, a);
+            toSensor(b, sensorWidth, sensorHeight, b);
+        }
+        int x = (int) Math.round(Math.min(a.x, b.x));
+        int y = (int) Math.round(Math.min(a.y, b.y));
+        return new Rect(x, y,
+                (int) Math.round(Math.max(a.x, b.x)) - x,
+                (int) Math.round(Math.max(a.y, b.y)) - y);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.parcial;
+
+import java.util.Arrays;
+
+/**
+ * Índice IVF de la galería: k-means esférico sobre los embeddings y listas invertidas por
+ * grupo. Una búsqueda compara la consulta con los centroides y recorre sólo los
+ * {@code probes} grupos más cercanos. Las listas van en formato compacto
+ * ({@code listStart}/{@code members}) para no crear un objeto por grupo.
+ */
+final class GalleryIndex {
+
+    private static final int DIM = FaceGallery.DIM;
+    private static final int ITERATIONS = 8;
+
+    private final int clusters;
+    private final int probes;
+    private final int indexedSize;
+    private final float[] centroids;
+    private final int[] listStart;
+    private final int[] members;
+
+    // Temporales de búsqueda (un solo hilo)
+    private final float[] centroidScores;
+    private final int[] probed;
+
+    private GalleryIndex(int clusters, int indexedSize) {
+        this.clusters = clusters;
+        this.probes = Math.min(clusters, Math.max(4, clusters / 8));
+        this.indexedSize = indexedSize;
+        this.centroids = new float[clusters * DIM];
+        this.listStart = new int[clusters + 1];
+        this.members = new int[indexedSize];
+        this.centroidScores = new float[clusters];
+        this.probed = new int[probes];
+    }
+
+    /** Agrupa las primeras {@code size} filas de {@code vectors} en unos sqrt(size) grupos. */
+    static GalleryIndex build(float[] vectors, int size) {
+        int clusters = Math.max(1, (int) Math.round(Math.sqrt(size)));
+        GalleryIndex index = new GalleryIndex(clusters, size);
+        int[] assignment = new int[size];
+
+        // Semillas repartidas a lo largo de la galería: determinista y sin duplicados
+        for (int c = 0; c < clusters; c++) {
+            System.arraycopy(vectors, (int) ((long) c * size / clusters) * DIM, index.centroids, c * DIM, DIM);
+        }
+
+        float[] sums = new float[clusters * DIM];
+        int[] counts = new int[clusters];
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            index.assign(vectors, size, assignment);
+
+            Arrays.fill(sums, 0f);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                int c = assignment[i];
+                counts[c]++;
+                int src = i * DIM;
+                int dst = c * DIM;
+                for (int d = 0; d < DIM; d++) {
+                    sums[dst + d] += vectors[src + d];
+                }
+            }
+            for (int c = 0; c < clusters; c++) {
+                // Un grupo vacío conserva su centroide anterior
+                if (counts[c] == 0) continue;
+                System.arraycopy(sums, c * DIM, index.centroids, c * DIM, DIM);
+                FaceGallery.normalize(index.centroids, c * DIM);
+            }
+        }
+
+        // Asignación final contra los centroides definitivos, luego las listas
+        index.assign(vectors, size, assignment);
+        for (int i = 0; i < size; i++) {
+            index.listStart[assignment[i] + 1]++;
+        }
+        for (int c = 0; c < clusters; c++) {
+            index.listStart[c + 1] += index.listStart[c];
+        }
+        int[] fill = new int[clusters];
+        for (int i = 0; i < size; i++) {
+            int c = assignment[i];
+            index.members[index.listStart[c] + fill[c]++] = i;
+        }
+        return index;
+    }
+
+    int indexedSize() {
+        return indexedSize;
+    }
+
+    void search(float[] vectors, int[] personOf, float[] query, FaceGallery.Match out) {
+        for (int c = 0; c < clusters; c++) {
+            centroidScores[c] = FaceGallery.dot(centroids, c * DIM, query, 0);
+        }
+        // Selección parcial: probes es pequeño frente a clusters
+        for (int p = 0; p < probes; p++) {
+            int best = 0;
+            for (int c = 1; c < clusters; c++) {
+                if (centroidScores[c] > centroidScores[best]) best = c;
+            }
+            probed[p] = best;
+            centroidScores[best] = Float.NEGATIVE_INFINITY;
+        }
+
+        for (int p = 0; p < probes; p++) {
+            int c = probed[p];
+            for (int m = listStart[c]; m < listStart[c + 1]; m++) {
+                int i = members[m];
+                float score = FaceGallery.dot(vectors, i * DIM, query, 0);
+                if (score > out.score) {
+                    out.score = score;
+                    out.personId = personOf[i];
+                }
+            }
+        }
+    }
+
+    private void assign(float[] vectors, int size, int[] assignment) {
+        for (int i = 0; i < size; i++) {
+            int best = 0;
+            float bestScore = Float.NEGATIVE_INFINITY;
+            for (int c = 0; c < clusters; c++) {
+                float score = FaceGallery.dot(vectors, i * DIM, centroids, c * DIM);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = c;
+                }
+            }
+            assignment[i] = best;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.parcial;
+
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/** Imgproc.HoughCircles sobre todo el rango de radios pedido. */
+public class HoughCircleDetector implements CircleDetector {
+
+    private static final double DP = 1.5;
+    private static final double MIN_DIST = 80;
+    private static final double CANNY = 100;
+    private static final double ACCUMULATOR = 40;
+
+    private final Mat circles = new Mat();
+
+    @Override
+    public String getName() {
+        return "Hough";
+    }
+
+    @Override
+    public int detect(Mat blurred, double scale, double minRadius, double maxRadius, CircleSet out) {
+        // Distancias y votos escalan con la imagen
+        Imgproc.HoughCircles(
+                blurred,
+                circles,
+                Imgproc.CV_HOUGH_GRADIENT,
+                DP,
+                MIN_DIST * scale,
+                CANNY,
+                ACCUMULATOR * scale,
+                (int) Math.round(minRadius * scale),
+                (int) Math.round(maxRadius * scale)
+        );
+
+        // Una sola lectura JNI para todos los círculos
+        int count = (int) circles.total();
+        out.ensureCapacity(count);
+        if (count > 0) circles.get(0, 0, out.data);
+        out.count = count;
+        return count;
+    }
+
+    @Override
+    public void release() {
+        circles.release();
+    }
+}
@@ -0,0 +1,385 @@
+package com.example.parcial;
+
+import android.util.Log;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Transformada de Hough que sólo vota por los radios que la clasificación puede aceptar:
+ * las bandas de ±tolerancia alrededor de cada radio de moneda (unidas si se solapan). Las
+ * bandas están en milímetros y se llevan a píxeles con la escala de {@link #setPixelsPerMm}.
+ *
+ * <p>Cada borde de Canny vota en la dirección de su gradiente, hacia ambos lados, a cada
+ * radio de las bandas. Los bordes se reparten por filas entre los núcleos y cada hilo
+ * acumula en su propio int[]; al final se suman. El pool de votación es uno solo para todo el
+ * proceso, compartido por las instancias, así cambiar de motor o de divisa no crea hilos. Los
+ * centros son máximos locales del
+ * acumulador y el radio de cada uno sale de un histograma de distancias a los bordes,
+ * restringido también a las bandas.
+ */
+public class KnownRadiusCircleDetector implements CircleDetector {
+
+    private static final String TAG = "KnownRadiusCircles";
+
+    private static final double CANNY_LOW = 50;
+    private static final double CANNY_HIGH = 100;
+    /** Lado en píxeles de cada celda del acumulador de centros. */
+    private static final int CELL = 2;
+    /** Votos mínimos de un centro, como fracción del perímetro del radio más chico. */
+    private static final double CENTER_SUPPORT = 0.2;
+    /** Bordes mínimos a la distancia elegida, como fracción del perímetro. */
+    private static final double PERIMETER_SUPPORT = 0.3;
+    private static final int MAX_CANDIDATES = 32;
+
+    private final double[] bandMin;
+    private final double[] bandMax;
+    private double pixelsPerMm = CoinPipeline.DEFAULT_PIXELS_PER_MM;
+    /** Hilos de votación, a lo sumo cuatro. */
+    private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static ExecutorService pool;
+
+    private final VoteTask[] tasks;
+
+    private final Mat dx = new Mat();
+    private final Mat dy = new Mat();
+    private final Mat edges = new Mat();
+    private byte[] edgePixels = new byte[0];
+    private short[] dxPixels = new short[0];
+    private short[] dyPixels = new short[0];
+
+    // Bordes del cuadro actual en orden de filas, con el gradiente ya normalizado
+    private int[] edgeX = new int[0];
+    private int[] edgeY = new int[0];
+    private float[] edgeGx = new float[0];
+    private float[] edgeGy = new float[0];
+    private int edgeCount;
+
+    // Radios enteros (en píxeles de la imagen de trabajo) por los que se vota en este cuadro
+    private int[] radii = new int[0];
+    private int radiusCount;
+    private boolean[] radiusAllowed = new boolean[0];
+    private int[] radiusHistogram = new int[0];
+
+    private int[] accumulator = new int[0];
+    private int cellsWide;
+    private int cellsHigh;
+    private int[] candidates = new int[MAX_CANDIDATES];
+
+    public KnownRadiusCircleDetector(CoinPipeline.CoinType[] coinTypes, double tolerance) {
+        int series = 0;
+        for (CoinPipeline.CoinType type : coinTypes) series += type.seriesCount();
+        double[] lo = new double[series];
+        double[] hi = new double[series];
+        int band = 0;
+        for (CoinPipeline.CoinType type : coinTypes) {
+            for (double radius : type.radiiMm) {
+                lo[band] = radius * (1 - tolerance);
+                hi[band] = radius * (1 + tolerance);
+                band++;
+            }
+        }
+        int bands = mergeBands(lo, hi);
+        bandMin = new double[bands];
+        bandMax = new double[bands];
+        System.arraycopy(lo, 0, bandMin, 0, bands);
+        System.arraycopy(hi, 0, bandMax, 0, bands);
+
+        tasks = new VoteTask[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            tasks[t] = new VoteTask();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Radios conocidos";
+    }
+
+    @Override
+    public int detect(Mat blurred, double scale, double minRadius, double maxRadius, CircleSet out) {
+        out.clear();
+        if (!prepareRadii(scale, minRadius, maxRadius)) return 0;
+
+        Imgproc.Sobel(blurred, dx, CvType.CV_16S, 1, 0);
+        Imgproc.Sobel(blurred, dy, CvType.CV_16S, 0, 1);
+        Imgproc.Canny(dx, dy, edges, CANNY_LOW, CANNY_HIGH);
+        collectEdges(blurred.cols(), blurred.rows());
+        if (edgeCount == 0) return 0;
+
+        vote(blurred.cols(), blurred.rows());
+        int candidateCount = findCenters();
+        for (int c = 0; c < candidateCount; c++) {
+            int cell = candidates[c];
+            float cx = (cell % cellsWide + 0.5f) * CELL;
+            float cy = (cell / cellsWide + 0.5f) * CELL;
+            if (overlapsAccepted(cx, cy, out)) continue;
+            estimateRadius(cx, cy, out);
+        }
+        return out.size();
+    }
+
+    @Override
+    public void setPixelsPerMm(double pixelsPerMm) {
+        this.pixelsPerMm = pixelsPerMm;
+    }
+
+    @Override
+    public void release() {
+        // El pool es compartido: sus hilos (daemon) quedan para la próxima instancia
+        dx.release();
+        dy.release();
+        edges.release();
+    }
+
+    /** Une bandas solapadas; deja las resultantes ordenadas al principio y devuelve cuántas son. */
+    private static int mergeBands(double[] lo, double[] hi) {
+        // Inserción: hay a lo sumo unas decenas de bandas
+        for (int i = 1; i < lo.length; i++) {
+            for (int j = i; j > 0 && lo[j] < lo[j - 1]; j--) {
+                double t = lo[j]; lo[j] = lo[j - 1]; lo[j - 1] = t;
+                t = hi[j]; hi[j] = hi[j - 1]; hi[j - 1] = t;
+            }
+        }
+        int merged = 0;
+        for (int i = 0; i < lo.length; i++) {
+            if (merged > 0 && lo[i] <= hi[merged - 1]) {
+                hi[merged - 1] = Math.max(hi[merged - 1], hi[i]);
+            } else {
+                lo[merged] = lo[i];
+                hi[merged] = hi[i];
+                merged++;
+            }
+        }
+        return merged;
+    }
+
+    /** Radios enteros de las bandas en píxeles, recortadas a [minRadius, maxRadius] y llevadas a la escala. */
+    private boolean prepareRadii(double scale, double minRadius, double maxRadius) {
+        double toPixels = pixelsPerMm * scale;
+        int largest = (int) Math.floor(bandMax[bandMax.length - 1] * toPixels) + 2;
+        if (radiusAllowed.length < largest) {
+            radiusAllowed = new boolean[largest];
+            radiusHistogram = new int[largest];
+            radii = new int[largest];
+        }
+        Arrays.fill(radiusAllowed, false);
+        radiusCount = 0;
+        for (int b = 0; b < bandMin.length; b++) {
+            int from = (int) Math.ceil(Math.max(bandMin[b] * pixelsPerMm, minRadius) * scale);
+            int to = (int) Math.floor(Math.min(bandMax[b] * pixelsPerMm, maxRadius) * scale);
+            for (int r = Math.max(1, from); r <= to; r++) {
+                if (!radiusAllowed[r]) {
+                    radiusAllowed[r] = true;
+                    radii[radiusCount++] = r;
+                }
+            }
+        }
+        return radiusCount > 0;
+    }
+
+    private void collectEdges(int width, int height) {
+        int pixels = width * height;
+        if (edgePixels.length < pixels) {
+            edgePixels = new byte[pixels];
+            dxPixels = new short[pixels];
+            dyPixels = new short[pixels];
+        }
+        edges.get(0, 0, edgePixels);
+        dx.get(0, 0, dxPixels);
+        dy.get(0, 0, dyPixels);
+
+        edgeCount = 0;
+        for (int i = 0; i < pixels; i++) {
+            if (edgePixels[i] == 0) continue;
+            float gx = dxPixels[i];
+            float gy = dyPixels[i];
+            float norm = (float) Math.sqrt(gx * gx + gy * gy);
+            if (norm == 0f) continue;
+            if (edgeCount == edgeX.length) growEdges();
+            edgeX[edgeCount] = i % width;
+            edgeY[edgeCount] = i / width;
+            edgeGx[edgeCount] = gx / norm;
+            edgeGy[edgeCount] = gy / norm;
+            edgeCount++;
+        }
+    }
+
+    /** Reparte los bordes (ya en orden de filas) en bloques contiguos, uno por hilo. */
+    private void vote(int width, int height) {
+        cellsWide = (width + CELL - 1) / CELL;
+        cellsHigh = (height + CELL - 1) / CELL;
+        int cells = cellsWide * cellsHigh;
+        if (accumulator.length < cells) accumulator = new int[cells];
+
+        ExecutorService voters = votePool();
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            VoteTask task = tasks[t];
+            task.from = (int) ((long) edgeCount * t / THREADS);
+            task.to = (int) ((long) edgeCount * (t + 1) / THREADS);
+            task.cells = cells;
+            task.done = done;
+            voters.execute(task);
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Log.e(TAG, "Interrumpido esperando la votación", e);
+            Thread.currentThread().interrupt();
+        }
+
+        System.arraycopy(tasks[0].votes, 0, accumulator, 0, cells);
+        for (int t = 1; t < THREADS; t++) {
+            int[] votes = tasks[t].votes;
+            for (int i = 0; i < cells; i++) {
+                accumulator[i] += votes[i];
+            }
+        }
+    }
+
+    /** Pool de votación del proceso, creado con la primera instancia que vota. */
+    private static synchronized ExecutorService votePool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(THREADS, r -> {
+                Thread thread = new Thread(r, TAG);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return pool;
+    }
+
+    /** Máximos locales 3x3 por encima del umbral, los {@link #MAX_CANDIDATES} más votados. */
+    private int findCenters() {
+        int threshold = (int) Math.ceil(CENTER_SUPPORT * 2 * Math.PI * radii[minRadiusIndex()]);
+        int found = 0;
+        for (int y = 1; y < cellsHigh - 1; y++) {
+            for (int x = 1; x < cellsWide - 1; x++) {
+                int i = y * cellsWide + x;
+                int v = accumulator[i];
+                if (v < threshold || !isLocalMax(i, v)) continue;
+                if (found < MAX_CANDIDATES) {
+                    candidates[found++] = i;
+                } else if (v > accumulator[candidates[found - 1]]) {
+                    candidates[found - 1] = i;
+                } else {
+                    continue;
+                }
+                // Mantiene la lista ordenada de mayor a menor
+                for (int j = found - 1; j > 0 && accumulator[candidates[j]] > accumulator[candidates[j - 1]]; j--) {
+                    int t = candidates[j]; candidates[j] = candidates[j - 1]; candidates[j - 1] = t;
+                }
+            }
+        }
+        return found;
+    }
+
+    private boolean isLocalMax(int i, int v) {
+        int up = i - cellsWide;
+        int down = i + cellsWide;
+        return v >= accumulator[up - 1] && v >= accumulator[up] && v >= accumulator[up + 1]
+                && v >= accumulator[i - 1] && v > accumulator[i + 1]
+                && v > accumulator[down - 1] && v > accumulator[down] && v > accumulator[down + 1];
+    }
+
+    private int minRadiusIndex() {
+        int best = 0;
+        for (int k = 1; k < radiusCount; k++) {
+            if (radii[k] < radii[best]) best = k;
+        }
+        return best;
+    }
+
+    /** Las monedas no se superponen: un centro dentro de un círculo aceptado se descarta. */
+    private static boolean overlapsAccepted(float cx, float cy, CircleSet accepted) {
+        for (int i = 0; i < accepted.size(); i++) {
+            float ddx = cx - accepted.x(i);
+            float ddy = cy - accepted.y(i);
+            float r = accepted.radius(i);
+            if (ddx * ddx + ddy * ddy < r * r) return true;
+        }
+        return false;
+    }
+
+    /** Elige el radio permitido con más bordes a esa distancia (±1 px) y lo acepta si hay apoyo. */
+    private void estimateRadius(float cx, float cy, CircleSet out) {
+        int maxR = radiusAllowed.length - 1;
+        Arrays.fill(radiusHistogram, 0);
+        for (int e = 0; e < edgeCount; e++) {
+            float ddx = edgeX[e] - cx;
+            float ddy = edgeY[e] - cy;
+            int r = Math.round((float) Math.sqrt(ddx * ddx + ddy * ddy));
+            if (r <= maxR) radiusHistogram[r]++;
+        }
+
+        int bestRadius = -1;
+        int bestSupport = 0;
+        for (int k = 0; k < radiusCount; k++) {
+            int r = radii[k];
+            int support = radiusHistogram[r] + radiusHistogram[r - 1] + radiusHistogram[r + 1];
+            if (support > bestSupport) {
+                bestSupport = support;
+                bestRadius = r;
+            }
+        }
+        if (bestRadius > 0 && bestSupport >= PERIMETER_SUPPORT * 2 * Math.PI * bestRadius) {
+            out.add(cx, cy, bestRadius);
+        }
+    }
+
+    private void growEdges() {
+        int capacity = Math.max(1024, edgeX.length * 2);
+        edgeX = Arrays.copyOf(edgeX, capacity);
+        edgeY = Arrays.copyOf(edgeY, capacity);
+        edgeGx = Arrays.copyOf(edgeGx, capacity);
+        edgeGy = Arrays.copyOf(edgeGy, capacity);
+    }
+
+    /** Vota un bloque de bordes en un acumulador propio del hilo. */
+    private final class VoteTask implements Runnable {
+        int from;
+        int to;
+        int cells;
+        int[] votes = new int[0];
+        CountDownLatch done;
+
+        @Override
+        public void run() {
+            try {
+                if (votes.length < cells) votes = new int[cells];
+                Arrays.fill(votes, 0, cells, 0);
+                int limitX = cellsWide * CELL;
+                int limitY = cellsHigh * CELL;
+                for (int e = from; e < to; e++) {
+                    float x = edgeX[e];
+                    float y = edgeY[e];
+                    float gx = edgeGx[e];
+                    float gy = edgeGy[e];
+                    for (int k = 0; k < radiusCount; k++) {
+                        float r = radii[k];
+                        // El centro puede estar a cualquier lado del borde (moneda clara u oscura)
+                        int px = (int) (x + r * gx);
+                        int py = (int) (y + r * gy);
+                        if (px >= 0 && py >= 0 && px < limitX && py < limitY) {
+                            votes[(py / CELL) * cellsWide + px / CELL]++;
+                        }
+                        px = (int) (x - r * gx);
+                        py = (int) (y - r * gy);
+                        if (px >= 0 && py >= 0 && px < limitX && py < limitY) {
+                            votes[(py / CELL) * cellsWide + px / CELL]++;
+                        }
+                    }
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.parcial;
+
+import org.opencv.core.Mat;
+import org.opencv.objdetect.ArucoDetector;
+import org.opencv.objdetect.Objdetect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mide píxeles por milímetro con un marcador ArUco (diccionario 4x4_50) de lado conocido,
+ * apoyado en la misma mesa que las monedas. El marcador no se busca en cada cuadro; cuándo
+ * buscarlo y cómo suavizar las mediciones lo decide {@link MarkerScale}.
+ */
+public class MarkerCalibration {
+
+    /** Valores por marcador en la salida de detectMarkers: cuatro esquinas (x, y). */
+    private static final int CORNER_VALUES = 8;
+
+    private final MarkerScale scale;
+    private final ArucoDetector detector =
+            new ArucoDetector(Objdetect.getPredefinedDictionary(Objdetect.DICT_4X4_50));
+    private final List<Mat> corners = new ArrayList<>();
+    private final Mat ids = new Mat();
+    private final float[] cornerData = new float[CORNER_VALUES];
+
+    public MarkerCalibration(double markerSideMm) {
+        this.scale = new MarkerScale(markerSideMm);
+    }
+
+    /**
+     * Busca el marcador si toca en este cuadro. Devuelve verdadero si hubo una medición nueva.
+     * Con varios marcadores a la vista se promedian sus lados.
+     */
+    public boolean update(Mat gray) {
+        if (!scale.searchDue()) return false;
+
+        releaseCorners();
+        detector.detectMarkers(gray, corners, ids);
+        if (corners.isEmpty()) return false;
+
+        double side = 0;
+        for (int i = 0; i < corners.size(); i++) {
+            corners.get(i).get(0, 0, cornerData);
+            side += meanSide(cornerData);
+        }
+        scale.add(side / corners.size());
+        return true;
+    }
+
+    /** Píxeles por milímetro medidos, o 0 si todavía no se vio el marcador. */
+    public double getPixelsPerMm() {
+        return scale.getPixelsPerMm();
+    }
+
+    /** Olvida la escala; el siguiente {@link #update} vuelve a buscar. */
+    public void reset() {
+        scale.reset();
+    }
+
+    public void release() {
+        releaseCorners();
+        ids.release();
+    }
+
+    /** Promedio de los cuatro lados de un cuadrilátero (x0, y0, ..., x3, y3). */
+    static double meanSide(float[] quad) {
+        double sum = 0;
+        for (int i = 0; i < 4; i++) {
+            int j = (i + 1) % 4;
+            sum += Math.hypot(quad[2 * j] - quad[2 * i], quad[2 * j + 1] - quad[2 * i + 1]);
+        }
+        return sum / 4;
+    }
+
+    private void releaseCorners() {
+        for (int i = 0; i < corners.size(); i++) {
+            corners.get(i).release();
+        }
+        corners.clear();
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.parcial;
+
+/**
+ * Parte de {@link MarkerCalibration} que no toca OpenCV: en qué cuadros buscar el marcador y
+ * cómo pasar su lado en píxeles a píxeles por milímetro. Se busca cada
+ * {@link #SEARCH_INTERVAL} cuadros mientras no hay escala y cada {@link #RECALIBRATE_INTERVAL}
+ * una vez medida; las mediciones nuevas se suavizan con las anteriores.
+ */
+final class MarkerScale {
+
+    static final int SEARCH_INTERVAL = 5;
+    static final int RECALIBRATE_INTERVAL = 30;
+    /** Peso de cada medición nueva sobre la escala acumulada. */
+    static final double SMOOTHING = 0.3;
+
+    private final double markerSideMm;
+    private double pixelsPerMm;
+    private int framesUntilSearch;
+
+    MarkerScale(double markerSideMm) {
+        this.markerSideMm = markerSideMm;
+    }
+
+    /** Cuenta un cuadro; verdadero si en él toca buscar el marcador. */
+    boolean searchDue() {
+        if (--framesUntilSearch > 0) return false;
+        framesUntilSearch = pixelsPerMm > 0 ? RECALIBRATE_INTERVAL : SEARCH_INTERVAL;
+        return true;
+    }
+
+    /** Suma una medición: el lado medio del marcador, en píxeles. */
+    void add(double sidePx) {
+        double measured = sidePx / markerSideMm;
+        pixelsPerMm = pixelsPerMm > 0 ? pixelsPerMm + SMOOTHING * (measured - pixelsPerMm) : measured;
+    }
+
+    /** Píxeles por milímetro medidos, o 0 si todavía no hay mediciones. */
+    double getPixelsPerMm() {
+        return pixelsPerMm;
+    }
+
+    /** Olvida la escala; el siguiente cuadro vuelve a buscar. */
+    void reset() {
+        pixelsPerMm = 0;
+        framesUntilSearch = 0;
+    }
+}
@@ -13,10 +13,15 @@ public class MenuActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_menu);
 
+        // Los modelos se cargan y calientan mientras el usuario elige una opción
+        ModelStore.get(this).preload();
+
         Button btnCoins = findViewById(R.id.btnCoins);
         Button btnFace = findViewById(R.id.btnFace);
+        Button btnBenchmark = findViewById(R.id.btnBenchmark);
 
         btnCoins.setOnClickListener(v -> startActivity(new Intent(this, CoinDetectionActivity.class)));
         btnFace.setOnClickListener(v -> startActivity(new Intent(this, FaceDetectionActivity.class)));
+        btnBenchmark.setOnClickListener(v -> startActivity(new Intent(this, BenchmarkActivity.class)));
     }
 }
@@ -0,0 +1,312 @@
+package com.example.parcial;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfRect;
+import org.opencv.objdetect.CascadeClassifier;
+import org.opencv.objdetect.FaceRecognizerSF;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Modelos empaquetados en {@code assets/models}, cargados una sola vez por proceso en un hilo
+ * propio y ya calentados (una primera inferencia sobre un cuadro vacío) para que el primer
+ * cuadro de la cámara no pague la inicialización.
+ *
+ * <p>YuNet se proyecta en memoria (mmap) directamente desde el APK, sin pasar por el heap de
+ * Java (FaceDetectorYN acepta el modelo en un MatOfByte). La cascada y SFace sólo aceptan
+ * rutas: se extraen a disco la primera vez junto con su SHA-256 y sólo se vuelven a extraer si
+ * la app se actualizó y el contenido cambió. No se descarga nada: la compilación falla si
+ * faltan los modelos (tarea {@code verifyModels} de app/build.gradle.kts).
+ */
+public final class ModelStore {
+
+    public static final String FACE_CASCADE = "haarcascade_frontalface_default.xml";
+
+    private static final String TAG = "ModelStore";
+    private static final String ASSET_DIR = "models";
+    private static final String STAMP_FILE = ".stamp";
+    private static final int WARMUP_WIDTH = 320;
+    private static final int WARMUP_HEIGHT = 240;
+
+    private static ModelStore instance;
+
+    public static synchronized ModelStore get(Context context) {
+        if (instance == null) instance = new ModelStore(context.getApplicationContext());
+        return instance;
+    }
+
+    private final Context context;
+    private final File dir;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> new Thread(r, TAG));
+    private boolean started = false;
+
+    private volatile CascadeClassifier faceCascade;
+    private volatile String faceCascadePath;
+    private volatile MatOfByte yunetModel;
+    // yunetModel sólo apunta a estos bytes: deben seguir vivos mientras se creen detectores
+    private MappedByteBuffer yunetMapping;
+    private volatile FaceRecognizerSF faceRecognizer;
+    private volatile String error;
+    private YuNetFaceDetector warmYuNet;
+
+    private ModelStore(Context context) {
+        this.context = context;
+        this.dir = context.getDir(ASSET_DIR, Context.MODE_PRIVATE);
+    }
+
+    /** Empieza a cargar en segundo plano; las llamadas siguientes no hacen nada. */
+    public synchronized void preload() {
+        if (started) return;
+        started = true;
+        loader.execute(this::loadAll);
+    }
+
+    /** Cascada de rostros compartida, o null mientras carga. No liberar. */
+    public CascadeClassifier faceCascade() {
+        return faceCascade;
+    }
+
+    /**
+     * Cascada nueva, propiedad del llamador, para hilos que no pueden compartir la global
+     * (CascadeClassifier no es seguro entre hilos). Null si la cascada no cargó.
+     */
+    public CascadeClassifier newFaceCascade() {
+        String path = faceCascadePath;
+        return path != null ? new CascadeClassifier(path) : null;
+    }
+
+    public boolean hasYuNet() {
+        return yunetModel != null;
+    }
+
+    /**
+     * Devuelve un detector YuNet propiedad del llamador. El primero es la instancia ya
+     * calentada; los siguientes se crean desde el modelo en memoria. Null si no hay modelo.
+     */
+    public synchronized YuNetFaceDetector takeYuNet() {
+        if (warmYuNet != null) {
+            YuNetFaceDetector warm = warmYuNet;
+            warmYuNet = null;
+            return warm;
+        }
+        MatOfByte model = yunetModel;
+        return model != null ? new YuNetFaceDetector(model) : null;
+    }
+
+    /** Reconocedor SFace compartido, o null si no está (o aún no). */
+    public FaceRecognizerSF faceRecognizer() {
+        return faceRecognizer;
+    }
+
+    /** Bloquea hasta que termine la carga. No llamar desde el hilo principal. */
+    public void awaitLoaded() {
+        preload();
+        try {
+            // El ejecutor es de un solo hilo: esta tarea corre cuando loadAll terminó
+            loader.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Primer error de carga para mostrar al usuario, o null. */
+    public String getError() {
+        return error;
+    }
+
+    private void loadAll() {
+        if (!OpenCVLoader.initDebug()) {
+            fail("OpenCV no disponible", null);
+            return;
+        }
+        boolean upToDate = isExtractionCurrent();
+
+        long start = SystemClock.elapsedRealtime();
+        try {
+            String path = extract(FACE_CASCADE).getAbsolutePath();
+            CascadeClassifier cascade = new CascadeClassifier(path);
+            if (cascade.empty()) throw new IOException("Cascada vacía");
+            warmUp(cascade);
+            faceCascadePath = path;
+            faceCascade = cascade;
+            Log.i(TAG, "Cascada lista en " + (SystemClock.elapsedRealtime() - start) + " ms");
+        } catch (IOException e) {
+            fail("No se pudo cargar la cascada", e);
+        }
+
+        // YuNet y SFace son opcionales: sin ellos sólo queda el motor Haar
+        start = SystemClock.elapsedRealtime();
+        try {
+            MatOfByte model = mapModel(YuNetFaceDetector.MODEL_FILE);
+            YuNetFaceDetector warm = new YuNetFaceDetector(model);
+            Mat blank = Mat.zeros(WARMUP_HEIGHT, WARMUP_WIDTH, CvType.CV_8UC1);
+            warm.detect(blank);
+            blank.release();
+            synchronized (this) {
+                warmYuNet = warm;
+            }
+            yunetModel = model;
+            Log.i(TAG, "YuNet listo en " + (SystemClock.elapsedRealtime() - start) + " ms");
+        } catch (IOException e) {
+            Log.w(TAG, "YuNet no disponible", e);
+        }
+
+        start = SystemClock.elapsedRealtime();
+        try {
+            faceRecognizer = FaceRecognizerSF.create(extract(FaceIdentifier.MODEL_FILE).getAbsolutePath(), "");
+            Log.i(TAG, "SFace listo en " + (SystemClock.elapsedRealtime() - start) + " ms");
+        } catch (IOException e) {
+            Log.w(TAG, "SFace no disponible", e);
+        }
+
+        if (!upToDate) writeStamp();
+    }
+
+    /** Una detección sobre un cuadro vacío: reserva buffers e inicializa el pool de hilos. */
+    private static void warmUp(CascadeClassifier cascade) {
+        Mat blank = Mat.zeros(WARMUP_HEIGHT, WARMUP_WIDTH, CvType.CV_8UC1);
+        MatOfRect faces = new MatOfRect();
+        cascade.detectMultiScale(blank, faces);
+        faces.release();
+        blank.release();
+    }
+
+    /**
+     * Deja el asset en disco y devuelve el archivo. Si la app no cambió desde la última
+     * extracción no se lee nada; si cambió, se copia y sólo se reemplaza si el hash difiere.
+     */
+    private File extract(String name) throws IOException {
+        File target = new File(dir, name);
+        File hashFile = new File(dir, name + ".sha256");
+        if (target.exists() && hashFile.exists() && isExtractionCurrent()) return target;
+
+        File tmp = new File(dir, name + ".tmp");
+        String hash;
+        try (DigestInputStream in = new DigestInputStream(
+                context.getAssets().open(ASSET_DIR + "/" + name), sha256());
+             FileOutputStream out = new FileOutputStream(tmp)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            hash = toHex(in.getMessageDigest().digest());
+        }
+
+        if (target.exists() && hashFile.exists() && hash.equals(readText(hashFile))) {
+            Log.i(TAG, name + " sin cambios (" + hash.substring(0, 12) + ")");
+            tmp.delete();
+            return target;
+        }
+        if (!tmp.renameTo(target)) throw new IOException("No se pudo extraer " + name);
+        writeText(hashFile, hash);
+        Log.i(TAG, name + " extraído (" + hash.substring(0, 12) + ")");
+        return target;
+    }
+
+    /**
+     * Proyecta el modelo en memoria sin copiarlo. Un asset sin comprimir (build.gradle excluye
+     * los .onnx de la compresión) se proyecta directamente desde el APK; si no, su copia en disco.
+     */
+    private MatOfByte mapModel(String name) throws IOException {
+        MappedByteBuffer mapping;
+        try (AssetFileDescriptor fd = context.getAssets().openFd(ASSET_DIR + "/" + name);
+             FileInputStream in = fd.createInputStream()) {
+            mapping = in.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getDeclaredLength());
+        } catch (FileNotFoundException e) {
+            // Asset comprimido: se proyecta la copia extraída
+            File file = extract(name);
+            try (FileInputStream in = new FileInputStream(file)) {
+                mapping = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            }
+        }
+        Mat bytes = new Mat(1, mapping.capacity(), CvType.CV_8UC1, mapping);
+        MatOfByte model = new MatOfByte(bytes);
+        bytes.release();
+        yunetMapping = mapping;
+        return model;
+    }
+
+    /** Las extracciones siguen vigentes si la app no se instaló ni actualizó desde entonces. */
+    private boolean isExtractionCurrent() {
+        File stamp = new File(dir, STAMP_FILE);
+        return stamp.exists() && String.valueOf(installTime()).equals(readText(stamp));
+    }
+
+    private void writeStamp() {
+        try {
+            writeText(new File(dir, STAMP_FILE), String.valueOf(installTime()));
+        } catch (IOException e) {
+            Log.w(TAG, "No se pudo guardar la marca de extracción", e);
+        }
+    }
+
+    private long installTime() {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    private void fail(String message, Exception e) {
+        Log.e(TAG, message, e);
+        if (error == null) error = message;
+    }
+
+    private static String readText(File file) {
+        byte[] bytes = new byte[(int) Math.min(file.length(), 128)];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read = in.read(bytes);
+            return read <= 0 ? "" : new String(bytes, 0, read, StandardCharsets.US_ASCII).trim();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static void writeText(File file, String text) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
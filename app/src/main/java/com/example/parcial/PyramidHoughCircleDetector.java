@@ -0,0 +1,97 @@
+package com.example.parcial;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * HoughCircles en dos etapas: la votación corre sobre un nivel reducido con pyrDown (el costo
+ * crece con el área) y cada círculo se refina después con {@link RadialEdgeFit} a resolución
+ * completa, porque la denominación depende del radio exacto. Sólo se copia al heap el recorte
+ * alrededor de cada círculo, no el cuadro entero. Se baja de nivel mientras
+ * el radio mínimo siga por encima de {@link #MIN_COARSE_RADIUS} en el nivel reducido.
+ */
+public class PyramidHoughCircleDetector implements CircleDetector {
+
+    private static final int MAX_LEVELS = 2;
+    /** Por debajo de este radio (px del nivel) Hough pierde monedas. */
+    private static final double MIN_COARSE_RADIUS = 12;
+
+    private final HoughCircleDetector coarse = new HoughCircleDetector();
+    private final Mat[] levels = new Mat[MAX_LEVELS];
+    private final CircleSet coarseCircles = new CircleSet();
+    private final RadialEdgeFit refinement = new RadialEdgeFit();
+    private final Rect roi = new Rect();
+    private byte[] pixels = new byte[0];
+
+    public PyramidHoughCircleDetector() {
+        for (int i = 0; i < MAX_LEVELS; i++) {
+            levels[i] = new Mat();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Hough piramidal";
+    }
+
+    @Override
+    public int detect(Mat blurred, double scale, double minRadius, double maxRadius, CircleSet out) {
+        out.clear();
+        Mat level = blurred;
+        double levelScale = 1.0;
+        for (int i = 0; i < MAX_LEVELS && minRadius * scale * levelScale / 2 >= MIN_COARSE_RADIUS; i++) {
+            Imgproc.pyrDown(level, levels[i]);
+            level = levels[i];
+            levelScale /= 2;
+        }
+
+        int found = coarse.detect(level, scale * levelScale, minRadius, maxRadius, coarseCircles);
+        if (found == 0) return 0;
+
+        float toFull = (float) (1.0 / levelScale);
+        for (int i = 0; i < found; i++) {
+            float cx = coarseCircles.x(i) * toFull;
+            float cy = coarseCircles.y(i) * toFull;
+            float r = coarseCircles.radius(i) * toFull;
+            if (copyRoi(blurred, cx, cy, r)
+                    && refinement.fit(pixels, roi.width, roi.height, roi.x, roi.y, cx, cy, r)) {
+                out.add(refinement.x, refinement.y, refinement.radius);
+            } else {
+                // Sin borde claro se conserva la estimación gruesa
+                out.add(cx, cy, r);
+            }
+        }
+        return out.size();
+    }
+
+    /**
+     * Copia a {@link #pixels} la región que pueden tocar los rayos de {@link RadialEdgeFit}
+     * (radio más la franja de búsqueda y un píxel de interpolación), recortada a la imagen.
+     */
+    private boolean copyRoi(Mat blurred, float cx, float cy, float r) {
+        float extent = (float) (r * (1 + RadialEdgeFit.SEARCH)) + 2;
+        int x0 = Math.max(0, (int) Math.floor(cx - extent));
+        int y0 = Math.max(0, (int) Math.floor(cy - extent));
+        int x1 = Math.min(blurred.cols(), (int) Math.ceil(cx + extent) + 1);
+        int y1 = Math.min(blurred.rows(), (int) Math.ceil(cy + extent) + 1);
+        if (x1 - x0 < 2 || y1 - y0 < 2) return false;
+        roi.x = x0;
+        roi.y = y0;
+        roi.width = x1 - x0;
+        roi.height = y1 - y0;
+        if (pixels.length < roi.width * roi.height) pixels = new byte[roi.width * roi.height];
+        Mat region = blurred.submat(roi);
+        region.get(0, 0, pixels);
+        region.release();
+        return true;
+    }
+
+    @Override
+    public void release() {
+        coarse.release();
+        for (Mat level : levels) {
+            level.release();
+        }
+    }
+}
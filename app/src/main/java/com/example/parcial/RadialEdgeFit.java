@@ -0,0 +1,171 @@
+package com.example.parcial;
+
+import java.util.Arrays;
+
+/**
+ * Refina un círculo aproximado sobre la imagen a resolución completa. Busca el borde a lo
+ * largo de {@link #RAYS} rayos que salen del centro, en una franja de ±{@link #SEARCH} del
+ * radio, y ajusta un círculo a esos puntos por mínimos cuadrados algebraicos (Kåsa), con una
+ * segunda pasada sin los puntos lejanos. Sin objetos por llamada; se usa desde un solo hilo.
+ */
+final class RadialEdgeFit {
+
+    static final int RAYS = 64;
+    /** Mitad del ancho de la franja de búsqueda, como fracción del radio. */
+    static final double SEARCH = 0.2;
+    /** Paso de muestreo a lo largo del rayo, en píxeles. */
+    private static final float STEP = 0.5f;
+    /** Diferencia mínima de gris a lo largo de un píxel para aceptar un borde. */
+    private static final float MIN_EDGE_STEP = 6f;
+    /** Un centro refinado más lejos que esta fracción del radio se descarta. */
+    private static final double MAX_CENTER_SHIFT = 0.25;
+
+    private final float[] cos = new float[RAYS];
+    private final float[] sin = new float[RAYS];
+    private final float[] edgeX = new float[RAYS];
+    private final float[] edgeY = new float[RAYS];
+    private final float[] residual = new float[RAYS];
+    private final float[] sorted = new float[RAYS];
+    private float[] samples = new float[64];
+
+    /** Resultado del último {@link #fit} exitoso. */
+    float x;
+    float y;
+    float radius;
+
+    RadialEdgeFit() {
+        for (int i = 0; i < RAYS; i++) {
+            double angle = 2 * Math.PI * i / RAYS;
+            cos[i] = (float) Math.cos(angle);
+            sin[i] = (float) Math.sin(angle);
+        }
+    }
+
+    /**
+     * Ajusta el círculo cercano a ({@code cx}, {@code cy}, {@code r}) en {@code pixels}, una
+     * imagen de grises de {@code width}x{@code height}. Devuelve falso si menos de la mitad de
+     * los rayos encontró borde o si el ajuste se aleja demasiado de la estimación.
+     */
+    boolean fit(byte[] pixels, int width, int height, float cx, float cy, float r) {
+        return fit(pixels, width, height, 0, 0, cx, cy, r);
+    }
+
+    /**
+     * Igual que {@link #fit(byte[], int, int, float, float, float)} sobre un recorte: {@code
+     * pixels} es la región de {@code width}x{@code height} cuya esquina está en ({@code
+     * offsetX}, {@code offsetY}) de la imagen. Estimación y resultado van en coordenadas de la
+     * imagen completa.
+     */
+    boolean fit(byte[] pixels, int width, int height, int offsetX, int offsetY, float cx, float cy, float r) {
+        float from = (float) (r * (1 - SEARCH));
+        int steps = (int) (2 * SEARCH * r / STEP) + 1;
+        if (samples.length < steps) samples = new float[steps * 2];
+
+        int points = 0;
+        for (int ray = 0; ray < RAYS; ray++) {
+            float dx = cos[ray];
+            float dy = sin[ray];
+            boolean inside = true;
+            for (int s = 0; s < steps && inside; s++) {
+                float t = from + s * STEP;
+                float value = sample(pixels, width, height, cx + t * dx - offsetX, cy + t * dy - offsetY);
+                if (value < 0) inside = false;
+                samples[s] = value;
+            }
+            if (!inside) continue;
+
+            // Mayor cambio de gris a lo largo de un píxel (dos pasos), con ajuste parabólico
+            int best = -1;
+            float bestStep = MIN_EDGE_STEP;
+            for (int s = 1; s < steps - 1; s++) {
+                float edge = Math.abs(samples[s + 1] - samples[s - 1]);
+                if (edge > bestStep) {
+                    bestStep = edge;
+                    best = s;
+                }
+            }
+            if (best < 0) continue;
+            float offset = 0f;
+            if (best > 1 && best < steps - 2) {
+                float left = Math.abs(samples[best] - samples[best - 2]);
+                float right = Math.abs(samples[best + 2] - samples[best]);
+                float denominator = left - 2 * bestStep + right;
+                if (denominator < 0) offset = 0.5f * (left - right) / denominator;
+            }
+            float t = from + (best + offset) * STEP;
+            edgeX[points] = cx + t * dx;
+            edgeY[points] = cy + t * dy;
+            points++;
+        }
+        if (points < RAYS / 2 || !fitCircle(edgeX, edgeY, points)) return false;
+
+        // Segunda pasada sin los bordes lejanos (reflejos, relieve, otra moneda)
+        for (int i = 0; i < points; i++) {
+            residual[i] = Math.abs((float) Math.hypot(edgeX[i] - x, edgeY[i] - y) - radius);
+            sorted[i] = residual[i];
+        }
+        Arrays.sort(sorted, 0, points);
+        float limit = Math.max(1f, 2.5f * sorted[points / 2]);
+        int kept = 0;
+        for (int i = 0; i < points; i++) {
+            if (residual[i] > limit) continue;
+            edgeX[kept] = edgeX[i];
+            edgeY[kept] = edgeY[i];
+            kept++;
+        }
+        if (kept < RAYS / 2 || !fitCircle(edgeX, edgeY, kept)) return false;
+
+        return Math.hypot(x - cx, y - cy) <= MAX_CENTER_SHIFT * r
+                && Math.abs(radius - r) <= SEARCH * r;
+    }
+
+    /** Ajuste algebraico x² + y² + Dx + Ey + F = 0; deja el resultado en x, y, radius. */
+    private boolean fitCircle(float[] xs, float[] ys, int n) {
+        // Coordenadas relativas a la media para que las ecuaciones normales estén bien condicionadas
+        double mx = 0, my = 0;
+        for (int i = 0; i < n; i++) {
+            mx += xs[i];
+            my += ys[i];
+        }
+        mx /= n;
+        my /= n;
+
+        double sxx = 0, syy = 0, sxy = 0, sxz = 0, syz = 0, sz = 0;
+        for (int i = 0; i < n; i++) {
+            double u = xs[i] - mx;
+            double v = ys[i] - my;
+            double z = u * u + v * v;
+            sxx += u * u;
+            syy += v * v;
+            sxy += u * v;
+            sxz += u * z;
+            syz += v * z;
+            sz += z;
+        }
+        // Con coordenadas centradas, Σu = Σv = 0 y el sistema 3x3 se reduce a uno 2x2 más F
+        double det = sxx * syy - sxy * sxy;
+        if (Math.abs(det) < 1e-9) return false;
+        double d = -(sxz * syy - syz * sxy) / det;
+        double e = -(syz * sxx - sxz * sxy) / det;
+        double f = -sz / n;
+        double r2 = (d * d + e * e) / 4 - f;
+        if (r2 <= 0) return false;
+        x = (float) (mx - d / 2);
+        y = (float) (my - e / 2);
+        radius = (float) Math.sqrt(r2);
+        return true;
+    }
+
+    /** Interpolación bilineal; -1 fuera de la imagen. */
+    private static float sample(byte[] pixels, int width, int height, float px, float py) {
+        if (px < 0 || py < 0 || px >= width - 1 || py >= height - 1) return -1f;
+        int x0 = (int) px;
+        int y0 = (int) py;
+        float fx = px - x0;
+        float fy = py - y0;
+        int i = y0 * width + x0;
+        float top = (pixels[i] & 0xFF) * (1 - fx) + (pixels[i + 1] & 0xFF) * fx;
+        float bottom = (pixels[i + width] & 0xFF) * (1 - fx) + (pixels[i + width + 1] & 0xFF) * fx;
+        return top * (1 - fy) + bottom * fy;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.parcial;
+
+import com.example.parcial.CoinColorClassifier.Finish;
+import com.example.parcial.CoinColorClassifier.Tone;
+
+import java.util.Arrays;
+
+/**
+ * Radios de todas las series de un catálogo, ordenados en arreglos primitivos. Un radio
+ * medido {@code d} sólo puede coincidir con series de radio {@code c} tales que
+ * |d - c| ≤ c·tolerancia, es decir c ∈ [d/(1+tol), d/(1-tol)]: una búsqueda binaria da el
+ * inicio de esa ventana y sólo se recorren las series que caen en ella, así el costo no
+ * depende del tamaño del catálogo.
+ */
+final class RadiusTable {
+
+    /** Holgura de la ventana para que el redondeo a float no deje fuera una serie límite. */
+    private static final double WINDOW_SLACK_MM = 1e-3;
+
+    private final double tolerance;
+    private final float[] radiusMm;
+    private final int[] coin;
+    private final Finish[] finish;
+    private final Tone[] tone;
+
+    RadiusTable(CoinPipeline.CoinType[] coinTypes, double tolerance) {
+        this.tolerance = tolerance;
+        int entries = 0;
+        for (CoinPipeline.CoinType type : coinTypes) entries += type.seriesCount();
+
+        // Radio (positivo, así sus bits ordenan igual que el valor) arriba e índice abajo
+        long[] keys = new long[entries];
+        float[] radii = new float[entries];
+        int[] coins = new int[entries];
+        Finish[] finishes = new Finish[entries];
+        Tone[] tones = new Tone[entries];
+        int e = 0;
+        for (int c = 0; c < coinTypes.length; c++) {
+            for (int s = 0; s < coinTypes[c].seriesCount(); s++) {
+                radii[e] = (float) coinTypes[c].radiiMm[s];
+                coins[e] = c;
+                finishes[e] = coinTypes[c].finishes[s];
+                tones[e] = coinTypes[c].tones[s];
+                keys[e] = ((long) Float.floatToIntBits(radii[e]) << 32) | e;
+                e++;
+            }
+        }
+        Arrays.sort(keys);
+
+        radiusMm = new float[entries];
+        coin = new int[entries];
+        finish = new Finish[entries];
+        tone = new Tone[entries];
+        for (int i = 0; i < entries; i++) {
+            int source = (int) keys[i];
+            radiusMm[i] = radii[source];
+            coin[i] = coins[source];
+            finish[i] = finishes[source];
+            tone[i] = tones[source];
+        }
+    }
+
+    float smallestRadiusMm() {
+        return radiusMm[0];
+    }
+
+    float largestRadiusMm() {
+        return radiusMm[radiusMm.length - 1];
+    }
+
+    /**
+     * Banda de radios (mm) que puede coincidir con alguna serie: de la más chica menos la
+     * tolerancia a la más grande más la tolerancia. Con escala medida es todo lo que hace
+     * falta buscar.
+     */
+    double minSearchRadiusMm() {
+        return smallestRadiusMm() * (1 - tolerance);
+    }
+
+    double maxSearchRadiusMm() {
+        return largestRadiusMm() * (1 + tolerance);
+    }
+
+    /**
+     * Moneda de la serie de radio más cercano dentro de la tolerancia, o -1. Si se midió el
+     * acabado o el tono sólo compiten las series que coinciden o que no declaran uno. Los
+     * empates se resuelven a favor de la moneda que aparece primero en el catálogo.
+     */
+    int match(double detectedRadiusMm, Finish measured, Tone measuredTone) {
+        int best = -1;
+        double bestDifference = Double.MAX_VALUE;
+        double upper = detectedRadiusMm / (1 - tolerance) + WINDOW_SLACK_MM;
+        int from = lowerBound(detectedRadiusMm / (1 + tolerance) - WINDOW_SLACK_MM);
+        for (int i = from; i < radiusMm.length && radiusMm[i] <= upper; i++) {
+            if (measured != null && finish[i] != null && finish[i] != measured) continue;
+            if (measuredTone != null && tone[i] != null && tone[i] != measuredTone) continue;
+            double difference = Math.abs(detectedRadiusMm - radiusMm[i]);
+            if (difference > radiusMm[i] * tolerance) continue;
+            if (difference < bestDifference || (difference == bestDifference && coin[i] < best)) {
+                bestDifference = difference;
+                best = coin[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Verdadero si dentro de la tolerancia hay series candidatas de distinto acabado o de
+     * distinto tono, es decir, si vale la pena medir el color de la moneda.
+     */
+    boolean colourMatters(double detectedRadiusMm) {
+        Finish seenFinish = null;
+        Tone seenTone = null;
+        double upper = detectedRadiusMm / (1 - tolerance) + WINDOW_SLACK_MM;
+        int from = lowerBound(detectedRadiusMm / (1 + tolerance) - WINDOW_SLACK_MM);
+        for (int i = from; i < radiusMm.length && radiusMm[i] <= upper; i++) {
+            if (Math.abs(detectedRadiusMm - radiusMm[i]) > radiusMm[i] * tolerance) continue;
+            if (finish[i] != null) {
+                if (seenFinish != null && seenFinish != finish[i]) return true;
+                seenFinish = finish[i];
+            }
+            if (tone[i] != null) {
+                if (seenTone != null && seenTone != tone[i]) return true;
+                seenTone = tone[i];
+            }
+        }
+        return false;
+    }
+
+    /** Primera serie con radio ≥ {@code value}. */
+    private int lowerBound(double value) {
+        int low = 0;
+        int high = radiusMm.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (radiusMm[mid] < value) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.parcial;
+
+/**
+ * Mide la frecuencia (eventos por segundo) de una etapa sin dibujar nada,
+ * al estilo de FpsMeter pero apto para cualquier hilo. Mide con System.nanoTime y no con
+ * los ticks de OpenCV: así se puede construir antes de que cargue la biblioteca nativa.
+ */
+public class RateMeter {
+
+    private static final int STEP = 10;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private long windowStart;
+    private int counter;
+    private volatile double rate;
+
+    public synchronized void tick() {
+        long now = System.nanoTime();
+        if (counter == 0 && windowStart == 0) {
+            windowStart = now;
+            return;
+        }
+        counter++;
+        if (counter % STEP == 0) {
+            rate = STEP * NANOS_PER_SECOND / (now - windowStart);
+            windowStart = now;
+        }
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public synchronized void reset() {
+        windowStart = 0;
+        counter = 0;
+        rate = 0;
+    }
+}
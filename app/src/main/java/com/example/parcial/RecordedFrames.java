@@ -0,0 +1,58 @@
+package com.example.parcial;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Cuadros grabados para los benchmarks: imágenes de una carpeta, en orden de nombre.
+ */
+public final class RecordedFrames {
+
+    private RecordedFrames() {
+    }
+
+    public static File[] listImages(File dir) {
+        File[] files = dir == null ? null : dir.listFiles((d, name) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+        });
+        if (files == null) return new File[0];
+        Arrays.sort(files);
+        return files;
+    }
+
+    public static List<Mat> loadGray(File dir, int maxFrames) {
+        return load(dir, maxFrames, Imgcodecs.IMREAD_GRAYSCALE);
+    }
+
+    public static List<Mat> loadColor(File dir, int maxFrames) {
+        return load(dir, maxFrames, Imgcodecs.IMREAD_COLOR);
+    }
+
+    public static void release(List<Mat> frames) {
+        for (Mat frame : frames) {
+            frame.release();
+        }
+        frames.clear();
+    }
+
+    private static List<Mat> load(File dir, int maxFrames, int flags) {
+        List<Mat> frames = new ArrayList<>();
+        for (File file : listImages(dir)) {
+            if (frames.size() >= maxFrames) break;
+            Mat frame = Imgcodecs.imread(file.getAbsolutePath(), flags);
+            if (!frame.empty()) {
+                frames.add(frame);
+            } else {
+                frame.release();
+            }
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.parcial;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfRect;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.objdetect.CascadeClassifier;
+
+/**
+ * Motor Haar: corre la cascada sobre una versión reducida del cuadro gris y devuelve las
+ * cajas en coordenadas del cuadro original. Los tamaños mínimo y máximo se escalan con el
+ * cuadro, así la pirámide interna no recorre escalas donde no cabe un rostro del tamaño pedido.
+ * Si el cuadro llega en la orientación del sensor, la rotación a vertical se hace sobre
+ * la imagen ya reducida y las cajas vuelven en coordenadas del sensor.
+ */
+public class ScaledCascadeDetector implements FaceDetector {
+
+    /** Ventana base de haarcascade_frontalface_default: no se puede buscar por debajo. */
+    private static final int CASCADE_WINDOW = 24;
+
+    private final CascadeClassifier classifier;
+    private final WorkingImage workingImage = new WorkingImage();
+    private final Mat equalized = new Mat();
+    private final MatOfRect faces = new MatOfRect();
+    private final Size scaledMin = new Size();
+    private final Size scaledMax = new Size();
+
+    private double scaleFactor = 1.1;
+    private int minNeighbors = 3;
+    private Size minSize = new Size(80, 80);
+    private Size maxSize = new Size();
+    private int workingHeight = 0;
+    private FrameOrientation inputOrientation = FrameOrientation.IDENTITY;
+
+    public ScaledCascadeDetector(CascadeClassifier classifier) {
+        this.classifier = classifier;
+    }
+
+    @Override
+    public String getName() {
+        return "Haar";
+    }
+
+    public CascadeClassifier getClassifier() {
+        return classifier;
+    }
+
+    @Override
+    public void setWorkingHeight(int workingHeight) {
+        this.workingHeight = Math.max(0, workingHeight);
+    }
+
+    public int getWorkingHeight() {
+        return workingHeight;
+    }
+
+    @Override
+    public void setInputOrientation(FrameOrientation orientation) {
+        this.inputOrientation = orientation;
+    }
+
+    public void setScaleFactor(double scaleFactor) {
+        this.scaleFactor = scaleFactor;
+    }
+
+    public void setMinNeighbors(int minNeighbors) {
+        this.minNeighbors = minNeighbors;
+    }
+
+    public void setSizeRange(Size minSize, Size maxSize) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public Rect[] detect(Mat gray) {
+        return detect(gray, WorkingImage.scaleFor(workingHeight, gray, inputOrientation));
+    }
+
+    @Override
+    public Rect[] detect(Mat gray, double scale) {
+        Mat upright = workingImage.prepare(gray, scale, inputOrientation);
+        double actualScale = workingImage.scale();
+        Imgproc.equalizeHist(upright, equalized);
+
+        scaledMin.width = Math.max(CASCADE_WINDOW, minSize.width * actualScale);
+        scaledMin.height = Math.max(CASCADE_WINDOW, minSize.height * actualScale);
+        scaledMax.width = maxSize.width * actualScale;
+        scaledMax.height = maxSize.height * actualScale;
+
+        classifier.detectMultiScale(equalized, faces, scaleFactor, minNeighbors, 0, scaledMin, scaledMax);
+        Rect[] found = faces.toArray();
+        for (int i = 0; i < found.length; i++) {
+            found[i] = workingImage.toSource(found[i]);
+        }
+        return found;
+    }
+
+    @Override
+    public void release() {
+        workingImage.release();
+        equalized.release();
+        faces.release();
+    }
+}
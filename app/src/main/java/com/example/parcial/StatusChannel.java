@@ -0,0 +1,103 @@
+package com.example.parcial;
+
+import android.view.Choreographer;
+import android.widget.TextView;
+
+/**
+ * Estado que el hilo de la cámara publica para la UI sin pasar por el looper principal en
+ * cada cuadro. El productor sólo escribe números en casillas (sin crear objetos); la UI los
+ * copia desde un callback de Choreographer, como mucho cada {@link #REFRESH_INTERVAL_MS}, y
+ * sólo arma y asigna el texto si algún valor cambió.
+ */
+public final class StatusChannel implements Choreographer.FrameCallback {
+
+    public static final long REFRESH_INTERVAL_MS = 100;
+
+    /** Arma el texto a partir de los valores copiados. Corre en el hilo principal. */
+    public interface Formatter {
+        void format(StatusChannel values, StringBuilder out);
+    }
+
+    private final int[] ints;
+    private final double[] doubles;
+    private final int[] shownInts;
+    private final double[] shownDoubles;
+    private final Formatter formatter;
+    private final StringBuilder text = new StringBuilder();
+
+    private long version = 0;
+    private long shownVersion = -1;
+    private long lastRefreshNanos = 0;
+    private TextView view;
+
+    public StatusChannel(int intSlots, int doubleSlots, Formatter formatter) {
+        this.ints = new int[intSlots];
+        this.doubles = new double[doubleSlots];
+        this.shownInts = new int[intSlots];
+        this.shownDoubles = new double[doubleSlots];
+        this.formatter = formatter;
+    }
+
+    // --- Productor (cualquier hilo) ---
+
+    public synchronized void setInt(int slot, int value) {
+        if (ints[slot] != value) {
+            ints[slot] = value;
+            version++;
+        }
+    }
+
+    public synchronized void setDouble(int slot, double value) {
+        if (doubles[slot] != value) {
+            doubles[slot] = value;
+            version++;
+        }
+    }
+
+    // --- Lectura desde el Formatter ---
+
+    public int getInt(int slot) {
+        return shownInts[slot];
+    }
+
+    public double getDouble(int slot) {
+        return shownDoubles[slot];
+    }
+
+    // --- Hilo principal ---
+
+    /** Empieza a refrescar {@code target}. Llamar desde el hilo principal (onResume). */
+    public void attach(TextView target) {
+        view = target;
+        shownVersion = -1;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    public void detach() {
+        Choreographer.getInstance().removeFrameCallback(this);
+        view = null;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (view == null) return;
+        Choreographer.getInstance().postFrameCallback(this);
+        if (frameTimeNanos - lastRefreshNanos < REFRESH_INTERVAL_MS * 1_000_000L) return;
+        lastRefreshNanos = frameTimeNanos;
+
+        synchronized (this) {
+            if (version == shownVersion) return;
+            shownVersion = version;
+            System.arraycopy(ints, 0, shownInts, 0, ints.length);
+            System.arraycopy(doubles, 0, shownDoubles, 0, doubles.length);
+        }
+
+        text.setLength(0);
+        formatter.format(this, text);
+        // Cambió un valor pero no lo que se ve (p. ej. fps con más decimales): no se re-dibuja
+        String updated = text.toString();
+        if (!updated.contentEquals(view.getText())) {
+            view.setText(updated);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.parcial;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Imagen de trabajo de los detectores: el cuadro del sensor reducido y puesto vertical.
+ * Guarda la escala y la orientación usadas para devolver las cajas al cuadro original.
+ */
+final class WorkingImage {
+
+    private final Mat small = new Mat();
+    private final Mat halfScratch = new Mat();
+    private final Mat upright = new Mat();
+    private final Size resizeTo = new Size();
+
+    private FrameOrientation orientation = FrameOrientation.IDENTITY;
+    private double scale = 1.0;
+    private int smallWidth;
+    private int smallHeight;
+
+    /** Escala para que el cuadro, ya vertical, mida {@code workingHeight} filas; 0 = completo. */
+    static double scaleFor(int workingHeight, Mat gray, FrameOrientation orientation) {
+        int uprightRows = orientation.displayHeight(gray.cols(), gray.rows());
+        return (workingHeight <= 0 || workingHeight >= uprightRows) ? 1.0 : (double) workingHeight / uprightRows;
+    }
+
+    /**
+     * Reduce y orienta {@code gray}. El resultado es válido hasta la siguiente llamada;
+     * con escala 1 e identidad devuelve {@code gray} sin copiar.
+     */
+    Mat prepare(Mat gray, double requestedScale, FrameOrientation orientation) {
+        this.orientation = orientation;
+        Mat input = downscale(gray, requestedScale);
+        scale = (double) input.rows() / gray.rows();
+        smallWidth = input.cols();
+        smallHeight = input.rows();
+        return orientation.apply(input, upright);
+    }
+
+    double scale() {
+        return scale;
+    }
+
+    /** Lleva una caja de la imagen de trabajo al cuadro original (sensor). */
+    Rect toSource(Rect r) {
+        Rect mapped = orientation.isIdentity() ? r : orientation.toSensor(r, smallWidth, smallHeight);
+        if (scale != 1.0) {
+            double inv = 1.0 / scale;
+            mapped.x = (int) Math.round(mapped.x * inv);
+            mapped.y = (int) Math.round(mapped.y * inv);
+            mapped.width = (int) Math.round(mapped.width * inv);
+            mapped.height = (int) Math.round(mapped.height * inv);
+        }
+        return mapped;
+    }
+
+    void release() {
+        small.release();
+        halfScratch.release();
+        upright.release();
+    }
+
+    private Mat downscale(Mat gray, double scale) {
+        if (scale >= 1.0) return gray;
+
+        // Potencias de dos: pyrDown filtra y reduce en una pasada; el resto usa INTER_AREA
+        if (scale == 0.5) {
+            Imgproc.pyrDown(gray, small);
+            return small;
+        }
+        if (scale == 0.25) {
+            Imgproc.pyrDown(gray, halfScratch);
+            Imgproc.pyrDown(halfScratch, small);
+            return small;
+        }
+        resizeTo.width = Math.round(gray.cols() * scale);
+        resizeTo.height = Math.round(gray.rows() * scale);
+        Imgproc.resize(gray, small, resizeTo, 0, 0, Imgproc.INTER_AREA);
+        return small;
+    }
+}
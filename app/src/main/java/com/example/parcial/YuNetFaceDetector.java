@@ -0,0 +1,113 @@
+package com.example.parcial;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.objdetect.FaceDetectorYN;
+
+/**
+ * Motor DNN con FaceDetectorYN (YuNet). Trabaja sobre el gris reducido replicado a tres
+ * canales: la red espera BGR pero el pipeline de rostros sólo guarda el plano Y.
+ * El tamaño de entrada se actualiza con setInputSize sólo cuando cambia. El modelo llega
+ * en memoria desde {@link ModelStore}.
+ */
+public class YuNetFaceDetector implements FaceDetector {
+
+    public static final String MODEL_FILE = "face_detection_yunet_2023mar.onnx";
+
+    /** Columnas por rostro: caja (4), cinco puntos (10) y puntaje. */
+    static final int FACE_COLUMNS = 15;
+
+    private static final float SCORE_THRESHOLD = 0.8f;
+    private static final float NMS_THRESHOLD = 0.3f;
+    private static final int TOP_K = 50;
+    private static final int DEFAULT_WORKING_HEIGHT = 320;
+
+    private final FaceDetectorYN detector;
+    private final WorkingImage workingImage = new WorkingImage();
+    private final Mat bgr = new Mat();
+    private final Mat faces = new Mat();
+    private final Size inputSize = new Size();
+    private float[] rows = new float[0];
+
+    private int workingHeight = DEFAULT_WORKING_HEIGHT;
+    private FrameOrientation inputOrientation = FrameOrientation.IDENTITY;
+
+    public YuNetFaceDetector(MatOfByte model) {
+        detector = FaceDetectorYN.create("onnx", model, new MatOfByte(),
+                new Size(DEFAULT_WORKING_HEIGHT, DEFAULT_WORKING_HEIGHT),
+                SCORE_THRESHOLD, NMS_THRESHOLD, TOP_K);
+    }
+
+    @Override
+    public String getName() {
+        return "YuNet";
+    }
+
+    @Override
+    public void setWorkingHeight(int workingHeight) {
+        this.workingHeight = Math.max(0, workingHeight);
+    }
+
+    @Override
+    public void setInputOrientation(FrameOrientation orientation) {
+        this.inputOrientation = orientation;
+    }
+
+    @Override
+    public Rect[] detect(Mat gray) {
+        return detect(gray, WorkingImage.scaleFor(workingHeight, gray, inputOrientation));
+    }
+
+    @Override
+    public Rect[] detect(Mat gray, double scale) {
+        Mat upright = workingImage.prepare(gray, scale, inputOrientation);
+        Imgproc.cvtColor(upright, bgr, Imgproc.COLOR_GRAY2BGR);
+
+        if (inputSize.width != bgr.cols() || inputSize.height != bgr.rows()) {
+            inputSize.width = bgr.cols();
+            inputSize.height = bgr.rows();
+            detector.setInputSize(inputSize);
+        }
+
+        detector.detect(bgr, faces);
+        int count = faces.rows();
+        if (count == 0) return new Rect[0];
+
+        if (rows.length < count * FACE_COLUMNS) {
+            rows = new float[count * FACE_COLUMNS];
+        }
+        faces.get(0, 0, rows);
+
+        Rect[] found = new Rect[count];
+        for (int i = 0; i < count; i++) {
+            int base = i * FACE_COLUMNS;
+            Rect box = new Rect(Math.round(rows[base]), Math.round(rows[base + 1]),
+                    Math.round(rows[base + 2]), Math.round(rows[base + 3]));
+            found[i] = workingImage.toSource(box);
+        }
+        return found;
+    }
+
+    /** Imagen BGR (reducida y vertical) sobre la que corrió la última detección. */
+    public Mat lastInput() {
+        return bgr;
+    }
+
+    /**
+     * Salida cruda de la última detección, con puntos faciales: una fila por caja devuelta,
+     * en el mismo orden y en coordenadas de {@link #lastInput()}.
+     */
+    public Mat lastFaces() {
+        return faces;
+    }
+
+    @Override
+    public void release() {
+        workingImage.release();
+        bgr.release();
+        faces.release();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.parcial;
+
+import org.junit.Test;
+import org.opencv.core.Rect;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class BatchAnalyzerTest {
+
+    @Test
+    public void records_countItemsPerFrame() {
+        BatchAnalyzer.Records records = new BatchAnalyzer.Records();
+        records.beginFrame(2, 7).putCircle(10.5f, 20f, 30f, 3);
+        records.putCircle(1f, 2f, 3f, -1);
+        records.beginFrame(2, 8);
+        records.beginFrame(3, 0).putBox(new Rect(4, 5, 6, 7));
+
+        ByteBuffer buffer = records.finish();
+        assertEquals(3, records.frameCount);
+        assertEquals(2, buffer.getInt());
+        assertEquals(7, buffer.getInt());
+        assertEquals(2, buffer.getInt());
+        assertEquals(10.5f, buffer.getFloat(), 0f);
+        assertEquals(20f, buffer.getFloat(), 0f);
+        assertEquals(30f, buffer.getFloat(), 0f);
+        assertEquals(3, buffer.getInt());
+        buffer.position(buffer.position() + BatchAnalyzer.ITEM_BYTES);
+        assertEquals(2, buffer.getInt());
+        assertEquals(8, buffer.getInt());
+        assertEquals(0, buffer.getInt());
+        assertEquals(3, buffer.getInt());
+        assertEquals(0, buffer.getInt());
+        assertEquals(1, buffer.getInt());
+        assertEquals(4, buffer.getInt());
+        assertEquals(5, buffer.getInt());
+        assertEquals(6, buffer.getInt());
+        assertEquals(7, buffer.getInt());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void records_growKeepsContent() {
+        BatchAnalyzer.Records records = new BatchAnalyzer.Records();
+        int frames = 500;
+        for (int f = 0; f < frames; f++) {
+            records.beginFrame(0, f);
+            for (int c = 0; c <= f % 4; c++) records.putCircle(f, c, 1f, c);
+        }
+
+        ByteBuffer buffer = records.finish();
+        for (int f = 0; f < frames; f++) {
+            assertEquals(0, buffer.getInt());
+            assertEquals(f, buffer.getInt());
+            int count = buffer.getInt();
+            assertEquals(f % 4 + 1, count);
+            for (int c = 0; c < count; c++) {
+                assertEquals(f, buffer.getFloat(), 0f);
+                assertEquals(c, buffer.getFloat(), 0f);
+                buffer.getFloat();
+                assertEquals(c, buffer.getInt());
+            }
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.parcial;
+
+import com.example.parcial.CoinColorClassifier.Finish;
+import com.example.parcial.CoinColorClassifier.Tone;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CoinMatchingTest {
+
+    // Mismos datos que la divisa COP de assets/catalogue/coins.json (diámetros anterior y nuevo)
+    private static final CoinPipeline.CoinType[] COINS = {
+            coin("50 COP", 50, 21.9, 17.0, Finish.MONO, Tone.SILVER),
+            coin("100 COP", 100, 23.0, 20.3, Finish.MONO, Tone.GOLD),
+            coin("200 COP", 200, 24.4, 22.4, Finish.MONO, Tone.SILVER),
+            coin("500 COP", 500, 23.5, 23.7, Finish.BIMETAL, Tone.SILVER),
+            coin("1000 COP", 1000, 26.7, 26.7, Finish.BIMETAL, Tone.GOLD),
+    };
+    private static final RadiusTable TABLE = new RadiusTable(COINS, CoinPipeline.TOLERANCE_PERCENTAGE);
+
+    private static CoinPipeline.CoinType coin(String name, double value, double oldMm, double newMm,
+                                              Finish finish, Tone tone) {
+        return new CoinPipeline.CoinType(name, value, new double[]{oldMm, newMm},
+                new Finish[]{finish, finish}, new Tone[]{tone, tone});
+    }
+
+    private static int coinAt(double radiusPx, double pixelsPerMm) {
+        return TABLE.match(radiusPx / pixelsPerMm, null, null);
+    }
+
+    /** Búsqueda lineal de referencia: la serie más cercana dentro de la tolerancia. */
+    private static int linearMatch(CoinPipeline.CoinType[] coins, double radiusMm) {
+        int best = -1;
+        double bestDifference = Double.MAX_VALUE;
+        for (int c = 0; c < coins.length; c++) {
+            for (double candidate : coins[c].radiiMm) {
+                double difference = Math.abs(radiusMm - (float) candidate);
+                if (difference <= (float) candidate * CoinPipeline.TOLERANCE_PERCENTAGE && difference < bestDifference) {
+                    bestDifference = difference;
+                    best = c;
+                }
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void defaultScale_classifiesOriginalPixelRadii() {
+        // Radios en píxeles (anterior, nueva) con los que se clasificaba antes de pasar a
+        // milímetros. A la escala por defecto los del catálogo difieren hasta ~2 px de estos,
+        // pero cada uno sigue cayendo en su moneda.
+        double[][] originalPx = {{82.6, 64.4}, {86.2, 75.2}, {91.6, 85.0}, {89.0, 87.4}, {100.8, 100.8}};
+        double ppm = CoinPipeline.DEFAULT_PIXELS_PER_MM;
+        for (int c = 0; c < COINS.length; c++) {
+            for (int s = 0; s < originalPx[c].length; s++) {
+                double radiusPx = originalPx[c][s];
+                assertEquals(COINS[c].name + " " + radiusPx + " px", c,
+                        TABLE.match(radiusPx / ppm, COINS[c].finishes[s], COINS[c].tones[s]));
+                assertEquals(radiusPx, COINS[c].radiiMm[s] * ppm, 2.2);
+            }
+        }
+    }
+
+    @Test
+    public void matching_isIndependentOfCameraHeight() {
+        for (double ppm : new double[]{4.0, 7.55, 12.0}) {
+            for (int i = 0; i < COINS.length; i++) {
+                for (double radiusMm : COINS[i].radiiMm) {
+                    assertEquals(i, coinAt(radiusMm * ppm, ppm));
+                }
+            }
+            assertEquals(-1, coinAt(5 * ppm, ppm));
+        }
+    }
+
+    @Test
+    public void binarySearch_agreesWithLinearScan() {
+        for (double radiusMm = 5; radiusMm < 18; radiusMm += 0.01) {
+            assertEquals("radio " + radiusMm, linearMatch(COINS, radiusMm), TABLE.match(radiusMm, null, null));
+        }
+    }
+
+    @Test
+    public void seriesCount_isFreePerCoin() {
+        CoinPipeline.CoinType[] coins = {
+                new CoinPipeline.CoinType("a", 1, new double[]{20}, new Finish[]{null}, new Tone[]{null}),
+                new CoinPipeline.CoinType("b", 2, new double[]{26, 30, 34},
+                        new Finish[]{null, null, null}, new Tone[]{null, null, null}),
+        };
+        RadiusTable table = new RadiusTable(coins, CoinPipeline.TOLERANCE_PERCENTAGE);
+        assertEquals(0, table.match(10, Finish.MONO, Tone.GOLD));
+        assertEquals(1, table.match(15, null, null));
+        assertEquals(1, table.match(17, Finish.BIMETAL, Tone.SILVER));
+        assertEquals(10, table.smallestRadiusMm(), 1e-6);
+        assertEquals(17, table.largestRadiusMm(), 1e-6);
+    }
+
+    @Test
+    public void finish_separatesSameSizeCoins() {
+        // La 100 anterior (11.5 mm) y la 500 nueva (11.85 mm) caen en la misma tolerancia
+        double radiusMm = 11.7;
+        assertTrue(TABLE.colourMatters(radiusMm));
+        assertEquals(3, TABLE.match(radiusMm, Finish.BIMETAL, null));
+        assertEquals(1, TABLE.match(radiusMm, Finish.MONO, null));
+    }
+
+    @Test
+    public void tone_separatesSameFinishCoins() {
+        // La 100 anterior (11.5 mm, dorada) y la 200 nueva (11.2 mm, plateada) son de un solo
+        // metal: sólo el tono las distingue
+        double radiusMm = 11.35;
+        assertTrue(TABLE.colourMatters(radiusMm));
+        assertEquals(1, TABLE.match(radiusMm, Finish.MONO, Tone.GOLD));
+        assertEquals(2, TABLE.match(radiusMm, Finish.MONO, Tone.SILVER));
+        assertEquals(3, TABLE.match(radiusMm, Finish.BIMETAL, Tone.SILVER));
+    }
+
+    @Test
+    public void colour_isIgnoredWhenRadiusIsUnambiguous() {
+        // Sólo la 50 nueva (8.5 mm) cae en la tolerancia
+        assertFalse(TABLE.colourMatters(8.5));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.parcial;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CoinTrackerTest {
+
+    private static CircleSet circles(float... xyr) {
+        CircleSet set = new CircleSet();
+        for (int i = 0; i < xyr.length; i += 3) set.add(xyr[i], xyr[i + 1], xyr[i + 2]);
+        return set;
+    }
+
+    @Test
+    public void update_keepsIdsForNearbyCircles() {
+        CoinTracker tracker = new CoinTracker(2);
+        tracker.update(circles(100, 100, 80, 400, 100, 90), new int[]{0, 1});
+        int first = tracker.id(0);
+        int second = tracker.id(1);
+
+        // Llegan en otro orden y algo desplazadas
+        tracker.update(circles(410, 105, 90, 108, 96, 80), new int[]{1, 0});
+        assertEquals(2, tracker.size());
+        assertEquals(first, tracker.id(0));
+        assertEquals(second, tracker.id(1));
+        assertEquals(108, tracker.x(0), 1e-6);
+        assertEquals(410, tracker.x(1), 1e-6);
+    }
+
+    @Test
+    public void update_opensTrackBeyondGate() {
+        CoinTracker tracker = new CoinTracker(1);
+        tracker.update(circles(100, 100, 80), new int[]{0});
+        tracker.update(circles(100 + 80 * (float) CoinTracker.GATE + 5, 100, 80), new int[]{0});
+        assertEquals(2, tracker.size());
+        assertNotEquals(tracker.id(0), tracker.id(1));
+    }
+
+    @Test
+    public void denomination_ignoresOccasionalMisclassification() {
+        CoinTracker tracker = new CoinTracker(3);
+        int[] votes = {2, 2, 1, 2, -1, 2};
+        for (int coin : votes) {
+            tracker.update(circles(200, 200, 85), new int[]{coin});
+        }
+        assertEquals(1, tracker.size());
+        assertEquals(2, tracker.denomination(0));
+    }
+
+    @Test
+    public void denomination_usesOnlyTheWindow() {
+        CoinTracker tracker = new CoinTracker(2);
+        for (int i = 0; i < CoinTracker.VOTE_WINDOW; i++) {
+            tracker.update(circles(200, 200, 85), new int[]{0});
+        }
+        for (int i = 0; i < CoinTracker.VOTE_WINDOW / 2 + 1; i++) {
+            tracker.update(circles(200, 200, 85), new int[]{1});
+        }
+        assertEquals(1, tracker.denomination(0));
+    }
+
+    @Test
+    public void update_dropsTrackAfterMaxMissed() {
+        CoinTracker tracker = new CoinTracker(1);
+        tracker.update(circles(100, 100, 80), new int[]{0});
+        CircleSet empty = new CircleSet();
+        for (int i = 0; i < CoinTracker.MAX_MISSED; i++) {
+            tracker.update(empty, new int[0]);
+            assertEquals(1, tracker.size());
+            assertTrue(tracker.isMissing(0));
+        }
+        tracker.update(empty, new int[0]);
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void move_updatesPositionAndCoastUsesVelocity() {
+        CoinTracker tracker = new CoinTracker(1);
+        tracker.update(circles(100, 100, 80), new int[]{0});
+        tracker.move(0, 4, -2);
+        assertEquals(104, tracker.x(0), 1e-6);
+        assertEquals(98, tracker.y(0), 1e-6);
+        tracker.coast(0);
+        assertEquals(104 + 4 * CoinTracker.VELOCITY_SMOOTHING, tracker.x(0), 1e-5);
+        assertEquals(98 - 2 * CoinTracker.VELOCITY_SMOOTHING, tracker.y(0), 1e-5);
+    }
+}
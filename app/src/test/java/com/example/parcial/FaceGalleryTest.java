@@ -0,0 +1,97 @@
+package com.example.parcial;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FaceGalleryTest {
+
+    private static float[] randomUnit(Random random) {
+        float[] v = new float[FaceGallery.DIM];
+        for (int i = 0; i < v.length; i++) v[i] = (float) random.nextGaussian();
+        FaceGallery.normalize(v, 0);
+        return v;
+    }
+
+    private static float[] nearby(float[] v, Random random, double noise) {
+        float[] q = v.clone();
+        for (int i = 0; i < q.length; i++) q[i] += (float) (random.nextGaussian() * noise);
+        FaceGallery.normalize(q, 0);
+        return q;
+    }
+
+    @Test
+    public void search_findsEnrolledPerson() {
+        Random random = new Random(1);
+        FaceGallery gallery = new FaceGallery();
+        float[][] samples = new float[5][];
+        for (int p = 0; p < samples.length; p++) {
+            samples[p] = randomUnit(random);
+            gallery.add(gallery.addPerson("p" + p), samples[p]);
+        }
+
+        FaceGallery.Match match = gallery.search(nearby(samples[3], random, 0.01), new FaceGallery.Match());
+        assertEquals(3, match.personId);
+        assertTrue(match.score > 0.9f);
+        assertEquals("p3", gallery.nameOf(match.personId));
+    }
+
+    @Test
+    public void addPerson_reusesExistingName() {
+        FaceGallery gallery = new FaceGallery();
+        assertEquals(0, gallery.addPerson("ana"));
+        assertEquals(1, gallery.addPerson("luis"));
+        assertEquals(0, gallery.addPerson("ana"));
+        assertEquals(2, gallery.personCount());
+    }
+
+    @Test
+    public void saveAndLoad_roundTrips() throws IOException {
+        Random random = new Random(2);
+        FaceGallery gallery = new FaceGallery();
+        float[] first = randomUnit(random);
+        gallery.add(gallery.addPerson("José"), first);
+        gallery.add(gallery.addPerson("Ana"), randomUnit(random));
+
+        File file = File.createTempFile("gallery", ".bin");
+        file.deleteOnExit();
+        gallery.save(file);
+        FaceGallery loaded = FaceGallery.load(file);
+
+        assertEquals(2, loaded.size());
+        assertEquals("José", loaded.nameOf(0));
+        FaceGallery.Match match = loaded.search(first, new FaceGallery.Match());
+        assertEquals(0, match.personId);
+        assertEquals(1f, match.score, 1e-5);
+    }
+
+    @Test
+    public void index_agreesWithExhaustiveScan() throws Exception {
+        Random random = new Random(3);
+        FaceGallery gallery = new FaceGallery();
+        int count = FaceGallery.INDEX_MIN_SIZE + 100;
+        float[][] samples = new float[count][];
+        for (int i = 0; i < count; i++) {
+            samples[i] = randomUnit(random);
+            gallery.add(gallery.addPerson("p" + i), samples[i]);
+        }
+        // El índice se construye en segundo plano
+        gallery.awaitIndex();
+        assertTrue(gallery.isIndexed());
+
+        FaceGallery.Match indexed = new FaceGallery.Match();
+        FaceGallery.Match exhaustive = new FaceGallery.Match();
+        for (int t = 0; t < 50; t++) {
+            int target = random.nextInt(count);
+            float[] query = nearby(samples[target], random, 0.005);
+            gallery.search(query, indexed);
+            gallery.searchExhaustive(query, exhaustive);
+            assertEquals(exhaustive.personId, indexed.personId);
+            assertEquals(target, indexed.personId);
+        }
+    }
+}
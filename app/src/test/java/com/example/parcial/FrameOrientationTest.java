@@ -0,0 +1,67 @@
+package com.example.parcial;
+
+import org.junit.Test;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+import static org.junit.Assert.*;
+
+public class FrameOrientationTest {
+
+    private static final int W = 640;
+    private static final int H = 480;
+
+    @Test
+    public void clockwise_mapsTopLeftToTopRight() {
+        FrameOrientation o = FrameOrientation.of(90, false);
+        Point out = new Point();
+        o.toDisplay(new Point(0, 0), W, H, out);
+        assertEquals(H, out.x, 1e-9);
+        assertEquals(0, out.y, 1e-9);
+        assertEquals(H, o.displayWidth(W, H));
+        assertEquals(W, o.displayHeight(W, H));
+    }
+
+    @Test
+    public void counterClockwise_equalsClockwisePlusDoubleFlip() {
+        // rotate CW + flip(0) + flip(1) es lo que hacía FaceDetectionActivity
+        FrameOrientation o = FrameOrientation.of(270, false);
+        Point p = new Point(100, 50);
+        Point out = new Point();
+        o.toDisplay(p, W, H, out);
+        double cwX = H - p.y;
+        double cwY = p.x;
+        assertEquals(H - cwX, out.x, 1e-9);
+        assertEquals(W - cwY, out.y, 1e-9);
+    }
+
+    @Test
+    public void toSensor_isInverseOfToDisplay() {
+        int[] rotations = {0, 90, 180, 270};
+        for (int rotation : rotations) {
+            for (boolean mirror : new boolean[]{false, true}) {
+                FrameOrientation o = FrameOrientation.of(rotation, mirror);
+                Point p = new Point(123, 45);
+                Point display = new Point();
+                Point back = new Point();
+                o.toDisplay(p, W, H, display);
+                o.toSensor(display, W, H, back);
+                assertEquals("x " + rotation + " " + mirror, p.x, back.x, 1e-9);
+                assertEquals("y " + rotation + " " + mirror, p.y, back.y, 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void rectMapping_keepsSizeAndSwapsAxes() {
+        FrameOrientation o = FrameOrientation.of(90, true);
+        Rect r = o.toDisplay(new Rect(10, 20, 30, 40), W, H);
+        assertEquals(new Rect(20, 10, 40, 30), r);
+        assertEquals(new Rect(10, 20, 30, 40), o.toSensor(r, W, H));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonRightAngles() {
+        FrameOrientation.of(45, false);
+    }
+}
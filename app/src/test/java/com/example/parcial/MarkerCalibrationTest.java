@@ -0,0 +1,90 @@
+package com.example.parcial;
+
+import com.example.parcial.CoinColorClassifier.Finish;
+import com.example.parcial.CoinColorClassifier.Tone;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MarkerCalibrationTest {
+
+    private static final double MARKER_SIDE_MM = 50;
+
+    @Test
+    public void meanSide_averagesQuadSides() {
+        float[] square = {10, 10, 50, 10, 50, 50, 10, 50};
+        assertEquals(40, MarkerCalibration.meanSide(square), 1e-9);
+
+        float[] tilted = {0, 0, 30, 40, -10, 70, -40, 30};
+        assertEquals(50, MarkerCalibration.meanSide(tilted), 1e-9);
+    }
+
+    @Test
+    public void scale_isMarkerSideInPixelsOverMillimetres() {
+        MarkerScale scale = new MarkerScale(MARKER_SIDE_MM);
+        assertEquals(0, scale.getPixelsPerMm(), 0);
+        scale.add(400);
+        assertEquals(8.0, scale.getPixelsPerMm(), 1e-9);
+    }
+
+    @Test
+    public void scale_smoothsNewMeasurements() {
+        MarkerScale scale = new MarkerScale(MARKER_SIDE_MM);
+        scale.add(400);
+        scale.add(500);
+        assertEquals(8.0 + MarkerScale.SMOOTHING * (10.0 - 8.0), scale.getPixelsPerMm(), 1e-9);
+    }
+
+    @Test
+    public void search_isOccasionalAndSlowsDownOnceCalibrated() {
+        MarkerScale scale = new MarkerScale(MARKER_SIDE_MM);
+        // Sin escala: el primer cuadro y luego cada SEARCH_INTERVAL
+        assertTrue(scale.searchDue());
+        assertEquals(MarkerScale.SEARCH_INTERVAL, framesUntilSearch(scale));
+
+        // La medición llega en el cuadro de búsqueda: la siguiente ya estaba agendada y a
+        // partir de ahí se recalibra cada RECALIBRATE_INTERVAL
+        scale.add(400);
+        assertEquals(MarkerScale.SEARCH_INTERVAL, framesUntilSearch(scale));
+        assertEquals(MarkerScale.RECALIBRATE_INTERVAL, framesUntilSearch(scale));
+        assertEquals(MarkerScale.RECALIBRATE_INTERVAL, framesUntilSearch(scale));
+
+        scale.reset();
+        assertEquals(0, scale.getPixelsPerMm(), 0);
+        assertTrue(scale.searchDue());
+    }
+
+    @Test
+    public void calibratedBand_coversEveryCoinAndIsTighterThanUncalibrated() {
+        // Extremos de la divisa COP: la 50 nueva (17 mm) y la 1000 (26.7 mm)
+        CoinPipeline.CoinType[] coins = {
+                new CoinPipeline.CoinType("50 COP", 50, new double[]{21.9, 17.0},
+                        new Finish[]{Finish.MONO, Finish.MONO}, new Tone[]{Tone.SILVER, Tone.SILVER}),
+                new CoinPipeline.CoinType("1000 COP", 1000, new double[]{26.7},
+                        new Finish[]{Finish.BIMETAL}, new Tone[]{Tone.GOLD}),
+        };
+        RadiusTable table = new RadiusTable(coins, CoinPipeline.TOLERANCE_PERCENTAGE);
+        MarkerScale scale = new MarkerScale(MARKER_SIDE_MM);
+        scale.add(400);
+        double ppm = scale.getPixelsPerMm();
+
+        double minRadius = table.minSearchRadiusMm() * ppm;
+        double maxRadius = table.maxSearchRadiusMm() * ppm;
+        assertEquals(8.5 * 0.9 * 8, minRadius, 1e-3);
+        assertEquals(13.35 * 1.1 * 8, maxRadius, 1e-3);
+        for (CoinPipeline.CoinType coin : coins) {
+            for (double radiusMm : coin.radiiMm) {
+                assertTrue(coin.name, radiusMm * ppm > minRadius && radiusMm * ppm < maxRadius);
+            }
+        }
+        assertTrue(maxRadius - minRadius < (CoinPipeline.MAX_RADIUS - CoinPipeline.MIN_RADIUS) / 2.0);
+    }
+
+    /** Cuadros que pasan hasta la siguiente búsqueda, contando la que la dispara. */
+    private static int framesUntilSearch(MarkerScale scale) {
+        int frames = 1;
+        while (!scale.searchDue()) frames++;
+        return frames;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.parcial;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RadialEdgeFitTest {
+
+    private static final int SIZE = 400;
+
+    /** Disco oscuro sobre fondo claro, con bordes suavizados por supermuestreo 4x4. */
+    private static byte[] disc(double cx, double cy, double r) {
+        byte[] pixels = new byte[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int inside = 0;
+                for (int sy = 0; sy < 4; sy++) {
+                    for (int sx = 0; sx < 4; sx++) {
+                        double dx = x + (sx + 0.5) / 4 - 0.5 - cx;
+                        double dy = y + (sy + 0.5) / 4 - 0.5 - cy;
+                        if (dx * dx + dy * dy <= r * r) inside++;
+                    }
+                }
+                pixels[y * SIZE + x] = (byte) Math.round(170 - (170 - 60) * inside / 16.0);
+            }
+        }
+        return pixels;
+    }
+
+    @Test
+    public void fit_recoversSubpixelCircleFromCoarseEstimate() {
+        byte[] pixels = disc(201.3, 198.7, 83.4);
+        RadialEdgeFit fit = new RadialEdgeFit();
+
+        // Estimación como la de un nivel reducido: un par de píxeles de error en todo
+        assertTrue(fit.fit(pixels, SIZE, SIZE, 203f, 197f, 80f));
+        assertEquals(201.3, fit.x, 0.3);
+        assertEquals(198.7, fit.y, 0.3);
+        assertEquals(83.4, fit.radius, 0.3);
+    }
+
+    @Test
+    public void fit_onCrop_matchesFullImage() {
+        byte[] pixels = disc(201.3, 198.7, 83.4);
+        RadialEdgeFit full = new RadialEdgeFit();
+        assertTrue(full.fit(pixels, SIZE, SIZE, 203f, 197f, 80f));
+
+        // Recorte que sólo cubre la franja de búsqueda, como el de la etapa piramidal
+        int x0 = 100, y0 = 90, width = 210, height = 215;
+        byte[] crop = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(pixels, (y0 + y) * SIZE + x0, crop, y * width, width);
+        }
+        RadialEdgeFit cropped = new RadialEdgeFit();
+        assertTrue(cropped.fit(crop, width, height, x0, y0, 203f, 197f, 80f));
+        assertEquals(full.x, cropped.x, 1e-4);
+        assertEquals(full.y, cropped.y, 1e-4);
+        assertEquals(full.radius, cropped.radius, 1e-4);
+    }
+
+    @Test
+    public void fit_failsWithoutEdges() {
+        byte[] flat = new byte[SIZE * SIZE];
+        Arrays.fill(flat, (byte) 120);
+        assertFalse(new RadialEdgeFit().fit(flat, SIZE, SIZE, 200f, 200f, 80f));
+    }
+
+    @Test
+    public void fit_failsWhenCircleLeavesTheImage() {
+        byte[] pixels = disc(-20, 200, 83.4);
+        assertFalse(new RadialEdgeFit().fit(pixels, SIZE, SIZE, -20f, 200f, 83f));
+    }
+}
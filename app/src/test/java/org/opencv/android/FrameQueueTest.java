@@ -0,0 +1,115 @@
+package org.opencv.android;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameQueueTest {
+
+    private final List<Integer> recycled = Collections.synchronizedList(new ArrayList<Integer>());
+
+    private FrameQueue<Integer> queue(int capacity, FrameQueue.DropPolicy policy) {
+        return new FrameQueue<>("test", capacity, policy, recycled::add);
+    }
+
+    @Test
+    public void dropOldest_keepsLatestFrames() throws InterruptedException {
+        FrameQueue<Integer> q = queue(2, FrameQueue.DropPolicy.DROP_OLDEST);
+        assertTrue(q.offer(1));
+        assertTrue(q.offer(2));
+        assertTrue(q.offer(3));
+
+        assertEquals(Collections.singletonList(1), recycled);
+        assertEquals(Integer.valueOf(2), q.take());
+        assertEquals(Integer.valueOf(3), q.take());
+
+        FrameQueue.Stats stats = q.getStats();
+        assertEquals(3, stats.offered);
+        assertEquals(1, stats.dropped);
+        assertEquals(2, stats.maxDepth);
+        assertEquals(0, stats.depth);
+        // Depth seen on arrival: 0, 1, 2
+        assertEquals(1.0, stats.meanDepth, 1e-9);
+        assertEquals(0, stats.blockedMs);
+    }
+
+    @Test
+    public void dropNewest_keepsQueuedFrames() throws InterruptedException {
+        FrameQueue<Integer> q = queue(2, FrameQueue.DropPolicy.DROP_NEWEST);
+        assertTrue(q.offer(1));
+        assertTrue(q.offer(2));
+        assertTrue(q.offer(3));
+
+        assertEquals(Collections.singletonList(3), recycled);
+        assertEquals(Integer.valueOf(1), q.take());
+        assertEquals(Integer.valueOf(2), q.take());
+
+        FrameQueue.Stats stats = q.getStats();
+        assertEquals(3, stats.offered);
+        assertEquals(1, stats.dropped);
+        assertEquals(2, stats.maxDepth);
+    }
+
+    @Test
+    public void block_makesProducerWaitForRoom() throws InterruptedException {
+        FrameQueue<Integer> q = queue(1, FrameQueue.DropPolicy.BLOCK);
+        assertTrue(q.offer(1));
+        boolean[] accepted = new boolean[1];
+        Thread producer = new Thread(() -> accepted[0] = q.offer(2));
+        producer.start();
+
+        Thread.sleep(50);
+        assertTrue(producer.isAlive());
+        assertEquals(1, q.getStats().depth);
+
+        assertEquals(Integer.valueOf(1), q.take());
+        producer.join(1000);
+        assertFalse(producer.isAlive());
+        assertTrue(accepted[0]);
+        assertEquals(Integer.valueOf(2), q.take());
+
+        FrameQueue.Stats stats = q.getStats();
+        assertEquals(2, stats.offered);
+        assertEquals(0, stats.dropped);
+        assertTrue("blocked " + stats.blockedMs + " ms", stats.blockedMs >= 40);
+        assertTrue(recycled.isEmpty());
+    }
+
+    @Test
+    public void close_recyclesLeftoversAndRefusesItems() throws InterruptedException {
+        FrameQueue<Integer> q = queue(2, FrameQueue.DropPolicy.BLOCK);
+        q.offer(1);
+        q.offer(2);
+        q.close();
+
+        assertEquals(2, recycled.size());
+        assertFalse(q.offer(3));
+        assertNull(q.take());
+        // The caller keeps a refused item: it is not recycled
+        assertEquals(2, recycled.size());
+    }
+
+    @Test
+    public void close_releasesBlockedProducer() throws InterruptedException {
+        FrameQueue<Integer> q = queue(1, FrameQueue.DropPolicy.BLOCK);
+        q.offer(1);
+        boolean[] accepted = {true};
+        Thread producer = new Thread(() -> accepted[0] = q.offer(2));
+        producer.start();
+        Thread.sleep(20);
+
+        q.close();
+        producer.join(1000);
+        assertFalse(producer.isAlive());
+        assertFalse(accepted[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacity_mustBePositive() {
+        queue(0, FrameQueue.DropPolicy.DROP_OLDEST);
+    }
+}
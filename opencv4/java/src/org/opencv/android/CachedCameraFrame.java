@@ -0,0 +1,124 @@
+package org.opencv.android;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Camera frame that converts lazily and at most once per image. rgba(), gray() and the derived
+ * products (resized and rotated gray) are computed on first use and cached until the view
+ * moves the frame to the next image, so several consumers of one frame share a single
+ * conversion. Returned Mats belong to the frame: don't release them, and copy before
+ * modifying one that another consumer may read. Used by one thread at a time.
+ */
+public abstract class CachedCameraFrame implements CameraBridgeViewBase.CvCameraViewFrame {
+    /** Distinct resize scales kept per frame; more are served round-robin. */
+    private static final int MAX_RESIZED = 4;
+    /** Core.ROTATE_90_CLOCKWISE, ROTATE_180 and ROTATE_90_COUNTERCLOCKWISE are 0, 1 and 2. */
+    private static final int ROTATIONS = 3;
+
+    private final Mat mRgba = new Mat();
+    private boolean mRgbaValid;
+    private Mat mGray;
+
+    private final Mat[] mResized = new Mat[MAX_RESIZED];
+    private final double[] mResizedScale = new double[MAX_RESIZED];
+    private final boolean[] mResizedValid = new boolean[MAX_RESIZED];
+    private int mNextResized;
+    private final Size mNoSize = new Size();
+
+    private final Mat[] mRotated = new Mat[ROTATIONS];
+    private final boolean[] mRotatedValid = new boolean[ROTATIONS];
+
+    /** Converts the current image to RGBA into {@code dst}. Called at most once per image. */
+    protected abstract void convertRgba(Mat dst);
+
+    /** Gray Mat of the current image, owned by the subclass. Called at most once per image. */
+    protected abstract Mat computeGray();
+
+    @Override
+    public final Mat rgba() {
+        if (!mRgbaValid) {
+            convertRgba(mRgba);
+            mRgbaValid = true;
+        }
+        return mRgba;
+    }
+
+    @Override
+    public final Mat gray() {
+        if (mGray == null)
+            mGray = computeGray();
+        return mGray;
+    }
+
+    /** Gray frame resized by {@code scale} with INTER_AREA, computed once per image and scale. */
+    public Mat grayResized(double scale) {
+        if (scale == 1.0)
+            return gray();
+        int slot = -1;
+        for (int i = 0; i < MAX_RESIZED; i++) {
+            if (mResized[i] != null && mResizedScale[i] == scale) {
+                slot = i;
+                break;
+            }
+        }
+        if (slot < 0) {
+            slot = mNextResized;
+            mNextResized = (mNextResized + 1) % MAX_RESIZED;
+            if (mResized[slot] == null)
+                mResized[slot] = new Mat();
+            mResizedScale[slot] = scale;
+            mResizedValid[slot] = false;
+        }
+        if (!mResizedValid[slot]) {
+            Imgproc.resize(gray(), mResized[slot], mNoSize, scale, scale, Imgproc.INTER_AREA);
+            mResizedValid[slot] = true;
+        }
+        return mResized[slot];
+    }
+
+    /** Gray frame rotated with a Core.ROTATE_* code, computed once per image and code. */
+    public Mat grayRotated(int rotateCode) {
+        if (rotateCode < 0 || rotateCode >= ROTATIONS)
+            throw new IllegalArgumentException("Unknown rotate code: " + rotateCode);
+        if (!mRotatedValid[rotateCode]) {
+            if (mRotated[rotateCode] == null)
+                mRotated[rotateCode] = new Mat();
+            Core.rotate(gray(), mRotated[rotateCode], rotateCode);
+            mRotatedValid[rotateCode] = true;
+        }
+        return mRotated[rotateCode];
+    }
+
+    /**
+     * Forgets the conversions of the previous image. Views call it before delivering a new
+     * image; buffers are kept and reused.
+     */
+    void invalidate() {
+        mRgbaValid = false;
+        mGray = null;
+        for (int i = 0; i < MAX_RESIZED; i++)
+            mResizedValid[i] = false;
+        for (int i = 0; i < ROTATIONS; i++)
+            mRotatedValid[i] = false;
+    }
+
+    public void release() {
+        invalidate();
+        mRgba.release();
+        for (int i = 0; i < MAX_RESIZED; i++) {
+            if (mResized[i] != null) {
+                mResized[i].release();
+                mResized[i] = null;
+            }
+        }
+        for (int i = 0; i < ROTATIONS; i++) {
+            if (mRotated[i] != null) {
+                mRotated[i].release();
+                mRotated[i] = null;
+            }
+        }
+    }
+}
@@ -2,7 +2,6 @@ package org.opencv.android;
 
 import java.util.List;
 
-import org.opencv.BuildConfig;
 import org.opencv.R;
 import org.opencv.core.Mat;
 import org.opencv.core.Size;
@@ -13,8 +12,6 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.SurfaceHolder;
@@ -35,7 +32,7 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     private static final int STARTED = 1;
 
     private int mState = STOPPED;
-    private Bitmap mCacheBitmap;
+    private final PreviewRenderer.Buffer mCacheBuffer = new PreviewRenderer.Buffer();
     private CvCameraViewListener2 mListener;
     private boolean mSurfaceExist;
     private final Object mSyncObject = new Object();
@@ -51,11 +48,27 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     protected boolean mCameraPermissionGranted = false;
     protected FpsMeter mFpsMeter = null;
 
+    private int mPipelineDepth;
+    private FrameQueue.DropPolicy mPipelineDropPolicy = FrameQueue.DropPolicy.DROP_OLDEST;
+    private volatile FramePipeline mPipeline;
+
+    private int mRenderBackend = RENDER_GL;
+    private volatile PreviewRenderer mRenderer;
+    private volatile boolean mDirectPreview;
+    private volatile int mPreviewRotation;
+    private volatile boolean mPreviewMirror;
+    private volatile CameraOverlayView mOverlayView;
+    private final FrameOverlay mDetachedOverlay = new FrameOverlay();
+
     public static final int CAMERA_ID_ANY   = -1;
     public static final int CAMERA_ID_BACK  = 99;
     public static final int CAMERA_ID_FRONT = 98;
     public static final int RGBA = 1;
     public static final int GRAY = 2;
+    /** Processed frames go through Utils.matToBitmap and are drawn on the surface canvas. */
+    public static final int RENDER_CANVAS = 0;
+    /** Processed frames are uploaded into a GL texture and scaled and oriented by the GPU. */
+    public static final int RENDER_GL = 1;
 
     public CameraBridgeViewBase(Context context, int cameraId) {
         super(context);
@@ -177,6 +190,8 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     /**
      * This class interface is abstract representation of single frame from camera for onCameraFrame callback
      * Attention: Do not use objects, that represents this interface out of onCameraFrame callback!
+     * Frames of the bundled views convert once per frame: repeated calls return the same Mat.
+     * They are {@link CachedCameraFrame}s, which also share resized and rotated gray products.
      */
     public interface CvCameraViewFrame {
 
@@ -191,6 +206,15 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
         public Mat gray();
     };
 
+    /**
+     * Frame that can outlive the capture callback: views that support the frame pipeline hand
+     * these to {@link #submitFrame(PipelineFrame)}, and recycle() is called exactly once when
+     * the listener is done with the frame (or the frame was dropped).
+     */
+    protected interface PipelineFrame extends CvCameraViewFrame {
+        void recycle();
+    }
+
     public void surfaceChanged(SurfaceHolder arg0, int arg1, int arg2, int arg3) {
         Log.d(TAG, "call surfaceChanged event");
         synchronized(mSyncObject) {
@@ -271,6 +295,148 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
             mFpsMeter = null;
     }
 
+    /**
+     * Runs the listener and the drawing on their own threads, joined by bounded queues of
+     * {@code queueDepth} entries that apply {@code policy} when full. Capture only waits for
+     * the listener under {@link FrameQueue.DropPolicy#BLOCK}. Views without pipeline support
+     * (JavaCameraView) still get rendering off their worker thread. Takes effect the next time
+     * the camera starts.
+     */
+    public void enableFramePipeline(int queueDepth, FrameQueue.DropPolicy policy) {
+        if (queueDepth < 1)
+            throw new IllegalArgumentException("Queue depth must be positive: " + queueDepth);
+        mPipelineDepth = queueDepth;
+        mPipelineDropPolicy = policy;
+    }
+
+    /** Back to capture, listener and drawing in series. Takes effect the next time the camera starts. */
+    public void disableFramePipeline() {
+        mPipelineDepth = 0;
+    }
+
+    /**
+     * Counters of the capture-&gt;process and process-&gt;render queues, or null when the
+     * pipeline isn't running.
+     */
+    public FrameQueue.Stats[] getFramePipelineStats() {
+        FramePipeline pipeline = mPipeline;
+        return pipeline != null ? pipeline.getStats() : null;
+    }
+
+    /** Configured depth of each pipeline queue, 0 when frames are processed in series. */
+    protected int getFramePipelineDepth() {
+        return mPipelineDepth;
+    }
+
+    /**
+     * Chooses how processed frames reach the screen: {@link #RENDER_GL} (the default, falling
+     * back to the canvas when EGL can't be set up) or {@link #RENDER_CANVAS}. The GL backend
+     * only logs the FPS meter. Takes effect the next time the camera starts.
+     */
+    public void setRenderBackend(int backend) {
+        mRenderBackend = backend;
+    }
+
+    /**
+     * Backend drawing the current session, or -1 while the camera is stopped or streams the
+     * preview to the surface itself.
+     */
+    public int getActiveRenderBackend() {
+        PreviewRenderer renderer = mRenderer;
+        if (renderer == null)
+            return -1;
+        return renderer instanceof GLPreviewRenderer ? RENDER_GL : RENDER_CANVAS;
+    }
+
+    /**
+     * Mean time per frame spent putting processed frames on screen (staging copy plus drawing)
+     * over the last 100 frames, or -1 before the first report. Also logged by RenderCostMeter.
+     */
+    public float getRenderCostMs() {
+        PreviewRenderer renderer = mRenderer;
+        return renderer != null ? renderer.mCost.getCostMs() : -1;
+    }
+
+    /**
+     * Rotates processed frames clockwise by {@code degrees} (a multiple of 90) and then mirrors
+     * them horizontally if asked, when drawing. Listeners can then work in sensor orientation
+     * instead of rotating every frame on the CPU. Takes effect on the next frame.
+     */
+    public void setPreviewOrientation(int degrees, boolean mirror) {
+        if (degrees % 90 != 0)
+            throw new IllegalArgumentException("Rotation must be a multiple of 90 degrees: " + degrees);
+        mPreviewRotation = ((degrees % 360) + 360) % 360;
+        mPreviewMirror = mirror;
+    }
+
+    int getPreviewRotation() {
+        return mPreviewRotation;
+    }
+
+    boolean isPreviewMirrored() {
+        return mPreviewMirror;
+    }
+
+    /**
+     * True when the subclass has the camera stream the preview straight into this view's
+     * surface. Processed frames are then delivered but not drawn, so annotations have to go
+     * through the overlay layer. Asked each time the camera starts.
+     */
+    protected boolean streamsPreviewToSurface() {
+        return false;
+    }
+
+    /** Whether the current session streams the preview to the surface, see {@link #streamsPreviewToSurface()}. */
+    protected boolean isDirectPreview() {
+        return mDirectPreview;
+    }
+
+    /**
+     * Scale for a frame of {@code frameWidth}x{@code frameHeight} (after rotation) on the
+     * surface: mScale for unrotated frames, as computed by connectCamera(), and a fresh fit
+     * when a quarter turn swaps the frame's sides. 1 when the view doesn't stretch.
+     */
+    float getPreviewScale(int surfaceWidth, int surfaceHeight, int frameWidth, int frameHeight) {
+        if (mScale == 0)
+            return 1;
+        if (mPreviewRotation == 0 || mPreviewRotation == 180)
+            return mScale;
+        return Math.min((float) surfaceWidth / frameWidth, (float) surfaceHeight / frameHeight);
+    }
+
+    /**
+     * Layer that draws the overlays published with {@link #publishOverlay()}, laid out over
+     * this view with the same bounds. Null detaches it.
+     */
+    public void setOverlayView(CameraOverlayView overlayView) {
+        if (overlayView != null)
+            overlayView.attach(this);
+        mOverlayView = overlayView;
+    }
+
+    /**
+     * Empty overlay for the current frame, to be filled with shapes in frame coordinates and
+     * handed to the overlay layer with {@link #publishOverlay()}. Call both from the listener's
+     * onCameraFrame. Without an overlay view the shapes are simply discarded.
+     */
+    public FrameOverlay beginOverlay() {
+        CameraOverlayView overlayView = mOverlayView;
+        FrameOverlay overlay = overlayView != null ? overlayView.back() : mDetachedOverlay;
+        overlay.clear();
+        overlay.setFrameSize(mFrameWidth, mFrameHeight);
+        return overlay;
+    }
+
+    /**
+     * Shows the overlay from {@link #beginOverlay()} until the next one is published. Only the
+     * overlay layer is redrawn: the listener may return the camera frame untouched.
+     */
+    public void publishOverlay() {
+        CameraOverlayView overlayView = mOverlayView;
+        if (overlayView != null)
+            overlayView.publish();
+    }
+
     /**
      *
      * @param listener
@@ -372,6 +538,20 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     // Bitmap must be constructed before surface
     private void onEnterStartedState() {
         Log.d(TAG, "call onEnterStartedState");
+        // The camera owns the surface when it streams the preview there: no renderer may draw on it
+        mDirectPreview = streamsPreviewToSurface();
+        PreviewRenderer renderer = null;
+        if (!mDirectPreview) {
+            if (mRenderBackend == RENDER_GL)
+                renderer = GLPreviewRenderer.create(this);
+            if (renderer == null)
+                renderer = new CanvasPreviewRenderer(this);
+        }
+        mRenderer = renderer;
+        if (mPipelineDepth > 0) {
+            mPipeline = new FramePipeline(this, renderer, mPipelineDepth, mPipelineDropPolicy);
+            mPipeline.start();
+        }
         /* Connect camera */
         if (!connectCamera(getWidth(), getHeight())) {
             AlertDialog ad = new AlertDialog.Builder(getContext()).create();
@@ -389,10 +569,23 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     }
 
     private void onExitStartedState() {
+        // Frames still queued hold camera buffers: recycle them before the camera goes away.
+        // Frames captured meanwhile are delivered in series by submitFrame().
+        FramePipeline pipeline = mPipeline;
+        if (pipeline != null) {
+            pipeline.stop();
+            mPipeline = null;
+        }
         disconnectCamera();
-        if (mCacheBitmap != null) {
-            mCacheBitmap.recycle();
+        mCacheBuffer.release();
+        PreviewRenderer renderer = mRenderer;
+        if (renderer != null) {
+            renderer.release();
+            mRenderer = null;
         }
+        CameraOverlayView overlayView = mOverlayView;
+        if (overlayView != null)
+            overlayView.clear();
     }
 
     /**
@@ -410,45 +603,31 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
             modified = frame.rgba();
         }
 
-        boolean bmpValid = true;
-        if (modified != null) {
-            try {
-                Utils.matToBitmap(modified, mCacheBitmap);
-            } catch(Exception e) {
-                Log.e(TAG, "Mat type: " + modified);
-                Log.e(TAG, "Bitmap type: " + mCacheBitmap.getWidth() + "*" + mCacheBitmap.getHeight());
-                Log.e(TAG, "Utils.matToBitmap() throws an exception: " + e.getMessage());
-                bmpValid = false;
-            }
-        }
+        PreviewRenderer renderer = mRenderer;
+        if (renderer == null)
+            return;
 
-        if (bmpValid && mCacheBitmap != null) {
-            Canvas canvas = getHolder().lockCanvas();
-            if (canvas != null) {
-                canvas.drawColor(0, android.graphics.PorterDuff.Mode.CLEAR);
-                if (BuildConfig.DEBUG)
-                    Log.d(TAG, "mStretch value: " + mScale);
-
-                if (mScale != 0) {
-                    canvas.drawBitmap(mCacheBitmap, new Rect(0,0,mCacheBitmap.getWidth(), mCacheBitmap.getHeight()),
-                         new Rect((int)((canvas.getWidth() - mScale*mCacheBitmap.getWidth()) / 2),
-                         (int)((canvas.getHeight() - mScale*mCacheBitmap.getHeight()) / 2),
-                         (int)((canvas.getWidth() - mScale*mCacheBitmap.getWidth()) / 2 + mScale*mCacheBitmap.getWidth()),
-                         (int)((canvas.getHeight() - mScale*mCacheBitmap.getHeight()) / 2 + mScale*mCacheBitmap.getHeight())), null);
-                } else {
-                     canvas.drawBitmap(mCacheBitmap, new Rect(0,0,mCacheBitmap.getWidth(), mCacheBitmap.getHeight()),
-                         new Rect((canvas.getWidth() - mCacheBitmap.getWidth()) / 2,
-                         (canvas.getHeight() - mCacheBitmap.getHeight()) / 2,
-                         (canvas.getWidth() - mCacheBitmap.getWidth()) / 2 + mCacheBitmap.getWidth(),
-                         (canvas.getHeight() - mCacheBitmap.getHeight()) / 2 + mCacheBitmap.getHeight()), null);
-                }
+        FramePipeline pipeline = mPipeline;
+        if (modified != null && pipeline != null && pipeline.render(modified))
+            return;
 
-                if (mFpsMeter != null) {
-                    mFpsMeter.measure();
-                    mFpsMeter.draw(canvas, 20, 30);
-                }
-                getHolder().unlockCanvasAndPost(canvas);
-            }
+        if (modified == null || renderer.fill(mCacheBuffer, modified))
+            renderer.draw(mCacheBuffer);
+    }
+
+    /**
+     * Hands a frame that may outlive the capture callback to the processing thread of the
+     * frame pipeline. Without a running pipeline the frame is delivered and drawn right away.
+     * Either way the frame is recycled once the listener is done with it.
+     */
+    protected void submitFrame(PipelineFrame frame) {
+        FramePipeline pipeline = mPipeline;
+        if (pipeline != null && pipeline.submit(frame))
+            return;
+        try {
+            deliverAndDrawFrame(frame);
+        } finally {
+            frame.recycle();
         }
     }
 
@@ -470,7 +649,10 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     // NOTE: On Android 4.1.x the function must be called before SurfaceTexture constructor!
     protected void AllocateCache()
     {
-        mCacheBitmap = Bitmap.createBitmap(mFrameWidth, mFrameHeight, Bitmap.Config.ARGB_8888);
+        if (mRenderer instanceof CanvasPreviewRenderer) {
+            mCacheBuffer.release();
+            mCacheBuffer.bitmap = Bitmap.createBitmap(mFrameWidth, mFrameHeight, Bitmap.Config.ARGB_8888);
+        }
     }
 
     public interface ListItemAccessor {
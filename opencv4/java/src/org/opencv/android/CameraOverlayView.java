@@ -0,0 +1,169 @@
+package org.opencv.android;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Transparent layer above a {@link CameraBridgeViewBase} that draws the {@link FrameOverlay}
+ * published by the listener. Lay it out over the camera view with the same bounds and attach
+ * it with {@link CameraBridgeViewBase#setOverlayView}. Frame coordinates are mapped with the
+ * camera view's scale and preview orientation; stroke widths and text stay in screen pixels
+ * and labels stay upright.
+ * <p>
+ * Three overlays rotate between the listener thread (filling), the hand-off slot and the UI
+ * thread (drawing), so neither side waits for the other and a new overlay only invalidates
+ * this layer, never the camera surface.
+ */
+public class CameraOverlayView extends View {
+
+    private final Object mLock = new Object();
+    private FrameOverlay mBack = new FrameOverlay();
+    private FrameOverlay mReady = new FrameOverlay();
+    private FrameOverlay mFront = new FrameOverlay();
+    private boolean mReadyFresh;
+    private CameraBridgeViewBase mCamera;
+
+    private final Paint mStrokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Matrix mMatrix = new Matrix();
+    private final float[] mPoints = new float[4];
+
+    public CameraOverlayView(Context context) {
+        super(context);
+        init();
+    }
+
+    public CameraOverlayView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    private void init() {
+        mStrokePaint.setStyle(Paint.Style.STROKE);
+        mTextPaint.setStyle(Paint.Style.FILL);
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        float density = getResources().getDisplayMetrics().density;
+        setStrokeWidth(2 * density);
+        setTextSize(16 * density);
+    }
+
+    public void setStrokeWidth(float px) {
+        mStrokePaint.setStrokeWidth(px);
+    }
+
+    public void setTextSize(float px) {
+        mTextPaint.setTextSize(px);
+    }
+
+    void attach(CameraBridgeViewBase camera) {
+        mCamera = camera;
+    }
+
+    /** Overlay the listener fills next. Listener thread only. */
+    FrameOverlay back() {
+        return mBack;
+    }
+
+    /** Hands the filled overlay to the UI thread. Listener thread only. */
+    void publish() {
+        synchronized (mLock) {
+            FrameOverlay ready = mReady;
+            mReady = mBack;
+            mBack = ready;
+            mReadyFresh = true;
+        }
+        postInvalidateOnAnimation();
+    }
+
+    /** Removes the annotations, e.g. once the camera stops. */
+    void clear() {
+        synchronized (mLock) {
+            mReady.clear();
+            mReadyFresh = true;
+        }
+        postInvalidateOnAnimation();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        synchronized (mLock) {
+            if (mReadyFresh) {
+                FrameOverlay front = mFront;
+                mFront = mReady;
+                mReady = front;
+                mReadyFresh = false;
+            }
+        }
+        FrameOverlay overlay = mFront;
+        CameraBridgeViewBase camera = mCamera;
+        if (camera == null || overlay.size() == 0 || overlay.getFrameWidth() <= 0)
+            return;
+
+        float scale = updateMatrix(camera, overlay.getFrameWidth(), overlay.getFrameHeight());
+        for (int i = 0; i < overlay.size(); i++) {
+            mStrokePaint.setColor(overlay.color(i));
+            mTextPaint.setColor(overlay.color(i));
+            float x = overlay.coord(i, 0);
+            float y = overlay.coord(i, 1);
+            switch (overlay.kind(i)) {
+            case FrameOverlay.RECT:
+                mPoints[0] = x;
+                mPoints[1] = y;
+                mPoints[2] = x + overlay.coord(i, 2);
+                mPoints[3] = y + overlay.coord(i, 3);
+                mMatrix.mapPoints(mPoints);
+                float left = Math.min(mPoints[0], mPoints[2]);
+                float top = Math.min(mPoints[1], mPoints[3]);
+                float right = Math.max(mPoints[0], mPoints[2]);
+                canvas.drawRect(left, top, right, Math.max(mPoints[1], mPoints[3]), mStrokePaint);
+                String label = overlay.label(i);
+                if (label != null)
+                    canvas.drawText(label, (left + right) / 2, top - mStrokePaint.getStrokeWidth() * 2, mTextPaint);
+                break;
+            case FrameOverlay.CIRCLE:
+                mPoints[0] = x;
+                mPoints[1] = y;
+                mMatrix.mapPoints(mPoints);
+                canvas.drawCircle(mPoints[0], mPoints[1], overlay.coord(i, 2) * scale, mStrokePaint);
+                break;
+            case FrameOverlay.LABEL:
+                mPoints[0] = x;
+                mPoints[1] = y;
+                mMatrix.mapPoints(mPoints);
+                canvas.drawText(overlay.label(i), mPoints[0], mPoints[1], mTextPaint);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Frame to view transform, the same the preview renderers apply: centre the frame on the
+     * origin, scale, rotate, mirror, move to the centre of the view. When the camera streams
+     * the preview to the surface itself, the rotated frame is stretched over the whole view as
+     * the surface stretches the preview. Returns the (mean) scale.
+     */
+    private float updateMatrix(CameraBridgeViewBase camera, int frameWidth, int frameHeight) {
+        int rotation = camera.getPreviewRotation();
+        int rotatedWidth = PreviewRenderer.rotatedWidth(frameWidth, frameHeight, rotation);
+        int rotatedHeight = PreviewRenderer.rotatedHeight(frameWidth, frameHeight, rotation);
+        float scaleX, scaleY;
+        if (camera.isDirectPreview()) {
+            scaleX = (float) getWidth() / rotatedWidth;
+            scaleY = (float) getHeight() / rotatedHeight;
+        } else {
+            scaleX = scaleY = camera.getPreviewScale(getWidth(), getHeight(), rotatedWidth, rotatedHeight);
+        }
+        mMatrix.reset();
+        mMatrix.postTranslate(-frameWidth / 2f, -frameHeight / 2f);
+        mMatrix.postRotate(rotation);
+        if (camera.isPreviewMirrored())
+            mMatrix.postScale(-1, 1);
+        mMatrix.postScale(scaleX, scaleY);
+        mMatrix.postTranslate(getWidth() / 2f, getHeight() / 2f);
+        return (scaleX + scaleY) / 2;
+    }
+}
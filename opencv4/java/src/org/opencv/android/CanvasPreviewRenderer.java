@@ -0,0 +1,86 @@
+package org.opencv.android;
+
+import org.opencv.BuildConfig;
+import org.opencv.core.Mat;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.util.Log;
+import android.view.SurfaceHolder;
+
+/** CPU backend: Utils.matToBitmap into the buffer, then drawBitmap on the locked canvas. */
+class CanvasPreviewRenderer extends PreviewRenderer {
+    private static final String TAG = "CanvasPreviewRenderer";
+
+    private final Rect mSrcRect = new Rect();
+    private final Rect mDstRect = new Rect();
+
+    CanvasPreviewRenderer(CameraBridgeViewBase view) {
+        super(view, new RenderCostMeter("canvas"));
+    }
+
+    @Override
+    boolean fill(Buffer buffer, Mat frame) {
+        long start = System.nanoTime();
+        if (buffer.bitmap == null || buffer.bitmap.getWidth() != frame.cols() || buffer.bitmap.getHeight() != frame.rows()) {
+            if (buffer.bitmap != null)
+                buffer.bitmap.recycle();
+            buffer.bitmap = Bitmap.createBitmap(frame.cols(), frame.rows(), Bitmap.Config.ARGB_8888);
+        }
+        try {
+            Utils.matToBitmap(frame, buffer.bitmap);
+        } catch(Exception e) {
+            Log.e(TAG, "Mat type: " + frame);
+            Log.e(TAG, "Bitmap type: " + buffer.bitmap.getWidth() + "*" + buffer.bitmap.getHeight());
+            Log.e(TAG, "Utils.matToBitmap() throws an exception: " + e.getMessage());
+            return false;
+        }
+        buffer.width = frame.cols();
+        buffer.height = frame.rows();
+        buffer.filled = true;
+        mCost.onFill(System.nanoTime() - start);
+        return true;
+    }
+
+    @Override
+    void draw(Buffer buffer) {
+        Bitmap bitmap = buffer.bitmap;
+        if (bitmap == null)
+            return;
+        long start = System.nanoTime();
+        SurfaceHolder holder = mView.getHolder();
+        Canvas canvas = holder.lockCanvas();
+        if (canvas == null)
+            return;
+        canvas.drawColor(0, android.graphics.PorterDuff.Mode.CLEAR);
+        if (BuildConfig.DEBUG)
+            Log.d(TAG, "mStretch value: " + mView.mScale);
+
+        int rotation = mView.getPreviewRotation();
+        boolean mirror = mView.isPreviewMirrored();
+        int w = bitmap.getWidth();
+        int h = bitmap.getHeight();
+        float scale = mView.getPreviewScale(canvas.getWidth(), canvas.getHeight(),
+                rotatedWidth(w, h, rotation), rotatedHeight(w, h, rotation));
+
+        // The bitmap is drawn centred on the origin, then rotated, mirrored and moved to the centre
+        canvas.save();
+        canvas.translate(canvas.getWidth() / 2f, canvas.getHeight() / 2f);
+        if (mirror)
+            canvas.scale(-1, 1);
+        if (rotation != 0)
+            canvas.rotate(rotation);
+        mSrcRect.set(0, 0, w, h);
+        mDstRect.set((int) (-scale * w / 2), (int) (-scale * h / 2), (int) (scale * w / 2), (int) (scale * h / 2));
+        canvas.drawBitmap(bitmap, mSrcRect, mDstRect, null);
+        canvas.restore();
+
+        if (mView.mFpsMeter != null) {
+            mView.mFpsMeter.measure();
+            mView.mFpsMeter.draw(canvas, 20, 30);
+        }
+        holder.unlockCanvasAndPost(canvas);
+        mCost.onDraw(System.nanoTime() - start);
+    }
+}
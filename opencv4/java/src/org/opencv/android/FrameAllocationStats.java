@@ -0,0 +1,74 @@
+package org.opencv.android;
+
+import android.os.Build;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Per-minute allocation report for a camera view: frames delivered, native Mats the frame
+ * path created, native heap growth, and GC count and pause time from the ART runtime
+ * statistics. Lets the pooled frame path be compared against per-frame allocation on the
+ * same device. Updated from the camera thread only.
+ */
+class FrameAllocationStats {
+    private static final String TAG = "FrameAllocationStats";
+    static final long REPORT_INTERVAL_MS = 60 * 1000;
+
+    private final String mName;
+    private long mWindowStart;
+    private long mFrames;
+    private long mMatAllocations;
+    private long mNativeHeapStart;
+    private long mGcCountStart;
+    private long mGcTimeStart;
+
+    FrameAllocationStats(String name) {
+        mName = name;
+        reset();
+    }
+
+    void reset() {
+        mWindowStart = SystemClock.elapsedRealtime();
+        mFrames = 0;
+        mMatAllocations = 0;
+        mNativeHeapStart = Debug.getNativeHeapAllocatedSize();
+        mGcCountStart = runtimeStat("art.gc.gc-count");
+        mGcTimeStart = runtimeStat("art.gc.gc-time");
+    }
+
+    /** Native Mats (headers or buffers) created for a frame. */
+    void onMatsAllocated(int count) {
+        mMatAllocations += count;
+    }
+
+    void onFrame() {
+        mFrames++;
+        long now = SystemClock.elapsedRealtime();
+        if (now - mWindowStart < REPORT_INTERVAL_MS)
+            return;
+
+        double minutes = (now - mWindowStart) / 60000.0;
+        Log.i(TAG, String.format(Locale.US,
+                "%s: %.0f frames/min, %.0f native Mats/min, native heap %+d KB, %.1f GCs/min, %.0f ms GC pause/min",
+                mName, mFrames / minutes, mMatAllocations / minutes,
+                (Debug.getNativeHeapAllocatedSize() - mNativeHeapStart) / 1024,
+                (runtimeStat("art.gc.gc-count") - mGcCountStart) / minutes,
+                (runtimeStat("art.gc.gc-time") - mGcTimeStart) / minutes));
+        reset();
+    }
+
+    /** ART runtime statistic (API 23+), or 0 when it isn't available. */
+    private static long runtimeStat(String name) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M)
+            return 0;
+        String value = Debug.getRuntimeStat(name);
+        try {
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
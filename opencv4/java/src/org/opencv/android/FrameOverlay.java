@@ -0,0 +1,103 @@
+package org.opencv.android;
+
+import java.util.Arrays;
+
+/**
+ * Annotations for one camera frame: rectangles, circles and labels in frame pixels, as the
+ * listener received the frame (before {@link CameraBridgeViewBase#setPreviewOrientation}).
+ * A {@link CameraOverlayView} maps them to the screen and draws them on its own layer, so the
+ * frame Mat itself is never drawn on. Shapes live in primitive arrays that only grow: once
+ * warmed up, filling an overlay allocates nothing. Filled by one thread at a time.
+ */
+public class FrameOverlay {
+    static final byte RECT = 0;
+    static final byte CIRCLE = 1;
+    static final byte LABEL = 2;
+
+    private static final int COORDS = 4;
+
+    private int mSize;
+    private byte[] mKinds = new byte[16];
+    private float[] mCoords = new float[16 * COORDS];
+    private int[] mColors = new int[16];
+    private String[] mLabels = new String[16];
+    private int mFrameWidth;
+    private int mFrameHeight;
+
+    public void clear() {
+        Arrays.fill(mLabels, 0, mSize, null);
+        mSize = 0;
+    }
+
+    /** Size of the frame the coordinates refer to; set by {@link CameraBridgeViewBase#beginOverlay()}. */
+    public void setFrameSize(int width, int height) {
+        mFrameWidth = width;
+        mFrameHeight = height;
+    }
+
+    /** Rectangle outline with an optional label centred above it on screen. */
+    public void addRect(float x, float y, float width, float height, int color, String label) {
+        add(RECT, x, y, width, height, color, label);
+    }
+
+    public void addRect(float x, float y, float width, float height, int color) {
+        add(RECT, x, y, width, height, color, null);
+    }
+
+    public void addCircle(float centerX, float centerY, float radius, int color) {
+        add(CIRCLE, centerX, centerY, radius, 0, color, null);
+    }
+
+    /** Upright text centred horizontally on ({@code x}, {@code y}), which is its baseline. */
+    public void addLabel(String text, float x, float y, int color) {
+        add(LABEL, x, y, 0, 0, color, text);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    int getFrameWidth() {
+        return mFrameWidth;
+    }
+
+    int getFrameHeight() {
+        return mFrameHeight;
+    }
+
+    byte kind(int i) {
+        return mKinds[i];
+    }
+
+    /** Coordinate {@code k} (0-3) of shape {@code i}: x, y, then width and height or radius. */
+    float coord(int i, int k) {
+        return mCoords[i * COORDS + k];
+    }
+
+    int color(int i) {
+        return mColors[i];
+    }
+
+    String label(int i) {
+        return mLabels[i];
+    }
+
+    private void add(byte kind, float a, float b, float c, float d, int color, String label) {
+        if (mSize == mKinds.length) {
+            int capacity = mSize * 2;
+            mKinds = Arrays.copyOf(mKinds, capacity);
+            mCoords = Arrays.copyOf(mCoords, capacity * COORDS);
+            mColors = Arrays.copyOf(mColors, capacity);
+            mLabels = Arrays.copyOf(mLabels, capacity);
+        }
+        mKinds[mSize] = kind;
+        int base = mSize * COORDS;
+        mCoords[base] = a;
+        mCoords[base + 1] = b;
+        mCoords[base + 2] = c;
+        mCoords[base + 3] = d;
+        mColors[mSize] = color;
+        mLabels[mSize] = label;
+        mSize++;
+    }
+}
@@ -0,0 +1,159 @@
+package org.opencv.android;
+
+import java.util.ArrayDeque;
+
+import org.opencv.core.Mat;
+
+import android.util.Log;
+
+/**
+ * Capture, processing and rendering of a {@link CameraBridgeViewBase} on separate threads.
+ * Captured frames wait in a bounded queue for the processing thread, which runs the listener
+ * and copies its result into a pooled staging buffer of the {@link PreviewRenderer}; buffers
+ * wait in a second queue for the render thread, which draws them on the surface. A slow
+ * listener or a surface waiting for vsync no longer holds up the camera, and on multi-core
+ * devices the three stages overlap.
+ */
+class FramePipeline {
+    private static final String TAG = "FramePipeline";
+
+    private final CameraBridgeViewBase mView;
+    private final PreviewRenderer mRenderer;
+    private final FrameQueue<CameraBridgeViewBase.PipelineFrame> mCaptured;
+    private final FrameQueue<PreviewRenderer.Buffer> mProcessed;
+    /** Staging buffers not currently queued or being drawn. */
+    private final ArrayDeque<PreviewRenderer.Buffer> mFreeBuffers = new ArrayDeque<PreviewRenderer.Buffer>();
+    private Thread mProcessThread;
+    private Thread mRenderThread;
+
+    FramePipeline(CameraBridgeViewBase view, PreviewRenderer renderer, int queueDepth, FrameQueue.DropPolicy policy) {
+        mView = view;
+        mRenderer = renderer;
+        mCaptured = new FrameQueue<CameraBridgeViewBase.PipelineFrame>("capture->process", queueDepth, policy,
+                new FrameQueue.Recycler<CameraBridgeViewBase.PipelineFrame>() {
+                    @Override
+                    public void recycle(CameraBridgeViewBase.PipelineFrame frame) {
+                        frame.recycle();
+                    }
+                });
+        mProcessed = new FrameQueue<PreviewRenderer.Buffer>("process->render", queueDepth, policy,
+                new FrameQueue.Recycler<PreviewRenderer.Buffer>() {
+                    @Override
+                    public void recycle(PreviewRenderer.Buffer buffer) {
+                        recycleBuffer(buffer);
+                    }
+                });
+    }
+
+    void start() {
+        mProcessThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processLoop();
+            }
+        }, "OpenCVCameraProcess");
+        mRenderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                renderLoop();
+            }
+        }, "OpenCVCameraRender");
+        mProcessThread.start();
+        mRenderThread.start();
+    }
+
+    /**
+     * Finishes the frame being processed and the buffer being drawn, recycles everything still
+     * queued and joins both threads. Frames submitted afterwards are refused.
+     */
+    void stop() {
+        mCaptured.close();
+        join(mProcessThread);
+        mProcessed.close();
+        join(mRenderThread);
+        synchronized (mFreeBuffers) {
+            for (PreviewRenderer.Buffer buffer : mFreeBuffers)
+                buffer.release();
+            mFreeBuffers.clear();
+        }
+    }
+
+    /** Hands a captured frame to the processing thread; false once the pipeline is stopped. */
+    boolean submit(CameraBridgeViewBase.PipelineFrame frame) {
+        return mCaptured.offer(frame);
+    }
+
+    /**
+     * Copies a processed Mat into a pooled staging buffer and queues it for drawing, so the
+     * frame the Mat may belong to can be recycled right away. False once the pipeline is stopped.
+     */
+    boolean render(Mat modified) {
+        PreviewRenderer.Buffer buffer = obtainBuffer();
+        if (!mRenderer.fill(buffer, modified)) {
+            recycleBuffer(buffer);
+            return true;
+        }
+        if (mProcessed.offer(buffer))
+            return true;
+        recycleBuffer(buffer);
+        return false;
+    }
+
+    FrameQueue.Stats[] getStats() {
+        return new FrameQueue.Stats[] { mCaptured.getStats(), mProcessed.getStats() };
+    }
+
+    private void processLoop() {
+        try {
+            CameraBridgeViewBase.PipelineFrame frame;
+            while ((frame = mCaptured.take()) != null) {
+                try {
+                    mView.deliverAndDrawFrame(frame);
+                } finally {
+                    frame.recycle();
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.e(TAG, "processing interrupted", e);
+        }
+    }
+
+    private void renderLoop() {
+        try {
+            PreviewRenderer.Buffer buffer;
+            while ((buffer = mProcessed.take()) != null) {
+                mRenderer.draw(buffer);
+                recycleBuffer(buffer);
+            }
+        } catch (InterruptedException e) {
+            Log.e(TAG, "rendering interrupted", e);
+        }
+    }
+
+    /** A free staging buffer; the renderer resizes it when the frame size changes. */
+    private PreviewRenderer.Buffer obtainBuffer() {
+        synchronized (mFreeBuffers) {
+            PreviewRenderer.Buffer buffer = mFreeBuffers.pollFirst();
+            if (buffer != null)
+                return buffer;
+        }
+        return new PreviewRenderer.Buffer();
+    }
+
+    private void recycleBuffer(PreviewRenderer.Buffer buffer) {
+        synchronized (mFreeBuffers) {
+            mFreeBuffers.addLast(buffer);
+        }
+    }
+
+    private static void join(Thread thread) {
+        if (thread == null)
+            return;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Log.e(TAG, "stop", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.opencv.android;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Bounded hand-off queue between two stages of the camera frame pipeline. When the queue is
+ * full the {@link DropPolicy} decides whether the oldest queued item, the incoming one or the
+ * producer gives way. Items dropped or left over at {@link #close()} are handed to the
+ * {@link Recycler}, so buffers owned by the items (camera images, bitmaps) are never leaked.
+ */
+public class FrameQueue<T> {
+
+    public enum DropPolicy {
+        /** Discard the oldest queued item: the consumer always sees the latest frames. */
+        DROP_OLDEST,
+        /** Discard the incoming item: queued frames are kept, newer ones are skipped. */
+        DROP_NEWEST,
+        /** Make the producer wait for room: no frame is lost, the upstream stage slows down. */
+        BLOCK
+    }
+
+    public interface Recycler<T> {
+        void recycle(T item);
+    }
+
+    /** Snapshot of the queue counters since it was created. */
+    public static class Stats {
+        public final String name;
+        public final int capacity;
+        public final int depth;
+        public final int maxDepth;
+        public final long offered;
+        public final long dropped;
+        /** Average depth seen by arriving items. */
+        public final double meanDepth;
+        /** Total time producers spent waiting for room under {@link DropPolicy#BLOCK}. */
+        public final long blockedMs;
+
+        Stats(String name, int capacity, int depth, int maxDepth, long offered, long dropped,
+              double meanDepth, long blockedMs) {
+            this.name = name;
+            this.capacity = capacity;
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.offered = offered;
+            this.dropped = dropped;
+            this.meanDepth = meanDepth;
+            this.blockedMs = blockedMs;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": depth " + depth + "/" + capacity + " (max " + maxDepth
+                    + ", mean " + String.format(Locale.US, "%.2f", meanDepth) + "), "
+                    + dropped + "/" + offered + " dropped, blocked " + blockedMs + " ms";
+        }
+    }
+
+    private final String mName;
+    private final int mCapacity;
+    private final DropPolicy mPolicy;
+    private final Recycler<T> mRecycler;
+    private final ArrayDeque<T> mItems;
+    private boolean mClosed;
+
+    private int mMaxDepth;
+    private long mOffered;
+    private long mDropped;
+    private long mDepthSum;
+    private long mBlockedNanos;
+
+    public FrameQueue(String name, int capacity, DropPolicy policy, Recycler<T> recycler) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Queue capacity must be positive: " + capacity);
+        mName = name;
+        mCapacity = capacity;
+        mPolicy = policy;
+        mRecycler = recycler;
+        mItems = new ArrayDeque<T>(capacity);
+    }
+
+    /**
+     * Queues {@code item} for the consumer, applying the drop policy when the queue is full.
+     * Returns false when the queue is closed (or the producer was interrupted while blocked):
+     * the caller then keeps ownership of the item.
+     */
+    public boolean offer(T item) {
+        T dropped = null;
+        synchronized (this) {
+            if (mClosed)
+                return false;
+            mOffered++;
+            mDepthSum += mItems.size();
+            if (mItems.size() >= mCapacity) {
+                switch (mPolicy) {
+                case DROP_OLDEST:
+                    dropped = mItems.pollFirst();
+                    mDropped++;
+                    break;
+                case DROP_NEWEST:
+                    mDropped++;
+                    dropped = item;
+                    item = null;
+                    break;
+                case BLOCK:
+                    long start = System.nanoTime();
+                    try {
+                        while (!mClosed && mItems.size() >= mCapacity)
+                            wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    } finally {
+                        mBlockedNanos += System.nanoTime() - start;
+                    }
+                    if (mClosed)
+                        return false;
+                    break;
+                }
+            }
+            if (item != null) {
+                mItems.addLast(item);
+                mMaxDepth = Math.max(mMaxDepth, mItems.size());
+                notifyAll();
+            }
+        }
+        if (dropped != null)
+            mRecycler.recycle(dropped);
+        return true;
+    }
+
+    /** Oldest queued item, waiting for one if needed; null once the queue is closed and empty. */
+    public T take() throws InterruptedException {
+        synchronized (this) {
+            while (mItems.isEmpty() && !mClosed)
+                wait();
+            T item = mItems.pollFirst();
+            if (item != null)
+                notifyAll();
+            return item;
+        }
+    }
+
+    /** Refuses further items and recycles the ones still queued. */
+    public void close() {
+        ArrayDeque<T> leftover;
+        synchronized (this) {
+            mClosed = true;
+            leftover = new ArrayDeque<T>(mItems);
+            mItems.clear();
+            notifyAll();
+        }
+        for (T item : leftover)
+            mRecycler.recycle(item);
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(mName, mCapacity, mItems.size(), mMaxDepth, mOffered, mDropped,
+                mOffered > 0 ? (double) mDepthSum / mOffered : 0, mBlockedNanos / 1000000);
+    }
+}
@@ -0,0 +1,314 @@
+package org.opencv.android;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import android.annotation.TargetApi;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLSurface;
+import android.opengl.GLES20;
+import android.util.Log;
+import android.view.Surface;
+
+/**
+ * GPU backend: the processed frame is copied natively into a direct buffer, uploaded into a
+ * GL texture and drawn as a quad whose vertices do the scaling and whose texture coordinates
+ * do the rotation and mirroring. Nothing goes through a Bitmap or the Java heap.
+ * <p>
+ * The EGL context is made current only while a frame is drawn, so the drawing thread may
+ * change between camera sessions (frame pipeline on or off) and {@link #release()} may run on
+ * the UI thread. Once EGL owns the surface the canvas can't lock it: the backend is chosen
+ * when the camera starts, and FPS text is only logged.
+ */
+@TargetApi(17)
+class GLPreviewRenderer extends PreviewRenderer {
+    private static final String TAG = "GLPreviewRenderer";
+
+    private static final String VERTEX_SHADER = ""
+            + "attribute vec2 vPosition;\n"
+            + "attribute vec2 vTexCoord;\n" + "varying vec2 texCoord;\n"
+            + "void main() {\n" + "  texCoord = vTexCoord;\n"
+            + "  gl_Position = vec4 ( vPosition.x, vPosition.y, 0.0, 1.0 );\n"
+            + "}";
+
+    private static final String FRAGMENT_SHADER = ""
+            + "precision mediump float;\n"
+            + "uniform sampler2D sTexture;\n"
+            + "varying vec2 texCoord;\n"
+            + "void main() {\n"
+            + "  gl_FragColor = texture2D(sTexture,texCoord);\n" + "}";
+
+    /** Image corners (s, t) clockwise from the top-left; row 0 of the Mat is t = 0. */
+    private static final float[][] CORNERS = { {0, 0}, {1, 0}, {1, 1}, {0, 1} };
+    /** Screen corners of the triangle strip, as indices into the clockwise order above. */
+    private static final int[] STRIP = { 3, 0, 2, 1 }; // bottom-left, top-left, bottom-right, top-right
+
+    private EGLDisplay mDisplay = EGL14.EGL_NO_DISPLAY;
+    private EGLContext mContext = EGL14.EGL_NO_CONTEXT;
+    private EGLSurface mSurface = EGL14.EGL_NO_SURFACE;
+
+    private int mProgram;
+    private int mPositionAttr;
+    private int mTexCoordAttr;
+    private final int[] mTexture = {0};
+    private int mTextureWidth;
+    private int mTextureHeight;
+
+    private final float[] mVertices = new float[8];
+    private final float[] mTexCoords = new float[8];
+    private final FloatBuffer mVertexBuffer = allocateFloats(8);
+    private final FloatBuffer mTexCoordBuffer = allocateFloats(8);
+
+    private GLPreviewRenderer(CameraBridgeViewBase view) {
+        super(view, new RenderCostMeter("GL"));
+    }
+
+    /** GL renderer on the view's surface, or null when EGL can't be set up on it. */
+    static GLPreviewRenderer create(CameraBridgeViewBase view) {
+        GLPreviewRenderer renderer = new GLPreviewRenderer(view);
+        if (renderer.initEgl(view.getHolder().getSurface()))
+            return renderer;
+        renderer.release();
+        return null;
+    }
+
+    private boolean initEgl(Surface surface) {
+        mDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        if (mDisplay == EGL14.EGL_NO_DISPLAY || !EGL14.eglInitialize(mDisplay, version, 0, version, 1)) {
+            Log.e(TAG, "eglInitialize failed");
+            mDisplay = EGL14.EGL_NO_DISPLAY;
+            return false;
+        }
+        int[] configAttribs = {
+                EGL14.EGL_RED_SIZE, 8, EGL14.EGL_GREEN_SIZE, 8, EGL14.EGL_BLUE_SIZE, 8, EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_WINDOW_BIT,
+                EGL14.EGL_NONE };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(mDisplay, configAttribs, 0, configs, 0, 1, numConfigs, 0) || numConfigs[0] < 1) {
+            Log.e(TAG, "eglChooseConfig failed");
+            return false;
+        }
+        int[] contextAttribs = { EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE };
+        mContext = EGL14.eglCreateContext(mDisplay, configs[0], EGL14.EGL_NO_CONTEXT, contextAttribs, 0);
+        if (mContext == null || mContext == EGL14.EGL_NO_CONTEXT) {
+            Log.e(TAG, "eglCreateContext failed: " + EGL14.eglGetError());
+            mContext = EGL14.EGL_NO_CONTEXT;
+            return false;
+        }
+        int[] surfaceAttribs = { EGL14.EGL_NONE };
+        mSurface = EGL14.eglCreateWindowSurface(mDisplay, configs[0], surface, surfaceAttribs, 0);
+        if (mSurface == null || mSurface == EGL14.EGL_NO_SURFACE) {
+            Log.e(TAG, "eglCreateWindowSurface failed: " + EGL14.eglGetError());
+            mSurface = EGL14.EGL_NO_SURFACE;
+            return false;
+        }
+        if (!makeCurrent())
+            return false;
+        boolean ok = initGl();
+        EGL14.eglMakeCurrent(mDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        return ok;
+    }
+
+    private boolean initGl() {
+        mProgram = loadProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        if (mProgram == 0)
+            return false;
+        mPositionAttr = GLES20.glGetAttribLocation(mProgram, "vPosition");
+        mTexCoordAttr = GLES20.glGetAttribLocation(mProgram, "vTexCoord");
+
+        GLES20.glGenTextures(1, mTexture, 0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTexture[0]);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 4);
+        GLES20.glClearColor(0, 0, 0, 1);
+        return true;
+    }
+
+    @Override
+    boolean fill(Buffer buffer, Mat frame) {
+        long start = System.nanoTime();
+        int w = frame.cols();
+        int h = frame.rows();
+        if (buffer.mat == null || buffer.width != w || buffer.height != h) {
+            if (buffer.mat != null)
+                buffer.mat.release();
+            buffer.data = ByteBuffer.allocateDirect(w * h * 4).order(ByteOrder.nativeOrder());
+            buffer.mat = new Mat(h, w, CvType.CV_8UC4, buffer.data);
+            buffer.width = w;
+            buffer.height = h;
+        }
+        // The destination already has the right size and type, so these write into the buffer
+        int type = frame.type();
+        if (type == CvType.CV_8UC4) {
+            frame.copyTo(buffer.mat);
+        } else if (type == CvType.CV_8UC3) {
+            Imgproc.cvtColor(frame, buffer.mat, Imgproc.COLOR_RGB2RGBA);
+        } else if (type == CvType.CV_8UC1) {
+            Imgproc.cvtColor(frame, buffer.mat, Imgproc.COLOR_GRAY2RGBA);
+        } else {
+            Log.e(TAG, "Unsupported Mat type: " + frame);
+            return false;
+        }
+        buffer.filled = true;
+        mCost.onFill(System.nanoTime() - start);
+        return true;
+    }
+
+    @Override
+    void draw(Buffer buffer) {
+        if (!buffer.filled)
+            return;
+        long start = System.nanoTime();
+        if (!makeCurrent())
+            return;
+        try {
+            int w = buffer.width;
+            int h = buffer.height;
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTexture[0]);
+            buffer.data.position(0);
+            if (mTextureWidth != w || mTextureHeight != h) {
+                GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, w, h, 0,
+                        GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, buffer.data);
+                mTextureWidth = w;
+                mTextureHeight = h;
+            } else {
+                GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, w, h,
+                        GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, buffer.data);
+            }
+
+            int surfaceWidth = mView.getWidth();
+            int surfaceHeight = mView.getHeight();
+            updateQuad(w, h, surfaceWidth, surfaceHeight);
+
+            GLES20.glViewport(0, 0, surfaceWidth, surfaceHeight);
+            GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+            GLES20.glUseProgram(mProgram);
+            GLES20.glVertexAttribPointer(mPositionAttr, 2, GLES20.GL_FLOAT, false, 0, mVertexBuffer);
+            GLES20.glVertexAttribPointer(mTexCoordAttr, 2, GLES20.GL_FLOAT, false, 0, mTexCoordBuffer);
+            GLES20.glEnableVertexAttribArray(mPositionAttr);
+            GLES20.glEnableVertexAttribArray(mTexCoordAttr);
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+            GLES20.glUniform1i(GLES20.glGetUniformLocation(mProgram, "sTexture"), 0);
+            GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+
+            if (!EGL14.eglSwapBuffers(mDisplay, mSurface))
+                Log.e(TAG, "eglSwapBuffers failed: " + EGL14.eglGetError());
+        } finally {
+            EGL14.eglMakeCurrent(mDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        }
+        if (mView.mFpsMeter != null)
+            mView.mFpsMeter.measure();
+        mCost.onDraw(System.nanoTime() - start);
+    }
+
+    /** Quad centred on the surface, scaled like the canvas path, with rotated texture corners. */
+    private void updateQuad(int w, int h, int surfaceWidth, int surfaceHeight) {
+        int rotation = mView.getPreviewRotation();
+        boolean mirror = mView.isPreviewMirrored();
+        int rw = rotatedWidth(w, h, rotation);
+        int rh = rotatedHeight(w, h, rotation);
+        float scale = mView.getPreviewScale(surfaceWidth, surfaceHeight, rw, rh);
+        float x = scale * rw / surfaceWidth;
+        float y = scale * rh / surfaceHeight;
+
+        int quarterTurns = rotation / 90;
+        for (int i = 0; i < 4; i++) {
+            int screenCorner = STRIP[i];
+            mVertices[2 * i] = screenCorner == 0 || screenCorner == 3 ? -x : x;
+            mVertices[2 * i + 1] = screenCorner < 2 ? y : -y;
+            // Mirroring swaps the left and right screen corners
+            int shown = mirror ? screenCorner ^ 1 : screenCorner;
+            float[] corner = CORNERS[(shown - quarterTurns + 4) % 4];
+            mTexCoords[2 * i] = corner[0];
+            mTexCoords[2 * i + 1] = corner[1];
+        }
+        mVertexBuffer.put(mVertices).position(0);
+        mTexCoordBuffer.put(mTexCoords).position(0);
+    }
+
+    @Override
+    void release() {
+        if (mDisplay == EGL14.EGL_NO_DISPLAY)
+            return;
+        if (mSurface != EGL14.EGL_NO_SURFACE && mContext != EGL14.EGL_NO_CONTEXT && makeCurrent()) {
+            if (mTexture[0] != 0)
+                GLES20.glDeleteTextures(1, mTexture, 0);
+            if (mProgram != 0)
+                GLES20.glDeleteProgram(mProgram);
+            EGL14.eglMakeCurrent(mDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        }
+        mTexture[0] = 0;
+        mProgram = 0;
+        if (mSurface != EGL14.EGL_NO_SURFACE)
+            EGL14.eglDestroySurface(mDisplay, mSurface);
+        if (mContext != EGL14.EGL_NO_CONTEXT)
+            EGL14.eglDestroyContext(mDisplay, mContext);
+        mSurface = EGL14.EGL_NO_SURFACE;
+        mContext = EGL14.EGL_NO_CONTEXT;
+        mDisplay = EGL14.EGL_NO_DISPLAY;
+    }
+
+    private boolean makeCurrent() {
+        if (EGL14.eglMakeCurrent(mDisplay, mSurface, mSurface, mContext))
+            return true;
+        Log.e(TAG, "eglMakeCurrent failed: " + EGL14.eglGetError());
+        return false;
+    }
+
+    private static FloatBuffer allocateFloats(int count) {
+        return ByteBuffer.allocateDirect(count * Float.SIZE / Byte.SIZE).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    private static int loadProgram(String vss, String fss) {
+        int vshader = compileShader(GLES20.GL_VERTEX_SHADER, vss);
+        if (vshader == 0)
+            return 0;
+        int fshader = compileShader(GLES20.GL_FRAGMENT_SHADER, fss);
+        if (fshader == 0) {
+            GLES20.glDeleteShader(vshader);
+            return 0;
+        }
+        int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vshader);
+        GLES20.glAttachShader(program, fshader);
+        GLES20.glLinkProgram(program);
+        GLES20.glDeleteShader(vshader);
+        GLES20.glDeleteShader(fshader);
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.e(TAG, "Could not link shader program: " + GLES20.glGetProgramInfoLog(program));
+            GLES20.glDeleteProgram(program);
+            return 0;
+        }
+        return program;
+    }
+
+    private static int compileShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.e(TAG, "Could not compile shader: " + GLES20.glGetShaderInfoLog(shader));
+            GLES20.glDeleteShader(shader);
+            return 0;
+        }
+        return shader;
+    }
+}
@@ -1,6 +1,6 @@
 package org.opencv.android;
 
-import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.List;
 
@@ -20,9 +20,12 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Display;
 import android.view.Surface;
+import android.view.SurfaceHolder;
 import android.view.ViewGroup.LayoutParams;
 
+import org.opencv.core.Core;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Size;
@@ -42,6 +45,11 @@ import org.opencv.imgproc.Imgproc;
 public class JavaCamera2View extends CameraBridgeViewBase {
 
     private static final String LOGTAG = "JavaCamera2View";
+    /**
+     * Images the ImageReader may hold at once when frames are processed in series; the frame
+     * pipeline adds one per queued frame.
+     */
+    private static final int MAX_IMAGES = 2;
 
     protected ImageReader mImageReader;
     protected int mPreviewFormat = ImageFormat.YUV_420_888;
@@ -52,10 +60,23 @@ public class JavaCamera2View extends CameraBridgeViewBase {
     protected CaptureRequest.Builder mPreviewRequestBuilder;
     protected String mCameraID;
     protected android.util.Size mPreviewSize = new android.util.Size(-1, -1);
+    /** Size of the stream the camera sends straight to the surface in dual-stream mode. */
+    protected android.util.Size mDisplaySize = new android.util.Size(-1, -1);
+
+    // Requested bound of the analysis stream, 0 when a single stream is processed and drawn
+    private volatile int mAnalysisMaxWidth;
+    private volatile int mAnalysisMaxHeight;
+    private boolean mFixedSurfaceSize;
 
     private HandlerThread mBackgroundThread;
     protected Handler mBackgroundHandler;
 
+    // Frame containers and their conversion buffers not currently attached to an image. Taken
+    // on the camera thread, given back by whichever thread finished with the frame.
+    private final ArrayDeque<JavaCamera2Frame> mFramePool = new ArrayDeque<JavaCamera2Frame>();
+    private volatile boolean mFramePoolEnabled = true;
+    private volatile FrameAllocationStats mAllocationStats;
+
     public JavaCamera2View(Context context, int cameraId) {
         super(context, cameraId);
     }
@@ -64,6 +85,53 @@ public class JavaCamera2View extends CameraBridgeViewBase {
         super(context, attrs);
     }
 
+    /**
+     * Reuses frame containers and conversion buffers across frames (the default). Disabling it
+     * allocates them per frame, as before pooling, for comparison with
+     * {@link #enableAllocationStats()}. Takes effect on the next frame.
+     */
+    public void setFramePoolEnabled(boolean enabled) {
+        mFramePoolEnabled = enabled;
+    }
+
+    /** Logs frames, native Mat allocations, native heap growth and GC activity once a minute. */
+    public void enableAllocationStats() {
+        if (mAllocationStats == null)
+            mAllocationStats = new FrameAllocationStats(LOGTAG);
+    }
+
+    public void disableAllocationStats() {
+        mAllocationStats = null;
+    }
+
+    /**
+     * Dual-stream mode. The capture session gets two outputs: a YUV ImageReader of at most
+     * {@code maxWidth}x{@code maxHeight} (e.g. 640x480), preferably with the aspect ratio of the
+     * preview, feeds the listener, while a full-resolution preview goes from the camera straight
+     * to this view's surface. Detection cost follows the small stream's pixel count and the
+     * preview keeps its quality. Frames returned by the listener are not drawn, so annotate them
+     * through {@link #beginOverlay()} and a {@link CameraOverlayView}; the preview orientation
+     * is set to the one the camera applies to the surface. Takes effect the next time the
+     * camera starts.
+     */
+    public void setAnalysisStreamSize(int maxWidth, int maxHeight) {
+        if (maxWidth <= 0 || maxHeight <= 0)
+            throw new IllegalArgumentException("Invalid analysis stream size: " + maxWidth + "x" + maxHeight);
+        mAnalysisMaxWidth = maxWidth;
+        mAnalysisMaxHeight = maxHeight;
+    }
+
+    /** Back to a single stream that is processed and drawn. Takes effect the next time the camera starts. */
+    public void disableAnalysisStream() {
+        mAnalysisMaxWidth = 0;
+        mAnalysisMaxHeight = 0;
+    }
+
+    @Override
+    protected boolean streamsPreviewToSurface() {
+        return mAnalysisMaxWidth > 0;
+    }
+
     private void startBackgroundThread() {
         Log.i(LOGTAG, "startBackgroundThread");
         stopBackgroundThread();
@@ -200,11 +268,17 @@ public class JavaCamera2View extends CameraBridgeViewBase {
                 return;
             }
 
-            mImageReader = ImageReader.newInstance(w, h, mPreviewFormat, 2);
+            mImageReader = ImageReader.newInstance(w, h, mPreviewFormat, MAX_IMAGES + getFramePipelineDepth());
             mImageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
                 @Override
                 public void onImageAvailable(ImageReader reader) {
-                    Image image = reader.acquireLatestImage();
+                    Image image;
+                    try {
+                        image = reader.acquireLatestImage();
+                    } catch (IllegalStateException e) {
+                        // Every image is still queued in the pipeline: skip this one
+                        return;
+                    }
                     if (image == null)
                         return;
 
@@ -213,10 +287,10 @@ public class JavaCamera2View extends CameraBridgeViewBase {
                     assert (planes.length == 3);
                     assert (image.getFormat() == mPreviewFormat);
 
-                    JavaCamera2Frame tempFrame = new JavaCamera2Frame(image);
-                    deliverAndDrawFrame(tempFrame);
-                    tempFrame.release();
-                    image.close();
+                    FrameAllocationStats stats = mAllocationStats;
+                    JavaCamera2Frame frame = obtainFrame(stats);
+                    frame.attach(image, stats);
+                    submitFrame(frame);
                 }
             }, mBackgroundHandler);
             Surface surface = mImageReader.getSurface();
@@ -224,8 +298,15 @@ public class JavaCamera2View extends CameraBridgeViewBase {
             mPreviewRequestBuilder = mCameraDevice.createCaptureRequest(mRequestTemplate);
             mPreviewRequestBuilder.addTarget(surface);
 
-            mCameraDevice.createCaptureSession(Arrays.asList(surface),
-                                               allocateSessionStateCallback(), null);
+            List<Surface> outputs;
+            if (isDirectPreview()) {
+                Surface display = getHolder().getSurface();
+                mPreviewRequestBuilder.addTarget(display);
+                outputs = Arrays.asList(surface, display);
+            } else {
+                outputs = Arrays.asList(surface);
+            }
+            mCameraDevice.createCaptureSession(outputs, allocateSessionStateCallback(), null);
         } catch (CameraAccessException e) {
             Log.e(LOGTAG, "createCameraPreviewSession", e);
         }
@@ -250,10 +331,44 @@ public class JavaCamera2View extends CameraBridgeViewBase {
                 mImageReader.close();
                 mImageReader = null;
             }
+            // The camera thread has been joined: nothing is using the pooled frames any more
+            releaseFramePool();
         }
         Log.i(LOGTAG, "camera closed!");
     }
 
+    /** A free pooled container, or a fresh one when the pool is empty or disabled. */
+    private JavaCamera2Frame obtainFrame(FrameAllocationStats stats) {
+        if (mFramePoolEnabled) {
+            synchronized (mFramePool) {
+                JavaCamera2Frame frame = mFramePool.pollFirst();
+                if (frame != null)
+                    return frame;
+            }
+        }
+        if (stats != null)
+            stats.onMatsAllocated(JavaCamera2Frame.OWNED_MATS);
+        return new JavaCamera2Frame();
+    }
+
+    private void recycleFrame(JavaCamera2Frame frame) {
+        if (!mFramePoolEnabled) {
+            frame.release();
+            return;
+        }
+        synchronized (mFramePool) {
+            mFramePool.addLast(frame);
+        }
+    }
+
+    private void releaseFramePool() {
+        synchronized (mFramePool) {
+            for (JavaCamera2Frame frame : mFramePool)
+                frame.release();
+            mFramePool.clear();
+        }
+    }
+
     public static class JavaCameraSizeAccessor implements ListItemAccessor {
         @Override
         public int getWidth(Object obj) {
@@ -299,13 +414,116 @@ public class JavaCamera2View extends CameraBridgeViewBase {
         return false;
     }
 
+    /**
+     * Dual-stream sizes: the largest preview size that fits the view once rotated by the camera,
+     * then the largest analysis size within the requested bound, preferring the preview's
+     * aspect ratio so both streams cover the same field of view. Also sets the preview
+     * orientation from the sensor and the display, as the camera applies it to the surface.
+     */
+    boolean calcDualStreamSizes(final int width, final int height) {
+        Log.i(LOGTAG, "calcDualStreamSizes: " + width + "x" + height);
+        if (mCameraID == null) {
+            Log.e(LOGTAG, "Camera isn't initialized!");
+            return false;
+        }
+        CameraManager manager = (CameraManager) getContext().getSystemService(Context.CAMERA_SERVICE);
+        try {
+            CameraCharacteristics characteristics = manager.getCameraCharacteristics(mCameraID);
+            StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+            boolean front = characteristics.get(CameraCharacteristics.LENS_FACING) == CameraCharacteristics.LENS_FACING_FRONT;
+            int sensor = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+            int display = getDisplayDegrees();
+            int rotation = front ? (sensor + display) % 360 : (sensor - display + 360) % 360;
+            setPreviewOrientation(rotation, front);
+
+            boolean quarterTurn = rotation == 90 || rotation == 270;
+            android.util.Size displaySize = largestSize(map.getOutputSizes(SurfaceHolder.class),
+                    quarterTurn ? height : width, quarterTurn ? width : height, null);
+            android.util.Size analysisSize = largestSize(map.getOutputSizes(mPreviewFormat),
+                    mAnalysisMaxWidth, mAnalysisMaxHeight, displaySize);
+            if (analysisSize.getWidth() * displaySize.getHeight() != analysisSize.getHeight() * displaySize.getWidth())
+                Log.w(LOGTAG, "No analysis size with the preview's aspect ratio: overlays may be off");
+            Log.i(LOGTAG, "Selected preview size to " + displaySize.getWidth() + "x" + displaySize.getHeight()
+                    + ", analysis size to " + analysisSize.getWidth() + "x" + analysisSize.getHeight());
+            // Either output changing needs a new session
+            if (mPreviewSize.equals(analysisSize) && mDisplaySize.equals(displaySize))
+                return false;
+            mPreviewSize = analysisSize;
+            mDisplaySize = displaySize;
+            return true;
+        } catch (CameraAccessException e) {
+            Log.e(LOGTAG, "calcDualStreamSizes - Camera Access Exception", e);
+        } catch (IllegalArgumentException e) {
+            Log.e(LOGTAG, "calcDualStreamSizes - Illegal Argument Exception", e);
+        } catch (SecurityException e) {
+            Log.e(LOGTAG, "calcDualStreamSizes - Security Exception", e);
+        }
+        return false;
+    }
+
+    /**
+     * Largest of {@code sizes} within {@code maxWidth}x{@code maxHeight}, among those with the
+     * aspect ratio of {@code aspect} when there are any; the smallest size when none fits.
+     */
+    private static android.util.Size largestSize(android.util.Size[] sizes, int maxWidth, int maxHeight,
+                                                 android.util.Size aspect) {
+        android.util.Size best = null;
+        boolean bestMatches = false;
+        android.util.Size smallest = sizes[0];
+        for (android.util.Size size : sizes) {
+            long area = (long) size.getWidth() * size.getHeight();
+            if (area < (long) smallest.getWidth() * smallest.getHeight())
+                smallest = size;
+            if (size.getWidth() > maxWidth || size.getHeight() > maxHeight)
+                continue;
+            boolean matches = aspect != null
+                    && size.getWidth() * aspect.getHeight() == size.getHeight() * aspect.getWidth();
+            if (best == null || (matches && !bestMatches)
+                    || (matches == bestMatches && area > (long) best.getWidth() * best.getHeight())) {
+                best = size;
+                bestMatches = matches;
+            }
+        }
+        return best != null ? best : smallest;
+    }
+
+    /** Rotation of the display from its natural orientation, in degrees. */
+    private int getDisplayDegrees() {
+        Display display = getDisplay();
+        if (display == null)
+            return 0;
+        switch (display.getRotation()) {
+        case Surface.ROTATION_90:
+            return 90;
+        case Surface.ROTATION_180:
+            return 180;
+        case Surface.ROTATION_270:
+            return 270;
+        default:
+            return 0;
+        }
+    }
+
     @Override
     protected boolean connectCamera(int width, int height) {
         Log.i(LOGTAG, "setCameraPreviewSize(" + width + "x" + height + ")");
         startBackgroundThread();
         initializeCamera();
         try {
-            boolean needReconfig = calcPreviewSize(width, height);
+            boolean needReconfig;
+            if (isDirectPreview()) {
+                needReconfig = calcDualStreamSizes(width, height);
+                // The camera fills the surface at the preview size; the view scales it to its bounds.
+                // A new size restarts the camera through surfaceChanged().
+                getHolder().setFixedSize(mDisplaySize.getWidth(), mDisplaySize.getHeight());
+                mFixedSurfaceSize = true;
+            } else {
+                needReconfig = calcPreviewSize(width, height);
+                if (mFixedSurfaceSize) {
+                    getHolder().setSizeFromLayout();
+                    mFixedSurfaceSize = false;
+                }
+            }
             mFrameWidth = mPreviewSize.getWidth();
             mFrameHeight = mPreviewSize.getHeight();
 
@@ -334,21 +552,23 @@ public class JavaCamera2View extends CameraBridgeViewBase {
         return true;
     }
 
-    private class JavaCamera2Frame implements CvCameraViewFrame {
+    /**
+     * Frame container reused across images. The RGBA Mat and the chroma buffer for I420 images
+     * are reallocated only when the preview size changes; the gray Mat and the plane wrappers are
+     * headers over the image's own buffers, created per image and released as soon as the
+     * image is done with. Conversions are cached per image by {@link CachedCameraFrame}.
+     */
+    private class JavaCamera2Frame extends CachedCameraFrame implements PipelineFrame {
         @Override
-        public Mat gray() {
+        protected Mat computeGray() {
             Image.Plane[] planes = mImage.getPlanes();
-            int w = mImage.getWidth();
-            int h = mImage.getHeight();
             assert(planes[0].getPixelStride() == 1);
-            ByteBuffer y_plane = planes[0].getBuffer();
-            int y_plane_step = planes[0].getRowStride();
-            mGray = new Mat(h, w, CvType.CV_8UC1, y_plane, y_plane_step);
-            return mGray;
+            mYPlane = wrap(planes[0], mImage.getHeight(), mImage.getWidth(), CvType.CV_8UC1);
+            return mYPlane;
         }
 
         @Override
-        public Mat rgba() {
+        protected void convertRgba(Mat rgba) {
             Image.Plane[] planes = mImage.getPlanes();
             int w = mImage.getWidth();
             int h = mImage.getHeight();
@@ -358,97 +578,97 @@ public class JavaCamera2View extends CameraBridgeViewBase {
             if (chromaPixelStride == 2) { // Chroma channels are interleaved
                 assert(planes[0].getPixelStride() == 1);
                 assert(planes[2].getPixelStride() == 2);
-                ByteBuffer y_plane = planes[0].getBuffer();
-                int y_plane_step = planes[0].getRowStride();
-                ByteBuffer uv_plane1 = planes[1].getBuffer();
-                int uv_plane1_step = planes[1].getRowStride();
-                ByteBuffer uv_plane2 = planes[2].getBuffer();
-                int uv_plane2_step = planes[2].getRowStride();
-                Mat y_mat = new Mat(h, w, CvType.CV_8UC1, y_plane, y_plane_step);
-                Mat uv_mat1 = new Mat(h / 2, w / 2, CvType.CV_8UC2, uv_plane1, uv_plane1_step);
-                Mat uv_mat2 = new Mat(h / 2, w / 2, CvType.CV_8UC2, uv_plane2, uv_plane2_step);
+                Mat y_mat = gray();
+                Mat uv_mat1 = wrap(planes[1], h / 2, w / 2, CvType.CV_8UC2);
+                Mat uv_mat2 = wrap(planes[2], h / 2, w / 2, CvType.CV_8UC2);
                 long addr_diff = uv_mat2.dataAddr() - uv_mat1.dataAddr();
                 if (addr_diff > 0) {
                     assert(addr_diff == 1);
-                    Imgproc.cvtColorTwoPlane(y_mat, uv_mat1, mRgba, Imgproc.COLOR_YUV2RGBA_NV12);
+                    Imgproc.cvtColorTwoPlane(y_mat, uv_mat1, rgba, Imgproc.COLOR_YUV2RGBA_NV12);
                 } else {
                     assert(addr_diff == -1);
-                    Imgproc.cvtColorTwoPlane(y_mat, uv_mat2, mRgba, Imgproc.COLOR_YUV2RGBA_NV21);
-                }
-                return mRgba;
-            } else { // Chroma channels are not interleaved
-                byte[] yuv_bytes = new byte[w*(h+h/2)];
-                ByteBuffer y_plane = planes[0].getBuffer();
-                ByteBuffer u_plane = planes[1].getBuffer();
-                ByteBuffer v_plane = planes[2].getBuffer();
-
-                int yuv_bytes_offset = 0;
-
-                int y_plane_step = planes[0].getRowStride();
-                if (y_plane_step == w) {
-                    y_plane.get(yuv_bytes, 0, w*h);
-                    yuv_bytes_offset = w*h;
-                } else {
-                    int padding = y_plane_step - w;
-                    for (int i = 0; i < h; i++){
-                        y_plane.get(yuv_bytes, yuv_bytes_offset, w);
-                        yuv_bytes_offset += w;
-                        if (i < h - 1) {
-                            y_plane.position(y_plane.position() + padding);
-                        }
-                    }
-                    assert(yuv_bytes_offset == w * h);
+                    Imgproc.cvtColorTwoPlane(y_mat, uv_mat2, rgba, Imgproc.COLOR_YUV2RGBA_NV21);
                 }
+                uv_mat1.release();
+                uv_mat2.release();
+            } else { // Chroma channels are not interleaved (I420)
+                // Y is read in place; U and V are interleaved natively into a pooled
+                // half-resolution Mat, so no plane goes through the Java heap
+                assert(planes[1].getPixelStride() == 1);
+                assert(planes[2].getPixelStride() == 1);
+                Mat y_mat = gray();
+                Mat u_mat = wrap(planes[1], h / 2, w / 2, CvType.CV_8UC1);
+                Mat v_mat = wrap(planes[2], h / 2, w / 2, CvType.CV_8UC1);
+                Mat uv_mat = chroma(w, h);
+                Core.insertChannel(u_mat, uv_mat, 0);
+                Core.insertChannel(v_mat, uv_mat, 1);
+                Imgproc.cvtColorTwoPlane(y_mat, uv_mat, rgba, Imgproc.COLOR_YUV2RGBA_NV12);
+                u_mat.release();
+                v_mat.release();
+            }
+        }
 
-                int chromaRowStride = planes[1].getRowStride();
-                int chromaRowPadding = chromaRowStride - w/2;
-
-                if (chromaRowPadding == 0){
-                    // When the row stride of the chroma channels equals their width, we can copy
-                    // the entire channels in one go
-                    u_plane.get(yuv_bytes, yuv_bytes_offset, w*h/4);
-                    yuv_bytes_offset += w*h/4;
-                    v_plane.get(yuv_bytes, yuv_bytes_offset, w*h/4);
-                } else {
-                    // When not equal, we need to copy the channels row by row
-                    for (int i = 0; i < h/2; i++){
-                        u_plane.get(yuv_bytes, yuv_bytes_offset, w/2);
-                        yuv_bytes_offset += w/2;
-                        if (i < h/2-1){
-                            u_plane.position(u_plane.position() + chromaRowPadding);
-                        }
-                    }
-                    for (int i = 0; i < h/2; i++){
-                        v_plane.get(yuv_bytes, yuv_bytes_offset, w/2);
-                        yuv_bytes_offset += w/2;
-                        if (i < h/2-1){
-                            v_plane.position(v_plane.position() + chromaRowPadding);
-                        }
-                    }
-                }
+        /** Points the container at {@code image}; the image must stay open until {@link #detach()}. */
+        void attach(Image image, FrameAllocationStats stats) {
+            invalidate();
+            mImage = image;
+            mStats = stats;
+        }
 
-                Mat yuv_mat = new Mat(h+h/2, w, CvType.CV_8UC1);
-                yuv_mat.put(0, 0, yuv_bytes);
-                Imgproc.cvtColor(yuv_mat, mRgba, Imgproc.COLOR_YUV2RGBA_I420, 4);
-                return mRgba;
+        /** Drops the headers over the image's planes before the image is closed. */
+        void detach() {
+            invalidate();
+            if (mYPlane != null) {
+                mYPlane.release();
+                mYPlane = null;
             }
+            mImage = null;
         }
 
-
-        public JavaCamera2Frame(Image image) {
-            super();
-            mImage = image;
-            mRgba = new Mat();
-            mGray = new Mat();
+        /** Closes the image and returns the container to the pool once the listener is done. */
+        @Override
+        public void recycle() {
+            Image image = mImage;
+            FrameAllocationStats stats = mStats;
+            detach();
+            image.close();
+            recycleFrame(this);
+            if (stats != null)
+                stats.onFrame();
         }
 
+        @Override
         public void release() {
-            mRgba.release();
-            mGray.release();
+            detach();
+            super.release();
+            mUvMat.release();
+        }
+
+        /** Interleaved UV plane for I420 images, resized only when the preview size changes. */
+        private Mat chroma(int w, int h) {
+            if (mUvMat.cols() != w / 2 || mUvMat.rows() != h / 2) {
+                mUvMat.create(h / 2, w / 2, CvType.CV_8UC2);
+                countMat();
+            }
+            return mUvMat;
         }
 
+        private Mat wrap(Image.Plane plane, int rows, int cols, int type) {
+            countMat();
+            return new Mat(rows, cols, type, plane.getBuffer(), plane.getRowStride());
+        }
+
+        private void countMat() {
+            if (mStats != null)
+                mStats.onMatsAllocated(1);
+        }
+
+        /** Mats a container owns for its whole life: RGBA and interleaved chroma. */
+        static final int OWNED_MATS = 2;
+
         private Image mImage;
-        private Mat mRgba;
-        private Mat mGray;
+        private FrameAllocationStats mStats;
+        private Mat mYPlane;
+        private final Mat mUvMat = new Mat();
     };
 }
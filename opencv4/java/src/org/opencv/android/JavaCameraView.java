@@ -310,40 +310,37 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
             mCamera.addCallbackBuffer(mBuffer);
     }
 
-    private class JavaCameraFrame implements CvCameraViewFrame {
+    private class JavaCameraFrame extends CachedCameraFrame {
         @Override
-        public Mat gray() {
-            return mYuvFrameData.submat(0, mHeight, 0, mWidth);
+        protected Mat computeGray() {
+            return mGray;
         }
 
         @Override
-        public Mat rgba() {
+        protected void convertRgba(Mat rgba) {
             if (mPreviewFormat == ImageFormat.NV21)
-                Imgproc.cvtColor(mYuvFrameData, mRgba, Imgproc.COLOR_YUV2RGBA_NV21, 4);
+                Imgproc.cvtColor(mYuvFrameData, rgba, Imgproc.COLOR_YUV2RGBA_NV21, 4);
             else if (mPreviewFormat == ImageFormat.YV12)
-                Imgproc.cvtColor(mYuvFrameData, mRgba, Imgproc.COLOR_YUV2RGB_I420, 4);  // COLOR_YUV2RGBA_YV12 produces inverted colors
+                Imgproc.cvtColor(mYuvFrameData, rgba, Imgproc.COLOR_YUV2RGB_I420, 4);  // COLOR_YUV2RGBA_YV12 produces inverted colors
             else
                 throw new IllegalArgumentException("Preview Format can be NV21 or YV12");
-
-            return mRgba;
         }
 
         public JavaCameraFrame(Mat Yuv420sp, int width, int height) {
             super();
-            mWidth = width;
-            mHeight = height;
             mYuvFrameData = Yuv420sp;
-            mRgba = new Mat();
+            // The Y plane of the chain buffer never moves: one header serves every frame
+            mGray = Yuv420sp.submat(0, height, 0, width);
         }
 
+        @Override
         public void release() {
-            mRgba.release();
+            super.release();
+            mGray.release();
         }
 
         private Mat mYuvFrameData;
-        private Mat mRgba;
-        private int mWidth;
-        private int mHeight;
+        private Mat mGray;
     };
 
     private class CameraWorker implements Runnable {
@@ -369,8 +366,10 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
                 }
 
                 if (!mStopThread && hasFrame) {
-                    if (!mFrameChain[1 - mChainIdx].empty())
+                    if (!mFrameChain[1 - mChainIdx].empty()) {
+                        mCameraFrame[1 - mChainIdx].invalidate();
                         deliverAndDrawFrame(mCameraFrame[1 - mChainIdx]);
+                    }
                 }
             } while (!mStopThread);
             Log.d(TAG, "Finish processing thread");
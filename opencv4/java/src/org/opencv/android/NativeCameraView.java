@@ -136,19 +136,18 @@ public class NativeCameraView extends CameraBridgeViewBase {
         }
     }
 
-    private static class NativeCameraFrame implements CvCameraViewFrame {
+    private static class NativeCameraFrame extends CachedCameraFrame {
 
         @Override
-        public Mat rgba() {
+        protected void convertRgba(Mat rgba) {
             mCapture.set(Videoio.CAP_PROP_FOURCC, VideoWriter.fourcc('R','G','B','3'));
             mCapture.retrieve(mBgr);
             Log.d(TAG, "Retrived frame with size " + mBgr.cols() + "x" + mBgr.rows() + " and channels: " + mBgr.channels());
-            Imgproc.cvtColor(mBgr, mRgba, Imgproc.COLOR_RGB2RGBA);
-            return mRgba;
+            Imgproc.cvtColor(mBgr, rgba, Imgproc.COLOR_RGB2RGBA);
         }
 
         @Override
-        public Mat gray() {
+        protected Mat computeGray() {
             mCapture.set(Videoio.CAP_PROP_FOURCC, VideoWriter.fourcc('G','R','E','Y'));
             mCapture.retrieve(mGray);
             Log.d(TAG, "Retrived frame with size " + mGray.cols() + "x" + mGray.rows() + " and channels: " + mGray.channels());
@@ -158,18 +157,17 @@ public class NativeCameraView extends CameraBridgeViewBase {
         public NativeCameraFrame(VideoCapture capture) {
             mCapture = capture;
             mGray = new Mat();
-            mRgba = new Mat();
             mBgr = new Mat();
         }
 
+        @Override
         public void release() {
+            super.release();
             if (mGray != null) mGray.release();
-            if (mRgba != null) mRgba.release();
             if (mBgr != null) mBgr.release();
         }
 
         private VideoCapture mCapture;
-        private Mat mRgba;
         private Mat mGray;
         private Mat mBgr;
     };
@@ -183,6 +181,7 @@ public class NativeCameraView extends CameraBridgeViewBase {
                     break;
                 }
 
+                mFrame.invalidate();
                 deliverAndDrawFrame(mFrame);
             } while (!mStopThread);
         }
@@ -0,0 +1,68 @@
+package org.opencv.android;
+
+import java.nio.ByteBuffer;
+
+import org.opencv.core.Mat;
+
+import android.graphics.Bitmap;
+
+/**
+ * Draws processed frames on the surface of a {@link CameraBridgeViewBase}. Drawing is split in
+ * two steps so the frame pipeline can run them on different threads: {@link #fill} copies the
+ * listener's Mat into a staging {@link Buffer} while the frame is still alive, and
+ * {@link #draw} puts a filled buffer on screen, centred, scaled and oriented as the view says.
+ */
+abstract class PreviewRenderer {
+
+    /** Staging copy of one processed frame. Filled and drawn by one thread at a time. */
+    static class Buffer {
+        /** Canvas backend: the frame as a bitmap. */
+        Bitmap bitmap;
+        /** GL backend: RGBA pixels in a direct buffer, and a Mat header over them. */
+        ByteBuffer data;
+        Mat mat;
+        int width;
+        int height;
+        boolean filled;
+
+        void release() {
+            if (bitmap != null) {
+                bitmap.recycle();
+                bitmap = null;
+            }
+            if (mat != null) {
+                mat.release();
+                mat = null;
+            }
+            data = null;
+            filled = false;
+        }
+    }
+
+    protected final CameraBridgeViewBase mView;
+    protected final RenderCostMeter mCost;
+
+    PreviewRenderer(CameraBridgeViewBase view, RenderCostMeter cost) {
+        mView = view;
+        mCost = cost;
+    }
+
+    /** Copies {@code frame} (8UC1, 8UC3 or 8UC4) into {@code buffer}; false if it can't be shown. */
+    abstract boolean fill(Buffer buffer, Mat frame);
+
+    /** Puts a filled buffer on screen. */
+    abstract void draw(Buffer buffer);
+
+    /** Frees what the backend holds on the surface. No thread may be drawing any more. */
+    void release() {
+    }
+
+    /** Rendering size of a frame after rotating it by {@code rotation} degrees. */
+    static int rotatedWidth(int width, int height, int rotation) {
+        return rotation == 90 || rotation == 270 ? height : width;
+    }
+
+    static int rotatedHeight(int width, int height, int rotation) {
+        return rotation == 90 || rotation == 270 ? width : height;
+    }
+}
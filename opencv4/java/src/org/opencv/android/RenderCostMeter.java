@@ -0,0 +1,55 @@
+package org.opencv.android;
+
+import java.util.Locale;
+
+import android.util.Log;
+
+/**
+ * Per-frame cost of putting processed frames on screen, split into filling the staging buffer
+ * (matToBitmap, or the native copy for the texture) and drawing it (canvas draw and post, or
+ * texture upload, draw and swap). Averages are logged every {@link #STEP} frames and kept for
+ * {@link CameraBridgeViewBase#getRenderCostMs()}. Fed from the processing and render threads.
+ */
+class RenderCostMeter {
+    private static final String TAG = "RenderCostMeter";
+    private static final int STEP = 100;
+
+    private final String mBackend;
+    private long mFillNanos;
+    private long mDrawNanos;
+    private int mFrames;
+    private volatile float mFillMs = -1;
+    private volatile float mDrawMs = -1;
+
+    RenderCostMeter(String backend) {
+        mBackend = backend;
+    }
+
+    synchronized void onFill(long nanos) {
+        mFillNanos += nanos;
+    }
+
+    synchronized void onDraw(long nanos) {
+        mDrawNanos += nanos;
+        if (++mFrames < STEP)
+            return;
+        mFillMs = mFillNanos / 1e6f / mFrames;
+        mDrawMs = mDrawNanos / 1e6f / mFrames;
+        Log.i(TAG, String.format(Locale.US, "%s: fill %.2f ms + draw %.2f ms per frame",
+                mBackend, mFillMs, mDrawMs));
+        mFillNanos = 0;
+        mDrawNanos = 0;
+        mFrames = 0;
+    }
+
+    String getBackend() {
+        return mBackend;
+    }
+
+    /** Mean fill plus draw time over the last {@link #STEP} frames, or -1 before the first report. */
+    float getCostMs() {
+        float fill = mFillMs;
+        float draw = mDrawMs;
+        return fill < 0 || draw < 0 ? -1 : fill + draw;
+    }
+}